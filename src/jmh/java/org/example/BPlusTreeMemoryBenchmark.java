@@ -0,0 +1,110 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point operations on BPlusTreeMemory across orders and key distributions.
+ * Throughput and sampled latency (with percentiles) are reported for each operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BPlusTreeMemoryBenchmark {
+    // Enough generated keys that the access pattern does not repeat within an iteration's cache footprint
+    private static final int KEY_COUNT = 1 << 20;
+
+    @Param({"4", "16", "64", "256"})
+    public int order;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    @Param({"100000"})
+    public int size;
+
+    private BPlusTreeMemory tree;
+    private BPlusTreeMemory insertTree;
+    private String[] values;
+    private int[] keys;
+    private int next;
+    // Every key once, in the order the distribution first draws it, see distinctOrder
+    private int[] insertOrder;
+    private int inserted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = new String[size];
+        BPlusTreeBuilder builder = new BPlusTreeBuilder(order, 0.7);
+        for (int i = 0; i < size; i++) {
+            values[i] = "value" + i;
+            builder.add(i, values[i]);
+        }
+        tree = builder.build();
+        keys = distribution.keys(KEY_COUNT, size, 42);
+        insertOrder = distinctOrder(keys, size);
+    }
+
+    /**
+     * Permutation of [0, size) that lists keys in the order of their first occurrence in keys,
+     * followed by the keys that never occur. Inserting it follows the distribution without duplicates.
+     */
+    private static int[] distinctOrder(int[] keys, int size) {
+        int[] order = new int[size];
+        boolean[] seen = new boolean[size];
+        int count = 0;
+        for (int key : keys) {
+            if (!seen[key]) {
+                seen[key] = true;
+                order[count++] = key;
+            }
+        }
+        for (int key = 0; key < size; key++) {
+            if (!seen[key]) {
+                order[count++] = key;
+            }
+        }
+        return order;
+    }
+
+    @Setup(Level.Iteration)
+    public void resetInsertTree() {
+        insertTree = new BPlusTreeMemory(order);
+        inserted = 0;
+    }
+
+    private int nextKey() {
+        int key = keys[next];
+        next = (next + 1) & (KEY_COUNT - 1);
+        return key;
+    }
+
+    @Benchmark
+    public String search() {
+        return tree.search(nextKey());
+    }
+
+    @Benchmark
+    public Boolean update() {
+        int key = nextKey();
+        return tree.update(key, values[key]);
+    }
+
+    /**
+     * Inserts distinct keys. The tree is replaced by an empty one after every size inserts,
+     * so it holds between 0 and size entries and never piles up duplicates.
+     */
+    @Benchmark
+    public void insert() {
+        if (inserted == size) {
+            insertTree = new BPlusTreeMemory(order);
+            inserted = 0;
+        }
+        int key = insertOrder[inserted++];
+        insertTree.insert(key, values[key]);
+    }
+}
@@ -0,0 +1,68 @@
+package org.example;
+
+import java.util.Random;
+
+/**
+ * Key access patterns for the benchmarks, each generating keys in [0, range).
+ * Keys are generated up front, so the benchmark loop only reads an array.
+ */
+public enum KeyDistribution {
+    SEQUENTIAL {
+        @Override
+        int[] keys(int count, int range, long seed) {
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = i % range;
+            }
+            return keys;
+        }
+    },
+    RANDOM {
+        @Override
+        int[] keys(int count, int range, long seed) {
+            Random random = new Random(seed);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = random.nextInt(range);
+            }
+            return keys;
+        }
+    },
+    /**
+     * Skewed: the most popular keys get most of the accesses, as in YCSB with a Zipf constant of 0.99.
+     * The popular keys are scattered over the range instead of being the smallest ones.
+     */
+    ZIPFIAN {
+        @Override
+        int[] keys(int count, int range, long seed) {
+            double theta = 0.99;
+            double zetaN = 0;
+            for (int i = 1; i <= range; i++) {
+                zetaN += 1 / Math.pow(i, theta);
+            }
+            double zeta2 = 1 + 1 / Math.pow(2, theta);
+            double alpha = 1 / (1 - theta);
+            double eta = (1 - Math.pow(2.0 / range, 1 - theta)) / (1 - zeta2 / zetaN);
+
+            Random random = new Random(seed);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                double u = random.nextDouble();
+                double uz = u * zetaN;
+                long rank;
+                if (uz < 1) {
+                    rank = 0;
+                } else if (uz < zeta2) {
+                    rank = 1;
+                } else {
+                    rank = (long) (range * Math.pow(eta * u - eta + 1, alpha));
+                }
+                // Scatter ranks over the range with a multiplicative hash
+                keys[i] = (int) Math.floorMod(rank * 0x9E3779B97F4A7C15L, (long) range);
+            }
+            return keys;
+        }
+    };
+
+    abstract int[] keys(int count, int range, long seed);
+}
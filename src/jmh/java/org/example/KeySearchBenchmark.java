@@ -0,0 +1,74 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search within one node-sized sorted array, the choice KeySearch makes per node size.
+ * linear is the scan the nodes used before, count and branchless are the two KeySearch strategies,
+ * and hybrid is what the nodes call. The crossover between count and branchless sets LINEAR_MAX.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeySearchBenchmark {
+    // Power of two so the probe index wraps with a mask
+    private static final int PROBE_COUNT = 1 << 16;
+
+    @Param({"4", "8", "16", "32", "64", "128", "256", "512"})
+    public int keyCount;
+
+    private int[] keys;
+    private int[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        keys = new int[keyCount + 1];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = i * 3;
+        }
+        // Random probes over the whole key range so the branch predictor cannot learn the outcome
+        probes = new int[PROBE_COUNT];
+        for (int i = 0; i < PROBE_COUNT; i++) {
+            probes[i] = random.nextInt(keyCount * 3 + 1);
+        }
+    }
+
+    private int nextProbe() {
+        int probe = probes[next];
+        next = (next + 1) & (PROBE_COUNT - 1);
+        return probe;
+    }
+
+    @Benchmark
+    public int linear() {
+        int key = nextProbe();
+        int index = 0;
+        while (index < keyCount && key >= keys[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    @Benchmark
+    public int count() {
+        return KeySearch.countAtMost(keys, keyCount, nextProbe());
+    }
+
+    @Benchmark
+    public int branchless() {
+        return KeySearch.branchlessUpperBound(keys, keyCount, nextProbe());
+    }
+
+    @Benchmark
+    public int hybrid() {
+        return KeySearch.upperBound(keys, keyCount, nextProbe());
+    }
+}
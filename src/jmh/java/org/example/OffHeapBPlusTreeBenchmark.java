@@ -0,0 +1,63 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point operations on OffHeapBPlusTree, to compare with BPlusTreeMemoryBenchmark.
+ * The gc profiler shows the difference in retained heap through GC counts and times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OffHeapBPlusTreeBenchmark {
+    private static final int KEY_COUNT = 1 << 20;
+
+    @Param({"16", "64", "256"})
+    public int order;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    @Param({"1000000"})
+    public int size;
+
+    private OffHeapBPlusTree tree;
+    private OffHeapBPlusTree insertTree;
+    private int[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = new OffHeapBPlusTree(order);
+        for (int i = 0; i < size; i++) {
+            tree.insert(i, i);
+        }
+        keys = distribution.keys(KEY_COUNT, size, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetInsertTree() {
+        insertTree = new OffHeapBPlusTree(order);
+    }
+
+    private int nextKey() {
+        int key = keys[next];
+        next = (next + 1) & (KEY_COUNT - 1);
+        return key;
+    }
+
+    @Benchmark
+    public long search() {
+        return tree.search(nextKey());
+    }
+
+    @Benchmark
+    public boolean insert() {
+        return insertTree.insert(nextKey(), next);
+    }
+}
@@ -0,0 +1,131 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * SimpleDataBase operations across file sizes and read modes.
+ * Rows are stored in id order, so selectBinarySearch finds every row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimpleDataBaseBenchmark {
+    public enum ReadMode {
+        STREAM,
+        BUFFER_POOL,
+        MAPPED
+    }
+
+    private static final int KEY_COUNT = 1 << 16;
+
+    @Param({"1000", "10000", "100000"})
+    public int records;
+
+    @Param({"STREAM", "BUFFER_POOL", "MAPPED"})
+    public ReadMode readMode;
+
+    @Param({"RANDOM"})
+    public KeyDistribution distribution;
+
+    // Row cache budget in bytes, 0 for none. Worth comparing with -p distribution=ZIPFIAN
+    @Param({"0"})
+    public long rowCacheBytes;
+
+    private File file;
+    private SimpleDataBase db;
+    private File insertFile;
+    private SimpleDataBase insertDb;
+    private int[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("seedbase-bench", ".db").toFile();
+        db = new SimpleDataBase(file.getPath(), true);
+        List<User> users = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            users.add(new User(i, "User" + i));
+        }
+        db.insertAll(users);
+        switch (readMode) {
+            case BUFFER_POOL -> db.useBufferPool(1024, LruPolicy::new);
+            case MAPPED -> db.useMappedReads();
+            default -> {
+            }
+        }
+        if (rowCacheBytes > 0) {
+            db.useRowCache(rowCacheBytes);
+        }
+        keys = distribution.keys(KEY_COUNT, records, 42);
+        insertFile = Files.createTempFile("seedbase-bench-insert", ".db").toFile();
+    }
+
+    /**
+     * insert appends to its own file, which starts empty for every iteration.
+     */
+    @Setup(Level.Iteration)
+    public void resetInsertFile() {
+        insertDb = new SimpleDataBase(insertFile.getPath(), true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+        file.delete();
+        insertFile.delete();
+    }
+
+    private int nextKey() {
+        int key = keys[next];
+        next = (next + 1) & (KEY_COUNT - 1);
+        return key;
+    }
+
+    @Benchmark
+    public User select() {
+        return db.select(nextKey());
+    }
+
+    @Benchmark
+    public User selectBinarySearch() {
+        return db.selectBinarySearch(nextKey());
+    }
+
+    @Benchmark
+    public void insert() {
+        int key = nextKey();
+        insertDb.insert(key, "User" + key);
+    }
+
+    /**
+     * Full-table filter through scan, testing the name and the id of every row and matching one row in a hundred.
+     * The read mode does not apply, scans always read the file in blocks.
+     */
+    @Benchmark
+    public long scanFiltered() {
+        try (Stream<User> users = db.scan(RecordFilter.nameStartsWith("User").and(RecordFilter.idBetween(0, records / 100 - 1)))) {
+            return users.count();
+        }
+    }
+
+    /**
+     * The same filter through scanParallel, to compare with scanFiltered on a multi-core machine.
+     */
+    @Benchmark
+    public long scanFilteredParallel() {
+        try (Stream<User> users = db.scanParallel(RecordFilter.nameStartsWith("User").and(RecordFilter.idBetween(0, records / 100 - 1)))) {
+            return users.count();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Builds a BPlusTreeMemory bottom-up from keys that arrive in ascending order,
+ * e.g. from a sorted file or from the scan of another tree.
+
+ * Usage:
+ *   BPlusTreeBuilder builder = new BPlusTreeBuilder(order, 0.9);
+ *   for (...) {
+ *       builder.add(key, value);
+ *   }
+ *   BPlusTreeMemory tree = builder.build();
+
+ * Instead of inserting key by key, which splits nodes in half and leaves them about half full,
+ * the leaves are packed left to right up to the fill factor and linked,
+ * then each level of internal nodes is packed over the level below.
+ * Every node is allocated exactly once, so building takes O(n) time.
+ * Nodes of a level get an even share of the entries, so the last node is not left nearly empty.
+
+ * A fill factor below 1 leaves room in each node, so later inserts do not split immediately.
+ * Every node except the root still gets at least its minimum, LeafNode.minKeys keys or
+ * InternalNode.minKeys + 1 children, which deletes rely on, so very low fill factors pack like about 0.5.
+ */
+class BPlusTreeBuilder {
+    private final int order;
+    private final int leafFill;
+    private final int internalFill;
+    private final int leafMin;
+    private final int internalMin;
+    private int[] keys = new int[16];
+    private String[] values = new String[16];
+    private int size;
+
+    /**
+     * @param order Order of the tree to build, at least 3
+     * @param fillFactor Fraction of each node to fill, in (0, 1]
+     */
+    BPlusTreeBuilder(int order, double fillFactor) {
+        if (order < 3) {
+            throw new IllegalArgumentException("Order must be at least 3");
+        }
+        if (!(fillFactor > 0 && fillFactor <= 1)) {
+            throw new IllegalArgumentException("Fill factor must be in (0, 1]");
+        }
+        this.order = order;
+        // Same as LeafNode.minKeys, and InternalNode.minKeys keys plus one child
+        leafMin = (order + 1) / 2;
+        internalMin = (order - 1) / 2 + 1;
+        // Leaf nodes can have order keys, internal nodes order children
+        leafFill = Math.max(leafMin, (int) Math.ceil(order * fillFactor));
+        internalFill = Math.max(internalMin, (int) Math.ceil(order * fillFactor));
+    }
+
+    /**
+     * Add the next entry. Keys must not decrease, equal keys are kept in the order they are added.
+     */
+    void add(int key, String value) {
+        if (size > 0 && key < keys[size - 1]) {
+            throw new IllegalArgumentException("Keys must be added in ascending order, got " + key + " after " + keys[size - 1]);
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    BPlusTreeMemory build() {
+        if (size == 0) {
+            return new BPlusTreeMemory(order);
+        }
+
+        // Leaf level
+        int leafCount = groupCount(size, leafFill, leafMin);
+        Node[] level = new Node[leafCount];
+        // Smallest key under each node, used as the separator in the parent
+        int[] firstKeys = new int[leafCount];
+        LeafNode previous = null;
+        int start = 0;
+        for (int i = 0; i < leafCount; i++) {
+            int count = groupSize(size, leafCount, i);
+            LeafNode leaf = new LeafNode(order);
+            System.arraycopy(keys, start, leaf.keys, 0, count);
+            System.arraycopy(values, start, leaf.values, 0, count);
+            leaf.keyCount = count;
+            if (previous != null) {
+                previous.next = leaf;
+                leaf.prev = previous;
+            }
+            previous = leaf;
+            level[i] = leaf;
+            firstKeys[i] = keys[start];
+            start += count;
+        }
+        // The entries now live in the leaves
+        keys = null;
+        values = null;
+
+        // Internal levels until a single root is left
+        while (level.length > 1) {
+            int nodeCount = groupCount(level.length, internalFill, internalMin);
+            Node[] parents = new Node[nodeCount];
+            int[] parentFirstKeys = new int[nodeCount];
+            start = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                int count = groupSize(level.length, nodeCount, i);
+                InternalNode node = new InternalNode(order);
+                node.appendChild(level[start]);
+                for (int child = start + 1; child < start + count; child++) {
+                    node.appendKey(firstKeys[child]);
+                    node.appendChild(level[child]);
+                }
+                parents[i] = node;
+                parentFirstKeys[i] = firstKeys[start];
+                start += count;
+            }
+            level = parents;
+            firstKeys = parentFirstKeys;
+        }
+        return new BPlusTreeMemory(order, level[0], size);
+    }
+
+    /**
+     * Number of groups of at most maxPerGroup items, but not so many that an even share drops below minPerGroup.
+     * Fewer groups may then hold more than maxPerGroup, but always less than twice minPerGroup, which fits a node.
+     */
+    private static int groupCount(int items, int maxPerGroup, int minPerGroup) {
+        return Math.min((items + maxPerGroup - 1) / maxPerGroup, Math.max(1, items / minPerGroup));
+    }
+
+    /**
+     * Size of group i when items are spread as evenly as possible over groups.
+     */
+    private static int groupSize(int items, int groups, int i) {
+        return items / groups + (i < items % groups ? 1 : 0);
+    }
+}
@@ -0,0 +1,109 @@
+package org.example;
+
+/**
+ * Forward cursor over the leaf chain of a B+ tree.
+ * The tree is descended once to find the starting leaf, then the cursor
+ * follows the next pointers, so reading k entries costs O(log n + k).
+
+ * Usage:
+ *   BPlusTreeCursor cursor = tree.range(10, 20);
+ *   while (cursor.next()) {
+ *       use(cursor.key(), cursor.value());
+ *   }
+
+ * Keys are returned as primitive ints, so walking the cursor does not box.
+ * Entries deleted lazily are skipped.
+ * The cursor is not safe against concurrent inserts into the same tree.
+ * A cursor of a BPlusTreeSnapshot moves between leaves through a TreePath instead of the
+ * next pointers and stays valid while the live tree changes, until the snapshot is closed.
+ */
+class BPlusTreeCursor {
+    private LeafNode leaf;
+    // Walks the leaves of a snapshot, null to follow the next pointers
+    private final TreePath path;
+    private int index;
+    private final int to;
+    private boolean positioned;
+
+    /**
+     * @param leaf The leaf to start from, may contain keys smaller than from
+     * @param from Smallest key to return, inclusive
+     * @param to Largest key to return, inclusive
+     */
+    BPlusTreeCursor(LeafNode leaf, int from, int to) {
+        this(leaf, null, from, to);
+    }
+
+    /**
+     * @param path Path to the leaf to start from, which may contain keys smaller than from
+     */
+    BPlusTreeCursor(TreePath path, int from, int to) {
+        this(path.leaf, path, from, to);
+    }
+
+    private BPlusTreeCursor(LeafNode leaf, TreePath path, int from, int to) {
+        this.leaf = leaf;
+        this.path = path;
+        this.to = to;
+        // Skip keys before the start of the range, possibly into later leaves
+        index = 0;
+        while (this.leaf != null) {
+            index = KeySearch.lowerBound(this.leaf.keys, this.leaf.keyCount, from);
+            if (index < this.leaf.keyCount) {
+                break;
+            }
+            this.leaf = nextLeaf();
+            index = 0;
+        }
+        // next() advances before reading, so start one position behind
+        index--;
+    }
+
+    /**
+     * Move to the next entry.
+     * @return false when the range is exhausted
+     */
+    boolean next() {
+        if (leaf == null) {
+            return false;
+        }
+        do {
+            index++;
+            while (index >= leaf.keyCount) {
+                leaf = nextLeaf();
+                index = 0;
+                if (leaf == null) {
+                    positioned = false;
+                    return false;
+                }
+            }
+            if (leaf.keys[index] > to) {
+                leaf = null;
+                positioned = false;
+                return false;
+            }
+        } while (leaf.values[index] == LeafNode.TOMBSTONE);
+        positioned = true;
+        return true;
+    }
+
+    private LeafNode nextLeaf() {
+        return path == null ? leaf.next : path.nextLeaf();
+    }
+
+    int key() {
+        checkPositioned();
+        return leaf.keys[index];
+    }
+
+    String value() {
+        checkPositioned();
+        return leaf.values[index];
+    }
+
+    private void checkPositioned() {
+        if (!positioned) {
+            throw new IllegalStateException("Cursor is not positioned on an entry, call next() first");
+        }
+    }
+}
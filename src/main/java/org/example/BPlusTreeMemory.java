@@ -1,5 +1,9 @@
 package org.example;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.TreeSet;
+
 /**
  * B+ Tree implementation focusing only on keys, with configurable order.
 
@@ -14,12 +18,50 @@ package org.example;
  * Time complexity:
  * - Search: O(log n) 
  * - Insertion: O(log n) 
+ * - Deletion: O(log n)
+ * - Range query: O(log n + k), where k is the number of keys in the range
 
  * Space complexity: O(n)
+
+ * Snapshots: snapshot() returns a consistent view that readers on other threads can search and
+ * iterate while writes continue, see BPlusTreeSnapshot. Every snapshot bumps the tree version,
+ * and nodes remember the version they were written at. While a snapshot is open, a write first
+ * copies each node on its path that the newest open snapshot may share, i.e. that has a version
+ * up to the snapshot's, and relinks the copy in place of the original. Copies carry the current
+ * version, so a node is copied at most once per snapshot. With no snapshot open, writes go in place.
+
+ * Replaced nodes are reclaimed by epoch: each is retired with the version it was replaced at,
+ * and once every open snapshot is at least that new, none of them can reach it and it is reused
+ * for later copies. Retired nodes are freed in version order when snapshots close.
+
+ * Writes and snapshot() are synchronized with each other, so snapshots can be taken from any thread.
+ * The live tree itself is still read and written by one thread.
  */
 class BPlusTreeMemory {
+    // Retired nodes kept for reuse, per node type
+    static final int MAX_FREE_NODES = 1024;
+    // Share of deleted entries at which a lazily deleting tree is compacted
+    static final double DEFAULT_COMPACTION_THRESHOLD = 0.25;
+    // Compaction packs leaves to this fill, leaving room for inserts
+    static final double COMPACTION_FILL = 0.9;
+
     private Node root;
     private final int order;  // Order of the B+ tree, now configurable
+    // Live entries, tombstones not included
+    private int size;
+    // Entries marked deleted, only with lazy deletes
+    private int tombstones;
+    // 0 for eager deletes, see useLazyDeletes
+    private double compactionThreshold;
+    // Bumped by every snapshot, nodes written from now on get this version
+    private long version;
+    // Versions of the open snapshots
+    private final TreeSet<Long> openSnapshots = new TreeSet<>();
+    // Nodes replaced by copies while a snapshot was open, in the order of their retire version
+    private final ArrayDeque<Node> retired = new ArrayDeque<>();
+    // Retired nodes no snapshot can reach any more, cleared and ready to copy into
+    private final ArrayDeque<LeafNode> freeLeaves = new ArrayDeque<>();
+    private final ArrayDeque<InternalNode> freeInternalNodes = new ArrayDeque<>();
 
     /**
      * Constructor allowing specification of the B+ tree order.
@@ -33,6 +75,15 @@ class BPlusTreeMemory {
         root = new LeafNode(order);
     }
 
+    /**
+     * Wrap an already built node structure, see BPlusTreeBuilder.
+     */
+    BPlusTreeMemory(int order, Node root, int size) {
+        this.order = order;
+        this.root = root;
+        this.size = size;
+    }
+
 
     /**
      * Insert a key into the tree.
@@ -42,26 +93,36 @@ class BPlusTreeMemory {
      * Time complexity: O(log n) in the average and worst case, where n is the number of keys.
      * However, when the root splits, it takes O(order) time to create a new root.
      */
-    public void insert(int key, String value) {
+    public synchronized void insert(int key, String value) {
+        long start = Metrics.start();
+        size++;
+        if (tombstones > 0 && revive(key, value)) {
+            Metrics.end(Metrics.Operation.TREE_INSERT, start, key);
+            return;
+        }
+        makeWritable(TreePath.descend(root, key, false), false);
         Node result = root.insert(key, value);
         if (result != null) {
             // Root was split, create a new root
             InternalNode newRoot = new InternalNode(order);
-            
-            int newKey = result.keys.getFirst();
-            System.out.println("newKey" + newKey);
+            newRoot.version = version;
+
+            int newKey = result.keys[0];
 
-            System.out.println("newValues" + result.values);
             // Remove the first key from InternalNode since it is already in the parent
             if (result instanceof InternalNode) {
-                result.keys.removeFirst();
+                result.removeFirstKey();
             }
 
-            newRoot.keys.add(newKey);
-            newRoot.children.add(root);
-            newRoot.children.add(result);
+            newRoot.appendKey(newKey);
+            newRoot.appendChild(root);
+            newRoot.appendChild(result);
             root = newRoot;
+            if (Metrics.enabled()) {
+                Metrics.treeHeight(height());
+            }
         }
+        Metrics.end(Metrics.Operation.TREE_INSERT, start, key);
     }
 
     /**
@@ -71,11 +132,328 @@ class BPlusTreeMemory {
      * This is because the height of the tree is logarithmic in the number of keys.
      */
     public String search(int key) {
-        return root.search(key);
+        long start = Metrics.start();
+        String value = root.search(key);
+        Metrics.end(Metrics.Operation.TREE_SEARCH, start, key);
+        return value;
+    }
+
+    public synchronized Boolean update(int key, String value) {
+        long start = Metrics.start();
+        makeWritable(TreePath.descend(root, key, false), false);
+        Boolean updated = root.update(key, value);
+        Metrics.end(Metrics.Operation.TREE_UPDATE, start, key);
+        return updated;
+    }
+
+    /**
+     * Delete one entry with the key.
+
+     * Eagerly, the entry is removed from its leaf. A node left less than half full borrows
+     * an entry from a sibling or is merged with one, which can cascade up to the root.
+     * When the root is left with a single child, that child becomes the root and the tree gets lower.
+
+     * With lazy deletes, the entry is only marked with a tombstone, see useLazyDeletes.
+
+     * Time complexity: O(log n)
+     * @return true if an entry was deleted
+     */
+    public synchronized Boolean delete(int key) {
+        long start = Metrics.start();
+        Boolean deleted = deleteEntry(key);
+        Metrics.end(Metrics.Operation.TREE_DELETE, start, key);
+        return deleted;
+    }
+
+    private Boolean deleteEntry(int key) {
+        if (compactionThreshold > 0) {
+            if (!markDeleted(key)) {
+                return false;
+            }
+            size--;
+            tombstones++;
+            if (tombstones > compactionThreshold * (size + tombstones)) {
+                compact();
+            }
+            return true;
+        }
+        if (!openSnapshots.isEmpty()) {
+            // Rebalancing may borrow from or merge with the siblings of the path to the leaf that
+            // InternalNode.delete removes from, the first one with a live entry for key
+            TreePath path = TreePath.descend(root, key, true);
+            while (path.leaf != null && path.leaf.search(key) == null) {
+                if (path.leaf.keyCount > 0 && path.leaf.keys[path.leaf.keyCount - 1] > key) {
+                    return false;
+                }
+                path.nextLeaf();
+            }
+            if (path.leaf == null) {
+                return false;
+            }
+            makeWritable(path, true);
+        }
+        Boolean deleted = root.delete(key);
+        if (deleted) {
+            size--;
+            // The only way the tree shrinks in height
+            while (root instanceof InternalNode internalRoot && internalRoot.keyCount == 0) {
+                root = internalRoot.children[0];
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Switch to lazy deletes: delete marks the entry with a tombstone in place and never restructures the tree,
+     * and inserting a deleted key again reuses its slot.
+     * Once tombstones make up compactionThreshold of the entries, compact runs as part of that delete.
+     * Its O(n) cost is spread over the n * compactionThreshold deletes before it, so deletes stay O(log n) amortized.
+     * @param compactionThreshold Share of deleted entries that triggers compaction, in (0, 1]
+     */
+    public synchronized void useLazyDeletes(double compactionThreshold) {
+        if (!(compactionThreshold > 0 && compactionThreshold <= 1)) {
+            throw new IllegalArgumentException("Compaction threshold must be in (0, 1]");
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Switch back to eager deletes, compacting away the tombstones left by lazy deletes.
+     */
+    public synchronized void useEagerDeletes() {
+        compactionThreshold = 0;
+        if (tombstones > 0) {
+            compact();
+        }
+    }
+
+    /**
+     * Drop every tombstone by rebuilding the tree bottom-up from its live entries with BPlusTreeBuilder.
+     * The result has dense leaves regardless of how sparse the deletes left them.
+     * Open cursors are invalidated.
+
+     * Time complexity: O(n)
+     */
+    public synchronized void compact() {
+        BPlusTreeBuilder builder = new BPlusTreeBuilder(order, COMPACTION_FILL);
+        BPlusTreeCursor cursor = scan();
+        while (cursor.next()) {
+            builder.add(cursor.key(), cursor.value());
+        }
+        root = builder.build().root;
+        // The new nodes are not shared with any snapshot
+        stamp(root);
+        tombstones = 0;
+    }
+
+    private void stamp(Node node) {
+        node.version = version;
+        if (node instanceof InternalNode internalNode) {
+            for (int i = 0; i < internalNode.childCount; i++) {
+                stamp(internalNode.children[i]);
+            }
+        }
+    }
+
+    private boolean markDeleted(int key) {
+        return replaceFirst(key, false, LeafNode.TOMBSTONE);
+    }
+
+    private boolean revive(int key, String value) {
+        if (replaceFirst(key, true, value)) {
+            tombstones--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replace the value of the first entry with the key that is, or is not, a tombstone.
+     * The leaves are walked through a path, so the one written to can be copied for open snapshots.
+     */
+    private boolean replaceFirst(int key, boolean tombstone, String value) {
+        TreePath path = TreePath.descend(root, key, true);
+        for (LeafNode leaf = path.leaf; leaf != null; leaf = path.nextLeaf()) {
+            for (int i = 0; i < leaf.keyCount; i++) {
+                if (leaf.keys[i] > key) {
+                    return false;
+                }
+                if (leaf.keys[i] == key && (leaf.values[i] == LeafNode.TOMBSTONE) == tombstone) {
+                    makeWritable(path, false);
+                    path.leaf.values[i] = value;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Take a consistent view of the tree that stays unchanged by later writes, see BPlusTreeSnapshot.
+     * Taking it is O(1). Until it is closed, each write copies the nodes on its path once.
+     */
+    public synchronized BPlusTreeSnapshot snapshot() {
+        BPlusTreeSnapshot snapshot = new BPlusTreeSnapshot(this, root, version, size);
+        openSnapshots.add(version);
+        version++;
+        return snapshot;
     }
-    public Boolean update(int key, String value) {
-        return root.update(key, value);
+
+    /**
+     * Called when a snapshot is closed. Frees the retired nodes that the remaining snapshots cannot reach.
+     */
+    synchronized void release(BPlusTreeSnapshot snapshot) {
+        openSnapshots.remove(snapshot.version());
+        // A node retired at version v can be reached only by snapshots older than v
+        long oldest = openSnapshots.isEmpty() ? Long.MAX_VALUE : openSnapshots.first();
+        while (!retired.isEmpty() && retired.peekFirst().version <= oldest) {
+            free(retired.pollFirst());
+        }
     }
+
+    private void free(Node node) {
+        if (node instanceof LeafNode leaf) {
+            if (freeLeaves.size() < MAX_FREE_NODES) {
+                // Do not keep the strings reachable
+                Arrays.fill(leaf.values, null);
+                leaf.next = null;
+                leaf.prev = null;
+                freeLeaves.push(leaf);
+            }
+        } else if (freeInternalNodes.size() < MAX_FREE_NODES) {
+            InternalNode internalNode = (InternalNode) node;
+            Arrays.fill(internalNode.children, null);
+            freeInternalNodes.push(internalNode);
+        }
+    }
+
+    /**
+     * Make the nodes on the path private to the live tree before a write, copying the ones the newest
+     * open snapshot may share and pointing their parents, or the root, at the copies.
+     * The path is updated to the copies.
+     * @param withSiblings Also copy the siblings left and right of each node on the path
+     */
+    private void makeWritable(TreePath path, boolean withSiblings) {
+        if (openSnapshots.isEmpty()) {
+            return;
+        }
+        long shared = openSnapshots.last();
+        if (root.version <= shared) {
+            root = copy(root);
+        }
+        Node node = root;
+        for (int d = 0; d < path.depth; d++) {
+            InternalNode parent = (InternalNode) node;
+            path.parents[d] = parent;
+            int index = path.indexes[d];
+            if (withSiblings) {
+                if (index > 0) {
+                    writableChild(parent, index - 1, shared);
+                }
+                if (index + 1 < parent.childCount) {
+                    writableChild(parent, index + 1, shared);
+                }
+            }
+            node = writableChild(parent, index, shared);
+        }
+        path.leaf = (LeafNode) node;
+    }
+
+    private Node writableChild(InternalNode parent, int index, long shared) {
+        Node child = parent.children[index];
+        if (child.version <= shared) {
+            child = copy(child);
+            parent.children[index] = child;
+        }
+        return child;
+    }
+
+    private Node copy(Node node) {
+        Node copy = node instanceof LeafNode leaf
+                ? leaf.copy(freeLeaves.poll(), version)
+                : ((InternalNode) node).copy(freeInternalNodes.poll(), version);
+        node.version = version;
+        retired.add(node);
+        return copy;
+    }
+
+    /**
+     * Number of snapshots not closed yet.
+     */
+    synchronized int openSnapshots() {
+        return openSnapshots.size();
+    }
+
+    /**
+     * Number of replaced nodes that an open snapshot may still reach.
+     */
+    synchronized int retiredNodes() {
+        return retired.size();
+    }
+
+    /**
+     * Number of reclaimed nodes waiting to be reused.
+     */
+    synchronized int freeNodes() {
+        return freeLeaves.size() + freeInternalNodes.size();
+    }
+
+    /**
+     * Number of entries, not counting tombstones.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of entries deleted lazily and not compacted yet.
+     */
+    int tombstones() {
+        return tombstones;
+    }
+
+    /**
+     * Iterate over all entries with from <= key <= to in ascending key order.
+     * The tree is descended once to the first leaf of the range, then the linked leaves are walked.
+
+     * Time complexity: O(log n + k), where k is the number of entries in the range.
+     */
+    public BPlusTreeCursor range(int from, int to) {
+        return new BPlusTreeCursor(root.findLeaf(from), from, to);
+    }
+
+    /**
+     * Iterate over every entry in ascending key order.
+
+     * Time complexity: O(log n + n)
+     */
+    public BPlusTreeCursor scan() {
+        Node node = root;
+        while (node instanceof InternalNode internalNode) {
+            node = internalNode.children[0];
+        }
+        return new BPlusTreeCursor((LeafNode) node, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+    /**
+     * The root node, for debugging and tests.
+     */
+    Node root() {
+        return root;
+    }
+
+    /**
+     * Number of levels from the root to the leaves, 1 for a tree that is a single leaf.
+     */
+    int height() {
+        int height = 1;
+        Node node = root;
+        while (node instanceof InternalNode internalNode) {
+            node = internalNode.children[0];
+            height++;
+        }
+        return height;
+    }
+
     /**
      * Print the tree structure for debugging and visualization purposes.
      * This method is not part of the standard B+ tree operations but is useful for understanding the tree structure.
@@ -90,12 +468,13 @@ class BPlusTreeMemory {
         StringBuilder indent = new StringBuilder();
         indent.append("  ".repeat(Math.max(0, level)));
 
-        System.out.println(indent + "Level " + level + ": " + node.keys);
-        System.out.println(indent + "Level " + level + ": " + node.values);
+        System.out.println(indent + "Level " + level + ": " + Arrays.toString(node.keys()));
 
-        if (node instanceof InternalNode internalNode) {
-            for (Node child : internalNode.children) {
-                printNode(child, level + 1);
+        if (node instanceof LeafNode leafNode) {
+            System.out.println(indent + "Level " + level + ": " + Arrays.toString(leafNode.values()));
+        } else if (node instanceof InternalNode internalNode) {
+            for (int i = 0; i < internalNode.childCount; i++) {
+                printNode(internalNode.children[i], level + 1);
             }
         }
     }
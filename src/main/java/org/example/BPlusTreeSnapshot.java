@@ -0,0 +1,78 @@
+package org.example;
+
+/**
+ * Immutable, consistent view of a BPlusTreeMemory as of the call to snapshot().
+
+ * Usage:
+ *   try (BPlusTreeSnapshot snapshot = tree.snapshot()) {
+ *       BPlusTreeCursor cursor = snapshot.scan();
+ *       while (cursor.next()) {
+ *           use(cursor.key(), cursor.value());
+ *       }
+ *   }
+
+ * The snapshot keeps the root the tree had at that moment. The live tree copies a node before
+ * writing to it as long as a snapshot may share it, so nothing reachable from this root changes
+ * and any thread may read the snapshot while the owner of the tree keeps writing.
+ * Closing the snapshot lets the tree reuse the nodes that only older versions still reference,
+ * so it must be closed, and neither it nor its cursors may be used afterwards.
+ */
+class BPlusTreeSnapshot implements AutoCloseable {
+    private final BPlusTreeMemory tree;
+    private final Node root;
+    private final long version;
+    private final int size;
+    private volatile boolean closed;
+
+    BPlusTreeSnapshot(BPlusTreeMemory tree, Node root, long version, int size) {
+        this.tree = tree;
+        this.root = root;
+        this.version = version;
+        this.size = size;
+    }
+
+    public String search(int key) {
+        checkOpen();
+        return root.search(key);
+    }
+
+    /**
+     * Iterate over all entries with from <= key <= to in ascending key order, see BPlusTreeMemory.range.
+     */
+    public BPlusTreeCursor range(int from, int to) {
+        checkOpen();
+        return new BPlusTreeCursor(TreePath.descend(root, from, true), from, to);
+    }
+
+    public BPlusTreeCursor scan() {
+        return range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Number of entries in the snapshot, not counting tombstones.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Tree version the snapshot was taken at. Later snapshots have higher versions.
+     */
+    long version() {
+        return version;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Snapshot is closed");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            tree.release(this);
+        }
+    }
+}
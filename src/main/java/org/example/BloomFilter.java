@@ -0,0 +1,230 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over int ids, answering "definitely absent" or "maybe present".
+
+ * With b bits per key and k = b * ln 2 hash functions, the false positive rate is about 0.6185^b,
+ * e.g. 1% for 10 bits per key. The k bit positions come from one 64-bit hash of the id
+ * by double hashing, h1 + i * h2, so a lookup costs one hash and k bit tests.
+
+ * The filter is persisted as:
+ *   magic (int), hashes (int), bits (long), capacity (long), keys (long), covered bytes (long), bit words (long[])
+ * Covered bytes records how much of the data file the filter has seen, like DiskBPlusTree.indexedBytes.
+ */
+class BloomFilter {
+    static final int MAGIC = 0x424C_4F4D;
+    static final int DEFAULT_BITS_PER_KEY = 10;
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashes;
+    // Keys the filter was sized for, more keys raise the false positive rate
+    private final long capacity;
+    private long keyCount;
+    private long coveredBytes;
+
+    /**
+     * @param capacity Number of keys the filter is sized for
+     * @param bitsPerKey Bits per key, more bits mean fewer false positives
+     */
+    BloomFilter(long capacity, int bitsPerKey) {
+        if (bitsPerKey <= 0) {
+            throw new IllegalArgumentException("Bits per key must be positive");
+        }
+        this.capacity = Math.max(1, capacity);
+        // At least one word, rounded up to whole words
+        bitCount = Math.max(64, (this.capacity * bitsPerKey + 63) / 64 * 64);
+        words = new long[(int) (bitCount / 64)];
+        hashes = (int) Math.max(1, Math.min(30, Math.round(bitsPerKey * Math.log(2))));
+    }
+
+    private BloomFilter(long[] words, int hashes, long capacity, long keyCount, long coveredBytes) {
+        this.words = words;
+        this.bitCount = (long) words.length * 64;
+        this.hashes = hashes;
+        this.capacity = capacity;
+        this.keyCount = keyCount;
+        this.coveredBytes = coveredBytes;
+    }
+
+    void add(int key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = index(h1 + i * h2);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        keyCount++;
+    }
+
+    /**
+     * @return false if the key was never added, true if it may have been
+     */
+    boolean mightContain(int key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Map a 32-bit hash onto [0, bitCount) with a multiply instead of a division.
+     */
+    private long index(int hash) {
+        return Math.unsignedMultiplyHigh((hash & 0xFFFF_FFFFL) << 32, bitCount);
+    }
+
+    /**
+     * The 64-bit finalizer of MurmurHash3, it spreads consecutive ids over all bits.
+     */
+    private static long hash(int key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xFF51_AFD7_ED55_8CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CE_B9FE_1A85_EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    long keyCount() {
+        return keyCount;
+    }
+
+    /**
+     * True once more keys were added than the filter was sized for.
+     */
+    boolean isFull() {
+        return keyCount > capacity;
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    long coveredBytes() {
+        return coveredBytes;
+    }
+
+    void setCoveredBytes(long coveredBytes) {
+        this.coveredBytes = coveredBytes;
+    }
+
+    void writeTo(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(hashes);
+            out.writeLong(bitCount);
+            out.writeLong(capacity);
+            out.writeLong(keyCount);
+            out.writeLong(coveredBytes);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * Read a filter written by writeTo.
+     * @return null if the file is missing, truncated or not a filter, the caller then rebuilds it
+     */
+    static BloomFilter readFrom(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int hashes = in.readInt();
+            long bitCount = in.readLong();
+            long capacity = in.readLong();
+            long keyCount = in.readLong();
+            long coveredBytes = in.readLong();
+            if (hashes <= 0 || bitCount <= 0 || bitCount % 64 != 0 || bitCount / 64 > Integer.MAX_VALUE
+                    || file.length() != 40 + bitCount / 8) {
+                return null;
+            }
+            long[] words = new long[(int) (bitCount / 64)];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return new BloomFilter(words, hashes, capacity, keyCount, coveredBytes);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Counters for lookups that consult a filter, shared by all filters of one database.
+     */
+    static class Stats {
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder negatives = new LongAdder();
+        private final LongAdder falsePositives = new LongAdder();
+
+        /**
+         * Count a filter lookup and return its answer.
+         */
+        boolean check(BloomFilter filter, int key) {
+            queries.increment();
+            if (filter.mightContain(key)) {
+                return true;
+            }
+            negatives.increment();
+            return false;
+        }
+
+        /**
+         * Count a lookup the filter let through that then found nothing.
+         */
+        void falsePositive() {
+            falsePositives.increment();
+        }
+
+        long queries() {
+            return queries.sum();
+        }
+
+        long negatives() {
+            return negatives.sum();
+        }
+
+        long falsePositives() {
+            return falsePositives.sum();
+        }
+
+        /**
+         * Share of lookups answered by the filter alone, without reading data pages.
+         */
+        double hitRate() {
+            long total = queries();
+            return total == 0 ? 0 : (double) negatives() / total;
+        }
+
+        /**
+         * Share of lookups for absent keys that the filter failed to reject.
+         */
+        double falsePositiveRate() {
+            long absent = negatives() + falsePositives();
+            return absent == 0 ? 0 : (double) falsePositives() / absent;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Cache of fixed-size pages of a PageFile in a fixed number of frames.
+
+ * Usage:
+ *   Page page = pool.pin(pageNo);
+ *   ... read or change page.data() ...
+ *   pool.unpin(page, changed);
+
+ * A pinned page stays in its frame. Once every user has unpinned it, the frame
+ * can be chosen by the eviction policy and reused for another page.
+ * Changed pages are marked dirty and written back when they are evicted or flushed.
+
+ * The pool is not thread-safe.
+ */
+class BufferPool implements AutoCloseable {
+    private final PageFile file;
+    private final Page[] frames;
+    private final EvictionPolicy policy;
+    // page number -> frame
+    private final IntIntMap pageTable;
+    // Frames that have never been used or were emptied by discard
+    private final int[] freeFrames;
+    private int freeCount;
+    private final IntPredicate unpinned;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long writebacks;
+
+    /**
+     * @param file The file to cache
+     * @param capacity Number of frames, the pool uses about capacity * page size bytes
+     * @param policyFactory Creates the eviction policy for the given number of frames, e.g. LruPolicy::new
+     */
+    BufferPool(PageFile file, int capacity, IntFunction<EvictionPolicy> policyFactory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Buffer pool needs at least one frame");
+        }
+        this.file = file;
+        frames = new Page[capacity];
+        freeFrames = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            frames[i] = new Page(i, file.pageSize());
+            // Hand out low frame numbers first
+            freeFrames[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+        unpinned = frame -> frames[frame].pinCount == 0;
+        policy = policyFactory.apply(capacity);
+        pageTable = new IntIntMap(capacity, -1);
+    }
+
+    PageFile file() {
+        return file;
+    }
+
+    /**
+     * Pin a page, reading it from the file if it is not in the pool.
+     * @throws IllegalStateException if every frame is pinned
+     */
+    Page pin(int pageNo) throws IOException {
+        int frame = pageTable.get(pageNo);
+        if (frame >= 0) {
+            hits++;
+            Metrics.increment(Metrics.Counter.CACHE_HITS);
+            Page page = frames[frame];
+            page.pinCount++;
+            policy.accessed(frame);
+            return page;
+        }
+
+        misses++;
+        Metrics.increment(Metrics.Counter.CACHE_MISSES);
+        Page page = takeFrame();
+        file.readPage(pageNo, page.data);
+        install(page, pageNo);
+        policy.loaded(page.frame, pageNo);
+        return page;
+    }
+
+    /**
+     * Allocate a new page at the end of the file and pin it.
+     * The page starts zeroed and dirty, it is written when evicted or flushed.
+     */
+    Page newPage() throws IOException {
+        Page page = takeFrame();
+        int pageNo = file.allocatePage();
+        Arrays.fill(page.data.array(), (byte) 0);
+        install(page, pageNo);
+        page.dirty = true;
+        policy.loaded(page.frame, pageNo);
+        return page;
+    }
+
+    /**
+     * Release a pin taken by pin or newPage.
+     * @param dirty true if the page content was changed
+     */
+    void unpin(Page page, boolean dirty) {
+        if (page.pinCount <= 0) {
+            throw new IllegalStateException("Page " + page.pageNo + " is not pinned");
+        }
+        page.pinCount--;
+        page.dirty |= dirty;
+    }
+
+    /**
+     * Drop a page from the pool without writing it back.
+     * Used when the page was changed in the file behind the pool's back.
+     */
+    void discard(int pageNo) {
+        int frame = pageTable.get(pageNo);
+        if (frame < 0) {
+            return;
+        }
+        Page page = frames[frame];
+        if (page.pinCount > 0) {
+            throw new IllegalStateException("Page " + pageNo + " is pinned");
+        }
+        pageTable.remove(pageNo);
+        policy.removed(frame);
+        page.pageNo = -1;
+        page.dirty = false;
+        freeFrames[freeCount++] = frame;
+    }
+
+    /**
+     * Drop every page without writing it back, e.g. after the file was truncated.
+     */
+    void discardAll() {
+        for (Page page : frames) {
+            if (page.pageNo >= 0) {
+                discard(page.pageNo);
+            }
+        }
+    }
+
+    /**
+     * Write one pinned page to the file now, e.g. a header that must be in the file
+     * before any page written after it. The page is clean afterwards.
+     */
+    void writeThrough(Page page) throws IOException {
+        if (page.pinCount <= 0) {
+            throw new IllegalStateException("Page " + page.pageNo + " is not pinned");
+        }
+        file.writePage(page.pageNo, page.data);
+        page.dirty = false;
+        writebacks++;
+    }
+
+    /**
+     * Write all dirty pages to the file. Pages stay in the pool.
+     */
+    void flush() throws IOException {
+        for (Page page : frames) {
+            if (page.pageNo >= 0 && page.dirty) {
+                file.writePage(page.pageNo, page.data);
+                page.dirty = false;
+                writebacks++;
+            }
+        }
+    }
+
+    long hits() {
+        return hits;
+    }
+
+    long misses() {
+        return misses;
+    }
+
+    long evictions() {
+        return evictions;
+    }
+
+    long writebacks() {
+        return writebacks;
+    }
+
+    double hitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        file.close();
+    }
+
+    private Page takeFrame() throws IOException {
+        if (freeCount > 0) {
+            return frames[freeFrames[--freeCount]];
+        }
+        int frame = policy.victim(unpinned);
+        if (frame < 0) {
+            throw new IllegalStateException("All " + frames.length + " pages of the buffer pool are pinned");
+        }
+        Page page = frames[frame];
+        evictions++;
+        if (page.dirty) {
+            file.writePage(page.pageNo, page.data);
+            writebacks++;
+        }
+        pageTable.remove(page.pageNo);
+        return page;
+    }
+
+    private void install(Page page, int pageNo) {
+        page.pageNo = pageNo;
+        page.pinCount = 1;
+        page.dirty = false;
+        pageTable.put(pageNo, page.frame);
+    }
+}
@@ -0,0 +1,55 @@
+package org.example;
+
+import java.util.function.IntPredicate;
+
+/**
+ * CLOCK (second chance): an approximation of LRU that only sets a bit on access.
+ * The hand sweeps over the frames, clearing reference bits, and evicts the first
+ * unpinned frame whose bit is already clear. A hit costs one store instead of a list update.
+ */
+class ClockPolicy implements EvictionPolicy {
+    private final boolean[] present;
+    private final boolean[] referenced;
+    private int hand;
+
+    ClockPolicy(int frames) {
+        present = new boolean[frames];
+        referenced = new boolean[frames];
+    }
+
+    @Override
+    public void loaded(int frame, int pageNo) {
+        present[frame] = true;
+        referenced[frame] = true;
+    }
+
+    @Override
+    public void accessed(int frame) {
+        referenced[frame] = true;
+    }
+
+    @Override
+    public void removed(int frame) {
+        present[frame] = false;
+        referenced[frame] = false;
+    }
+
+    @Override
+    public int victim(IntPredicate evictable) {
+        // The first sweep may only clear reference bits, the second one finds a victim if there is one
+        for (int step = 0; step < 2 * present.length; step++) {
+            int frame = hand;
+            hand = (hand + 1) % present.length;
+            if (!present[frame] || !evictable.test(frame)) {
+                continue;
+            }
+            if (referenced[frame]) {
+                referenced[frame] = false;
+            } else {
+                present[frame] = false;
+                return frame;
+            }
+        }
+        return -1;
+    }
+}
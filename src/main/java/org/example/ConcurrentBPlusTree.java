@@ -0,0 +1,403 @@
+package org.example;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe variant of BPlusTreeMemory with the same node layout and split rules.
+
+ * Every node has a StampedLock that doubles as a version number.
+ * - Readers never lock. They descend with optimistic stamps and validate each node after reading it
+ *   (optimistic lock coupling): read the child pointer, take the child's stamp, then validate the parent.
+ *   If a writer changed a node in the meantime the read restarts from the root.
+ * - Writers first descend the same way and convert the leaf's optimistic stamp into a write lock.
+ *   The conversion only succeeds if the leaf did not change since its stamp was validated on the way down,
+ *   so it is still the right leaf. If the leaf has room, only the leaf is locked.
+ *   Updates never change the structure, so they always take this path.
+ * - If the leaf is full, the insert restarts with latch crabbing: write locks are taken from the root down,
+ *   and all locks above a node are released as soon as that node has room for one more key.
+ *   Only the nodes that will split stay locked.
+ * Locks are only taken top-down, so writers cannot deadlock.
+
+ * Node fields are plain fields. Readers see consistent values because a node is only changed under its
+ * write lock and every optimistic read is validated before it is used, as in the StampedLock documentation.
+ */
+class ConcurrentBPlusTree {
+    // Deep enough for any tree of int keys, the height of a tree of order >= 3 is at most about 32
+    private static final int MAX_HEIGHT = 64;
+
+    private volatile CNode root;
+    private final int order;
+
+    ConcurrentBPlusTree(int order) {
+        if (order < 3) {
+            throw new IllegalArgumentException("Order must be at least 3");
+        }
+        this.order = order;
+        root = new CLeaf(order);
+    }
+
+    private abstract static class CNode {
+        final StampedLock lock = new StampedLock();
+        final int[] keys;
+        int keyCount;
+
+        CNode(int order) {
+            // One spare slot for the key that triggers the split, like Node
+            keys = new int[order + 1];
+        }
+
+        /**
+         * Key count as seen by an optimistic reader, clamped so a torn read cannot index out of bounds.
+         * The result is only trusted after the stamp is validated.
+         */
+        int safeKeyCount() {
+            return Math.max(0, Math.min(keyCount, keys.length));
+        }
+    }
+
+    private static final class CLeaf extends CNode {
+        final String[] values;
+        CLeaf next;
+
+        CLeaf(int order) {
+            super(order);
+            values = new String[order + 1];
+        }
+    }
+
+    private static final class CInternal extends CNode {
+        final CNode[] children;
+        int childCount;
+
+        CInternal(int order) {
+            super(order);
+            children = new CNode[keys.length + 1];
+        }
+    }
+
+    /**
+     * Look up a key without taking any lock.
+     */
+    String search(int key) {
+        restart:
+        while (true) {
+            CNode node = root;
+            long stamp = node.lock.tryOptimisticRead();
+            if (stamp == 0 || node != root) {
+                Thread.onSpinWait();
+                continue;
+            }
+            while (node instanceof CInternal internal) {
+                CNode child = internal.children[childIndex(internal, key)];
+                long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+                if (childStamp == 0 || !node.lock.validate(stamp)) {
+                    Thread.onSpinWait();
+                    continue restart;
+                }
+                node = child;
+                stamp = childStamp;
+            }
+
+            CLeaf leaf = (CLeaf) node;
+            String value = null;
+            int count = leaf.safeKeyCount();
+            // The index stays below count even if the keys are torn by a concurrent writer
+            int index = KeySearch.lowerBound(leaf.keys, count, key);
+            if (index < count && leaf.keys[index] == key) {
+                value = leaf.values[index];
+            }
+            if (leaf.lock.validate(stamp)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Set the value of an existing key. Locks only the leaf.
+     * @return false if the key is not in the tree
+     */
+    boolean update(int key, String value) {
+        CLeaf leaf = lockLeaf(key);
+        try {
+            int index = KeySearch.lowerBound(leaf.keys, leaf.keyCount, key);
+            if (index < leaf.keyCount && leaf.keys[index] == key) {
+                leaf.values[index] = value;
+                return true;
+            }
+            return false;
+        } finally {
+            leaf.lock.tryUnlockWrite();
+        }
+    }
+
+    /**
+     * Insert a key. Duplicate keys are kept, like in BPlusTreeMemory.
+     */
+    void insert(int key, String value) {
+        CLeaf leaf = lockLeaf(key);
+        if (leaf.keyCount < order) {
+            // The leaf has room, nothing above it changes
+            insertIntoLeaf(leaf, key, value);
+            leaf.lock.tryUnlockWrite();
+            return;
+        }
+        leaf.lock.tryUnlockWrite();
+        insertWithCrabbing(key, value);
+    }
+
+    /**
+     * Descend with optimistic stamps and write-lock the leaf for key.
+     */
+    private CLeaf lockLeaf(int key) {
+        restart:
+        while (true) {
+            CNode node = root;
+            long stamp = node.lock.tryOptimisticRead();
+            if (stamp == 0 || node != root) {
+                Thread.onSpinWait();
+                continue;
+            }
+            while (node instanceof CInternal internal) {
+                CNode child = internal.children[childIndex(internal, key)];
+                long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+                if (childStamp == 0 || !node.lock.validate(stamp)) {
+                    Thread.onSpinWait();
+                    continue restart;
+                }
+                node = child;
+                stamp = childStamp;
+            }
+            if (node.lock.tryConvertToWriteLock(stamp) != 0) {
+                return (CLeaf) node;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Insert with write locks taken from the root down.
+     * A node that has room for one more key cannot split, so the locks above it are released.
+     */
+    private void insertWithCrabbing(int key, String value) {
+        CNode[] path = new CNode[MAX_HEIGHT];
+        CNode node;
+        while (true) {
+            node = root;
+            node.lock.writeLock();
+            // The root may have been split while we waited for its lock
+            if (node == root) {
+                break;
+            }
+            node.lock.tryUnlockWrite();
+        }
+        int depth = 0;
+        // Nodes from path[lockedFrom] to path[depth] are locked
+        int lockedFrom = 0;
+        path[0] = node;
+        while (node instanceof CInternal internal) {
+            CNode child = internal.children[childIndex(internal, key)];
+            child.lock.writeLock();
+            path[++depth] = child;
+            if (hasRoom(child)) {
+                for (int i = lockedFrom; i < depth; i++) {
+                    path[i].lock.tryUnlockWrite();
+                }
+                lockedFrom = depth;
+            }
+            node = child;
+        }
+
+        CLeaf leaf = (CLeaf) node;
+        insertIntoLeaf(leaf, key, value);
+        CNode result = leaf.keyCount <= order ? null : splitLeafNode(leaf);
+        int level = depth;
+        while (result != null && level > lockedFrom) {
+            level--;
+            CInternal parent = (CInternal) path[level];
+            // Child node was split, we need to insert the new key and child pointer
+            int newKey = result.keys[0];
+            // Remove the first key from an internal node since it is already in the parent
+            if (result instanceof CInternal) {
+                removeFirstKey(result);
+            }
+            insertIntoInternal(parent, newKey, result);
+            // internal node can has order - 1 keys
+            result = parent.keyCount <= order - 1 ? null : splitInternalNode(parent);
+        }
+        if (result != null) {
+            // Only the root can split without a locked parent, lockedFrom is 0 and path[0] is still the root
+            CInternal newRoot = new CInternal(order);
+            int newKey = result.keys[0];
+            if (result instanceof CInternal) {
+                removeFirstKey(result);
+            }
+            newRoot.keys[0] = newKey;
+            newRoot.keyCount = 1;
+            newRoot.children[0] = path[0];
+            newRoot.children[1] = result;
+            newRoot.childCount = 2;
+            root = newRoot;
+        }
+
+        for (int i = lockedFrom; i <= depth; i++) {
+            path[i].lock.tryUnlockWrite();
+        }
+    }
+
+    private boolean hasRoom(CNode node) {
+        return node instanceof CLeaf ? node.keyCount < order : node.keyCount < order - 1;
+    }
+
+    private static void insertIntoLeaf(CLeaf leaf, int key, String value) {
+        int index = KeySearch.upperBound(leaf.keys, leaf.keyCount, key);
+        System.arraycopy(leaf.keys, index, leaf.keys, index + 1, leaf.keyCount - index);
+        System.arraycopy(leaf.values, index, leaf.values, index + 1, leaf.keyCount - index);
+        leaf.keys[index] = key;
+        leaf.values[index] = value;
+        leaf.keyCount++;
+    }
+
+    private static void insertIntoInternal(CInternal node, int key, CNode child) {
+        int index = KeySearch.upperBound(node.keys, node.keyCount, key);
+        System.arraycopy(node.keys, index, node.keys, index + 1, node.keyCount - index);
+        node.keys[index] = key;
+        node.keyCount++;
+        System.arraycopy(node.children, index + 1, node.children, index + 2, node.childCount - index - 1);
+        node.children[index + 1] = child;
+        node.childCount++;
+    }
+
+    private static void removeFirstKey(CNode node) {
+        System.arraycopy(node.keys, 1, node.keys, 0, node.keyCount - 1);
+        node.keyCount--;
+    }
+
+    /**
+     * Same split as LeafNode.splitLeafNode, the caller holds the leaf's write lock.
+     * The new node is not reachable until it is added to the locked parent.
+     */
+    private CLeaf splitLeafNode(CLeaf leaf) {
+        Metrics.increment(Metrics.Counter.NODE_SPLITS);
+        CLeaf newNode = new CLeaf(order);
+        int keyMiddleIndex = leaf.keyCount / 2;
+        int moved = leaf.keyCount - keyMiddleIndex;
+        System.arraycopy(leaf.keys, keyMiddleIndex, newNode.keys, 0, moved);
+        System.arraycopy(leaf.values, keyMiddleIndex, newNode.values, 0, moved);
+        newNode.keyCount = moved;
+        for (int i = keyMiddleIndex; i < leaf.keyCount; i++) {
+            leaf.values[i] = null;
+        }
+        leaf.keyCount = keyMiddleIndex;
+        newNode.next = leaf.next;
+        leaf.next = newNode;
+        return newNode;
+    }
+
+    /**
+     * Same split as InternalNode.splitInternalNode, the caller holds the node's write lock.
+     */
+    private CInternal splitInternalNode(CInternal node) {
+        Metrics.increment(Metrics.Counter.NODE_SPLITS);
+        CInternal newNode = new CInternal(order);
+        int keyMiddleIndex = node.keyCount / 2;
+        newNode.keyCount = node.keyCount - keyMiddleIndex;
+        System.arraycopy(node.keys, keyMiddleIndex, newNode.keys, 0, newNode.keyCount);
+        node.keyCount = keyMiddleIndex;
+        newNode.childCount = node.childCount - (node.keyCount + 1);
+        System.arraycopy(node.children, node.keyCount + 1, newNode.children, 0, newNode.childCount);
+        for (int i = node.keyCount + 1; i < node.childCount; i++) {
+            node.children[i] = null;
+        }
+        node.childCount = node.keyCount + 1;
+        return newNode;
+    }
+
+    private static int childIndex(CNode node, int key) {
+        return KeySearch.upperBound(node.keys, node.safeKeyCount(), key);
+    }
+
+    int height() {
+        int height = 1;
+        CNode node = root;
+        while (node instanceof CInternal internal) {
+            node = internal.children[0];
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Check the structure of the tree and return the number of keys.
+     * Only meaningful while no writer is running.
+     * @throws IllegalStateException describing the first broken invariant
+     */
+    long checkInvariants() {
+        int[] leafDepth = {-1};
+        long count = check(root, Long.MIN_VALUE, Long.MAX_VALUE, 1, leafDepth, true);
+
+        // The leaf chain visits every key once, in order
+        CNode node = root;
+        while (node instanceof CInternal internal) {
+            node = internal.children[0];
+        }
+        long chained = 0;
+        long previous = Long.MIN_VALUE;
+        for (CLeaf leaf = (CLeaf) node; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.keyCount; i++) {
+                if (leaf.keys[i] < previous) {
+                    throw new IllegalStateException("Leaf chain out of order at key " + leaf.keys[i]);
+                }
+                previous = leaf.keys[i];
+                chained++;
+            }
+        }
+        if (chained != count) {
+            throw new IllegalStateException("Leaf chain has " + chained + " keys, tree has " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Keys under node must be in [low, high]; returns the number of keys in leaves under node.
+     */
+    private long check(CNode node, long low, long high, int depth, int[] leafDepth, boolean isRoot) {
+        if (node.lock.isWriteLocked()) {
+            throw new IllegalStateException("Node left locked");
+        }
+        for (int i = 0; i < node.keyCount; i++) {
+            if (node.keys[i] < low || node.keys[i] > high) {
+                throw new IllegalStateException("Key " + node.keys[i] + " outside [" + low + ", " + high + "]");
+            }
+            if (i > 0 && node.keys[i] < node.keys[i - 1]) {
+                throw new IllegalStateException("Keys out of order at " + node.keys[i]);
+            }
+        }
+        if (node instanceof CLeaf) {
+            if (node.keyCount > order) {
+                throw new IllegalStateException("Leaf with " + node.keyCount + " keys");
+            }
+            if (leafDepth[0] == -1) {
+                leafDepth[0] = depth;
+            } else if (leafDepth[0] != depth) {
+                throw new IllegalStateException("Leaves at depth " + leafDepth[0] + " and " + depth);
+            }
+            return node.keyCount;
+        }
+
+        CInternal internal = (CInternal) node;
+        if (internal.keyCount > order - 1 || internal.childCount != internal.keyCount + 1) {
+            throw new IllegalStateException("Internal node with " + internal.keyCount + " keys and "
+                    + internal.childCount + " children");
+        }
+        if (!isRoot && internal.keyCount == 0) {
+            throw new IllegalStateException("Internal node without keys");
+        }
+        long count = 0;
+        for (int i = 0; i < internal.childCount; i++) {
+            long childLow = i == 0 ? low : internal.keys[i - 1];
+            long childHigh = i == internal.keyCount ? high : internal.keys[i];
+            count += check(internal.children[i], childLow, childHigh, depth + 1, leafDepth, false);
+        }
+        return count;
+    }
+}
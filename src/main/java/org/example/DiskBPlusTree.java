@@ -0,0 +1,472 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
+
+/**
+ * B+ tree stored in fixed-size pages of a file, mapping an int key to a long value.
+ * SimpleDataBase uses it to map a user id to the byte offset of its 16-byte record,
+ * so a lookup reads one page per tree level instead of scanning the data file.
+
+ * Nodes follow the same rules as the in-memory LeafNode and InternalNode:
+ * a node is filled up to one key past its maximum and then split in the middle,
+ * the split returns the new right sibling, and the parent takes the sibling's first key
+ * as the separator, removing it from the sibling when the sibling is an internal node.
+ * Leaves are linked through a next page pointer.
+
+ * Pages are accessed through a BufferPool, so the upper levels of the tree normally stay cached
+ * and a lookup only reads the leaf from the file. A page is pinned only while it is used,
+ * the insert path unpins a node before descending and pins it again if the child was split.
+
+ * Page 0 is the meta page:
+ *   0: int  magic
+ *   4: int  page size
+ *   8: int  root page number
+ *  12: long number of data file bytes covered by the index
+ *  20: int  1 if every page was written by flush or close after the last change, else 0
+ * The pool writes dirty pages back in eviction order, so after a crash the file can hold any mix
+ * of old and new nodes next to a stale meta page. The first change after a flush therefore clears
+ * the clean flag and forces the meta page to disk before any node can follow, and flush and close
+ * set it again once every page is on disk. An index opened without the flag is discarded:
+ * it comes back empty with indexedBytes 0, so the caller indexes the whole data file again.
+
+ * Every other page is a node:
+ *   0: byte node type (1 = leaf, 2 = internal)
+ *   4: int  key count
+ *   8: int  next leaf page number, -1 for the last leaf (leaves only)
+ *  12: int[capacity] keys
+ *   then long[capacity] values for leaves, or int[capacity + 1] child page numbers for internal nodes
+ */
+class DiskBPlusTree implements AutoCloseable {
+    static final long NOT_FOUND = -1;
+
+    private static final int MAGIC = 0x53424958; // "SBIX"
+    private static final int META_PAGE = 0;
+    private static final int META_ROOT = 8;
+    private static final int META_INDEXED_BYTES = 12;
+    private static final int META_CLEAN = 20;
+
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int TYPE = 0;
+    private static final int COUNT = 4;
+    private static final int NEXT = 8;
+    private static final int HEADER = 12;
+
+    // Results of the recursive insert besides the page number of a new sibling
+    private static final int NO_SPLIT = -1;
+    private static final int DUPLICATE = -2;
+
+    static final int DEFAULT_CACHE_PAGES = 256;
+
+    private final PageFile file;
+    private final BufferPool pool;
+    private final int pageSize;
+    // Number of key slots in a page, one more than the maximum so a node can overflow before the split
+    private final int leafCapacity;
+    private final int internalCapacity;
+    private int root;
+    private long indexedBytes;
+    // Whether the meta page in the file has the clean flag set
+    private boolean clean;
+    private boolean openedUnclean;
+
+    DiskBPlusTree(String filename, int pageSize) throws IOException {
+        this(filename, pageSize, DEFAULT_CACHE_PAGES, LruPolicy::new);
+    }
+
+    /**
+     * @param cachePages Number of pages kept in the buffer pool
+     * @param policyFactory Eviction policy of the buffer pool, e.g. LruPolicy::new
+     */
+    DiskBPlusTree(String filename, int pageSize, int cachePages, IntFunction<EvictionPolicy> policyFactory)
+            throws IOException {
+        // Each node needs room for at least a few keys to split into two non-empty halves
+        if (pageSize < 64) {
+            throw new IllegalArgumentException("Page size must be at least 64 bytes");
+        }
+        this.pageSize = pageSize;
+        leafCapacity = (pageSize - HEADER) / (Integer.BYTES + Long.BYTES);
+        internalCapacity = (pageSize - HEADER - Integer.BYTES) / (Integer.BYTES + Integer.BYTES);
+        file = new PageFile(filename, pageSize);
+        pool = new BufferPool(file, cachePages, policyFactory);
+
+        if (file.pageCount() == 0) {
+            initialize();
+        } else {
+            Page meta = pool.pin(META_PAGE);
+            try {
+                ByteBuffer data = meta.data();
+                if (data.getInt(0) != MAGIC) {
+                    throw new IOException("Not an index file: " + filename);
+                }
+                if (data.getInt(4) != pageSize) {
+                    throw new IOException("Index page size " + data.getInt(4) + " does not match " + pageSize);
+                }
+                root = data.getInt(META_ROOT);
+                indexedBytes = data.getLong(META_INDEXED_BYTES);
+                clean = data.getInt(META_CLEAN) == 1;
+            } finally {
+                pool.unpin(meta, false);
+            }
+            if (!clean) {
+                // Not closed after the last change, the nodes may be partly written
+                openedUnclean = true;
+                clear();
+            }
+        }
+    }
+
+    private void initialize() throws IOException {
+        Page meta = pool.newPage();
+        pool.unpin(meta, true);
+        Page leaf = pool.newPage();
+        leaf.data().put(TYPE, LEAF);
+        leaf.data().putInt(NEXT, -1);
+        root = leaf.pageNo();
+        pool.unpin(leaf, true);
+        indexedBytes = 0;
+        clean = false;
+        writeMeta(true);
+    }
+
+    /**
+     * Clear the clean flag in the file before the first page of a change can be written.
+     */
+    private void beginChange() throws IOException {
+        if (clean) {
+            clean = false;
+            writeMeta(true);
+        }
+    }
+
+    /**
+     * Insert a key if it is not in the tree yet.
+     * An existing key keeps its value, matching SimpleDataBase.select which returns the first row with an id.
+     * @return false if the key was already present
+     */
+    boolean insert(int key, long value) throws IOException {
+        beginChange();
+        int result = insert(root, key, value);
+        if (result == DUPLICATE) {
+            return false;
+        }
+        if (result != NO_SPLIT) {
+            // Root was split, create a new root
+            int newKey = takeSeparator(result);
+            Page newRoot = pool.newPage();
+            ByteBuffer page = newRoot.data();
+            page.put(TYPE, INTERNAL);
+            page.putInt(COUNT, 1);
+            page.putInt(keyOffset(0), newKey);
+            page.putInt(childOffset(0), root);
+            page.putInt(childOffset(1), result);
+            root = newRoot.pageNo();
+            pool.unpin(newRoot, true);
+            writeMeta(false);
+        }
+        return true;
+    }
+
+    private int insert(int pageNo, int key, long value) throws IOException {
+        Page node = pool.pin(pageNo);
+        ByteBuffer page = node.data();
+        if (page.get(TYPE) == LEAF) {
+            return insertIntoLeaf(node, key, value);
+        }
+        int child = page.getInt(childOffset(upperBound(page, page.getInt(COUNT), key)));
+        // Do not keep the whole path pinned while descending
+        pool.unpin(node, false);
+
+        int result = insert(child, key, value);
+        if (result == NO_SPLIT || result == DUPLICATE) {
+            return result;
+        }
+
+        // Child node was split, we need to insert the new key and child pointer
+        int newKey = takeSeparator(result);
+        node = pool.pin(pageNo);
+        page = node.data();
+        int count = page.getInt(COUNT);
+        // insert first then check if it needs to split
+        int index = upperBound(page, count, newKey);
+        shift(page, keyOffset(index), keyOffset(index + 1), (count - index) * Integer.BYTES);
+        page.putInt(keyOffset(index), newKey);
+        shift(page, childOffset(index + 1), childOffset(index + 2), (count - index) * Integer.BYTES);
+        page.putInt(childOffset(index + 1), result);
+        count++;
+        page.putInt(COUNT, count);
+
+        // internal node can have capacity - 1 keys
+        if (count <= internalCapacity - 1) {
+            pool.unpin(node, true);
+            return NO_SPLIT;
+        }
+        return splitInternalNode(node, count);
+    }
+
+    private int insertIntoLeaf(Page node, int key, long value) throws IOException {
+        ByteBuffer page = node.data();
+        int count = page.getInt(COUNT);
+        int index = lowerBound(page, count, key);
+        if (index < count && page.getInt(keyOffset(index)) == key) {
+            pool.unpin(node, false);
+            return DUPLICATE;
+        }
+
+        // insert first then check if it needs to split
+        shift(page, keyOffset(index), keyOffset(index + 1), (count - index) * Integer.BYTES);
+        page.putInt(keyOffset(index), key);
+        shift(page, valueOffset(index), valueOffset(index + 1), (count - index) * Long.BYTES);
+        page.putLong(valueOffset(index), value);
+        count++;
+        page.putInt(COUNT, count);
+
+        if (count <= leafCapacity - 1) {
+            pool.unpin(node, true);
+            return NO_SPLIT;
+        }
+        return splitLeafNode(node, count);
+    }
+
+    /**
+     * Same split as LeafNode.splitLeafNode: the right half moves to a new page
+     * that is linked in after this one.
+     */
+    private int splitLeafNode(Page node, int count) throws IOException {
+        Metrics.increment(Metrics.Counter.NODE_SPLITS);
+        ByteBuffer page = node.data();
+        int keyMiddleIndex = count / 2;
+        int moved = count - keyMiddleIndex;
+        Page newNode = pool.newPage();
+        int newPageNo = newNode.pageNo();
+        ByteBuffer newPage = newNode.data();
+        newPage.put(TYPE, LEAF);
+        newPage.putInt(COUNT, moved);
+        newPage.put(keyOffset(0), page, keyOffset(keyMiddleIndex), moved * Integer.BYTES);
+        newPage.put(valueOffset(0), page, valueOffset(keyMiddleIndex), moved * Long.BYTES);
+        // Link the new node into the leaf chain right after this node
+        newPage.putInt(NEXT, page.getInt(NEXT));
+        page.putInt(NEXT, newPageNo);
+        page.putInt(COUNT, keyMiddleIndex);
+
+        pool.unpin(newNode, true);
+        pool.unpin(node, true);
+        return newPageNo;
+    }
+
+    /**
+     * Same split as InternalNode.splitInternalNode: the right half of the keys, starting
+     * with the middle key, moves to a new page. The parent removes the middle key from it.
+     */
+    private int splitInternalNode(Page node, int count) throws IOException {
+        Metrics.increment(Metrics.Counter.NODE_SPLITS);
+        ByteBuffer page = node.data();
+        int keyMiddleIndex = count / 2;
+        int moved = count - keyMiddleIndex;
+        Page newNode = pool.newPage();
+        int newPageNo = newNode.pageNo();
+        ByteBuffer newPage = newNode.data();
+        newPage.put(TYPE, INTERNAL);
+        newPage.putInt(COUNT, moved);
+        newPage.put(keyOffset(0), page, keyOffset(keyMiddleIndex), moved * Integer.BYTES);
+        // keyMiddleIndex + 1 children stay, the rest move
+        // the new node has as many children as keys until its first key is removed
+        newPage.put(childOffset(0), page, childOffset(keyMiddleIndex + 1), moved * Integer.BYTES);
+        page.putInt(COUNT, keyMiddleIndex);
+
+        pool.unpin(newNode, true);
+        pool.unpin(node, true);
+        return newPageNo;
+    }
+
+    /**
+     * Read the first key of a new sibling as the separator for its parent.
+     * Remove it from the sibling when the sibling is an internal node, since it is already in the parent.
+     */
+    private int takeSeparator(int siblingPageNo) throws IOException {
+        Page node = pool.pin(siblingPageNo);
+        ByteBuffer sibling = node.data();
+        int separator = sibling.getInt(keyOffset(0));
+        boolean internal = sibling.get(TYPE) == INTERNAL;
+        if (internal) {
+            int count = sibling.getInt(COUNT);
+            shift(sibling, keyOffset(1), keyOffset(0), (count - 1) * Integer.BYTES);
+            sibling.putInt(COUNT, count - 1);
+        }
+        pool.unpin(node, internal);
+        return separator;
+    }
+
+    /**
+     * Look up the value of a key.
+     * Reads one page per level of the tree.
+     * @return the value, or NOT_FOUND
+     */
+    long search(int key) throws IOException {
+        Page node = pool.pin(root);
+        ByteBuffer page = node.data();
+        while (page.get(TYPE) == INTERNAL) {
+            int child = page.getInt(childOffset(upperBound(page, page.getInt(COUNT), key)));
+            pool.unpin(node, false);
+            node = pool.pin(child);
+            page = node.data();
+        }
+        int count = page.getInt(COUNT);
+        int index = lowerBound(page, count, key);
+        long value = NOT_FOUND;
+        if (index < count && page.getInt(keyOffset(index)) == key) {
+            value = page.getLong(valueOffset(index));
+        }
+        pool.unpin(node, false);
+        return value;
+    }
+
+    /**
+     * Number of levels from the root to the leaves, 1 for a tree that is a single leaf.
+     */
+    int height() throws IOException {
+        int height = 1;
+        int pageNo = root;
+        while (true) {
+            Page node = pool.pin(pageNo);
+            boolean internal = node.data().get(TYPE) == INTERNAL;
+            pageNo = node.data().getInt(childOffset(0));
+            pool.unpin(node, false);
+            if (!internal) {
+                return height;
+            }
+            height++;
+        }
+    }
+
+    /**
+     * How many bytes of the data file have been indexed.
+     * Records past this offset were appended while the index was not open and need to be inserted.
+     */
+    long indexedBytes() {
+        return indexedBytes;
+    }
+
+    void setIndexedBytes(long indexedBytes) throws IOException {
+        if (indexedBytes != this.indexedBytes) {
+            beginChange();
+            this.indexedBytes = indexedBytes;
+        }
+    }
+
+    /**
+     * True if the file was not flushed or closed after its last change and was discarded on open,
+     * so the index is empty and the data file has to be indexed again.
+     */
+    boolean openedUnclean() {
+        return openedUnclean;
+    }
+
+    /**
+     * Remove every key.
+     */
+    void clear() throws IOException {
+        pool.discardAll();
+        file.truncate();
+        initialize();
+    }
+
+    /**
+     * The buffer pool in front of the index file, for its hit and miss counters.
+     */
+    BufferPool bufferPool() {
+        return pool;
+    }
+
+    /**
+     * Force all pages to disk, then mark the index clean.
+     */
+    void flush() throws IOException {
+        writeMeta(false);
+        pool.flush();
+        file.sync();
+        if (!clean) {
+            clean = true;
+            writeMeta(true);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        pool.close();
+    }
+
+    /**
+     * @param force true to write the meta page to disk now instead of leaving it dirty in the pool
+     */
+    private void writeMeta(boolean force) throws IOException {
+        Page meta = pool.pin(META_PAGE);
+        ByteBuffer data = meta.data();
+        data.putInt(0, MAGIC);
+        data.putInt(4, pageSize);
+        data.putInt(META_ROOT, root);
+        data.putLong(META_INDEXED_BYTES, indexedBytes);
+        data.putInt(META_CLEAN, clean ? 1 : 0);
+        if (force) {
+            pool.writeThrough(meta);
+            file.sync();
+        }
+        pool.unpin(meta, !force);
+    }
+
+    /**
+     * Index of the first key >= key, used to find a key in a leaf.
+     */
+    private static int lowerBound(ByteBuffer page, int count, int key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (page.getInt(keyOffset(mid)) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first key > key, which is the child to follow in an internal node.
+     * Same rule as KeySearch.upperBound for the in-memory nodes.
+     */
+    private static int upperBound(ByteBuffer page, int count, int key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (page.getInt(keyOffset(mid)) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void shift(ByteBuffer page, int from, int to, int length) {
+        // put(index, ByteBuffer, offset, length) behaves as if the bytes were copied through a temporary buffer,
+        // so overlapping moves within the same page are safe
+        page.put(to, page, from, length);
+    }
+
+    private static int keyOffset(int index) {
+        return HEADER + index * Integer.BYTES;
+    }
+
+    private int valueOffset(int index) {
+        return HEADER + leafCapacity * Integer.BYTES + index * Long.BYTES;
+    }
+
+    private int childOffset(int index) {
+        return HEADER + internalCapacity * Integer.BYTES + index * Integer.BYTES;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Decides which frame of a BufferPool to reuse when a page must be read and no frame is free.
+ * Frames are numbered 0 to frames - 1; implementations take the frame count in their constructor,
+ * so a policy can be passed to the pool as a constructor reference, e.g. LruPolicy::new.
+ */
+interface EvictionPolicy {
+    /**
+     * A page was read into a frame after a miss.
+     */
+    void loaded(int frame, int pageNo);
+
+    /**
+     * A page that was already in the pool was pinned again.
+     */
+    void accessed(int frame);
+
+    /**
+     * The page in a frame was dropped without being chosen as a victim.
+     */
+    void removed(int frame);
+
+    /**
+     * Choose a frame to evict and stop tracking it.
+     * @param evictable false for frames that must not be evicted, i.e. pinned pages
+     * @return the frame, or -1 if no frame can be evicted
+     */
+    int victim(IntPredicate evictable);
+}
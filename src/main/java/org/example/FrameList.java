@@ -0,0 +1,93 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Doubly linked list of buffer pool frame numbers, backed by int arrays instead of list nodes.
+ * Each frame can be in the list at most once. Used by the list based eviction policies
+ * and by the segments of RowCache, whose slots are numbered the same way.
+ */
+class FrameList {
+    private static final int NONE = -1;
+
+    private final int[] prev;
+    private final int[] next;
+    private final boolean[] linked;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+
+    FrameList(int frames) {
+        prev = new int[frames];
+        next = new int[frames];
+        linked = new boolean[frames];
+        Arrays.fill(prev, NONE);
+        Arrays.fill(next, NONE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int frame) {
+        return linked[frame];
+    }
+
+    void addFirst(int frame) {
+        prev[frame] = NONE;
+        next[frame] = head;
+        if (head != NONE) {
+            prev[head] = frame;
+        } else {
+            tail = frame;
+        }
+        head = frame;
+        linked[frame] = true;
+        size++;
+    }
+
+    void remove(int frame) {
+        if (!linked[frame]) {
+            return;
+        }
+        if (prev[frame] != NONE) {
+            next[prev[frame]] = next[frame];
+        } else {
+            head = next[frame];
+        }
+        if (next[frame] != NONE) {
+            prev[next[frame]] = prev[frame];
+        } else {
+            tail = prev[frame];
+        }
+        prev[frame] = NONE;
+        next[frame] = NONE;
+        linked[frame] = false;
+        size--;
+    }
+
+    void moveToFront(int frame) {
+        remove(frame);
+        addFirst(frame);
+    }
+
+    /**
+     * The frame at the tail, i.e. the least recently added or moved, or -1 if the list is empty.
+     */
+    int last() {
+        return tail;
+    }
+
+    /**
+     * Walk from the tail towards the head and return the first frame accepted by the predicate, or -1.
+     */
+    int lastMatching(IntPredicate predicate) {
+        for (int frame = tail; frame != NONE; frame = prev[frame]) {
+            if (predicate.test(frame)) {
+                return frame;
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Approximate access counts of int keys in a count-min sketch with 4-bit counters, for TinyLFU admission.
+
+ * Each key maps to 4 counters, chosen by differently seeded hashes, and its frequency is
+ * the smallest of the 4, which overestimates only when all 4 are shared with other keys.
+ * Counters are packed 16 to a long and saturate at 15.
+ * After sampleSize increments every counter is halved, so the counts follow recent popularity
+ * instead of growing forever and old favourites do not stay in the cache after they cool down.
+ */
+class FrequencySketch {
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    static final int MAX_FREQUENCY = 15;
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param capacity Number of entries of the cache, sizes the table at 8 counters per entry
+     */
+    FrequencySketch(int capacity) {
+        int counters = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 4;
+        table = new long[counters / 16];
+        counterMask = counters - 1;
+        sampleSize = 10 * Math.max(capacity, 8);
+    }
+
+    void increment(int key) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int counter = counterIndex(key, i);
+            int shift = (counter & 15) << 2;
+            long word = table[counter >>> 4];
+            if (((word >>> shift) & 15) < MAX_FREQUENCY) {
+                table[counter >>> 4] = word + (1L << shift);
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int key) {
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int counter = counterIndex(key, i);
+            frequency = Math.min(frequency, (int) (table[counter >>> 4] >>> ((counter & 15) << 2)) & 15);
+        }
+        return frequency;
+    }
+
+    /**
+     * Halve every counter.
+     */
+    void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    void clear() {
+        Arrays.fill(table, 0);
+        additions = 0;
+    }
+
+    private int counterIndex(int key, int hash) {
+        int h = key * SEEDS[hash];
+        h ^= h >>> 16;
+        return h & counterMask;
+    }
+}
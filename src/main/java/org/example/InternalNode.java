@@ -1,6 +1,7 @@
 package org.example;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -9,35 +10,33 @@ import java.util.List;
  * This design allows for more keys in internal nodes, reducing tree height.
  */
 public class InternalNode extends Node {
-    List<Node> children;
+    Node[] children;
+    int childCount;
 
     InternalNode(int order) {
         super(order);
-        children = new ArrayList<>();
+        // There is always one more child than keys
+        children = new Node[keys.length + 1];
     }
 
     @Override
     Node insert(int key, String value) {
-        // Binary search could be used here for better performance in larger nodes
-        int index = 0;
-        while (index < keys.size() && key >= keys.get(index)) {
-            index++;
-        }
-        Node child = children.get(index);
+        int index = KeySearch.upperBound(keys, keyCount, key);
+        Node child = children[index];
         Node result = child.insert(key, value);
 
         if (result != null) {
             // Child node was split, we need to insert the new key and child pointer
-            int newKey = result.keys.getFirst();
+            int newKey = result.keys[0];
             // Remove the first key from InternalNode since it is already in the parent
             if (result instanceof InternalNode) {
-                result.keys.removeFirst();
+                result.removeFirstKey();
             }
 
-            // insert first then check if it needs to split 
+            // insert first then check if it needs to split
             insertIntoNode(newKey, result);
             // internal node can has order - 1 keys
-            if (keys.size() <= order - 1) {
+            if (keyCount <= order - 1) {
                 return null; // No further split needed
             } else {
                 return splitInternalNode();
@@ -47,12 +46,28 @@ public class InternalNode extends Node {
     }
 
     private void insertIntoNode(int key, Node child) {
-        int index = 0;
-        while (index < keys.size() && key >= keys.get(index)) {
-            index++;
-        }
-        keys.add(index, key);
-        children.add(index + 1, child);
+        int index = KeySearch.upperBound(keys, keyCount, key);
+        System.arraycopy(keys, index, keys, index + 1, keyCount - index);
+        keys[index] = key;
+        keyCount++;
+        System.arraycopy(children, index + 1, children, index + 2, childCount - index - 1);
+        children[index + 1] = child;
+        childCount++;
+    }
+
+    /**
+     * Append a separator key after the last key.
+     * The caller must keep keys in ascending order and stay within capacity.
+     */
+    void appendKey(int key) {
+        keys[keyCount++] = key;
+    }
+
+    /**
+     * Append a child pointer after the last child.
+     */
+    void appendChild(Node child) {
+        children[childCount++] = child;
     }
 
     /**
@@ -62,52 +77,186 @@ public class InternalNode extends Node {
      * The middle key is pushed up to the parent, acting as a separator.
      */
     private Node splitInternalNode() {
+        Metrics.increment(Metrics.Counter.NODE_SPLITS);
         InternalNode newNode = new InternalNode(order);
-        int keyMiddleIndex = keys.size() / 2;
+        newNode.version = version;
+        int keyMiddleIndex = keyCount / 2;
 
-        // Notes that update order is important since left and right bounderay is dependent on previous update
         // Move right half of the keys to the new node
-        // Update the new node first because subList's toIndex depends on the current node
-        newNode.keys = new ArrayList<>(keys.subList(keyMiddleIndex, keys.size()));
+        newNode.keyCount = keyCount - keyMiddleIndex;
+        System.arraycopy(keys, keyMiddleIndex, newNode.keys, 0, newNode.keyCount);
         // Update the current node to keep left half
-        keys = new ArrayList<>(keys.subList(0, keyMiddleIndex));
+        keyCount = keyMiddleIndex;
         // Move right half of the children to the new node
-        // Update the new node first because subList's toIndex depends on the current node
-        // keys.size() + 1 will cause size of children is same as keys
+        // keyCount + 1 will cause size of children is same as keys
         // but it is ok because first key of newNode will be pushed up to the parent
         // which means it will be removed from newNode in parent
-        newNode.children = new ArrayList<>(children.subList(keys.size() + 1, children.size()));
+        newNode.childCount = childCount - (keyCount + 1);
+        System.arraycopy(children, keyCount + 1, newNode.children, 0, newNode.childCount);
         // Update the current node to keep left half
-        // keys.size() + 1 because children is 1 more than keys
-        children = new ArrayList<>(children.subList(0, keys.size() + 1));
+        // keyCount + 1 because children is 1 more than keys
+        // Clear the moved slots so the old array does not keep the subtrees reachable
+        Arrays.fill(children, keyCount + 1, childCount, null);
+        childCount = keyCount + 1;
 
         return newNode;
     }
 
+    /**
+     * Copy this node for copy-on-write. The children are shared with the original.
+     * @param target A node of the same order to copy into, with no children left in it, or null to allocate one
+     */
+    InternalNode copy(InternalNode target, long version) {
+        InternalNode copy = target != null ? target : new InternalNode(order);
+        System.arraycopy(keys, 0, copy.keys, 0, keyCount);
+        System.arraycopy(children, 0, copy.children, 0, childCount);
+        copy.keyCount = keyCount;
+        copy.childCount = childCount;
+        copy.version = version;
+        return copy;
+    }
+
+    @Override
+    LeafNode findLeaf(int key) {
+        // Strict comparison: with duplicate keys a run can start in the left sibling
+        // of the child that search() would pick
+        int index = KeySearch.lowerBound(keys, keyCount, key);
+        return children[index].findLeaf(key);
+    }
+
     @Override
     String search(int key) {
-        int index = 0;
-        while (index < keys.size() && key >= keys.get(index)) {
-            index++;
-        }
-        return children.get(index).search(key);
+        int index = KeySearch.upperBound(keys, keyCount, key);
+        return children[index].search(key);
     }
 
     @Override
     Boolean update(int key, String value) {
-        int index = 0;
-        while (index < keys.size() && key >= keys.get(index)) {
-            index++;
+        int index = KeySearch.upperBound(keys, keyCount, key);
+        return children[index].update(key, value);
+    }
+
+    @Override
+    Boolean delete(int key) {
+        // Start left like findLeaf: once the copies of a duplicate key in the right child are deleted,
+        // the separator still routes search() there while copies remain in the left sibling.
+        // Move right only while the separator equals key, a larger one bounds the run
+        for (int index = KeySearch.lowerBound(keys, keyCount, key); index < childCount; index++) {
+            Node child = children[index];
+            if (child.delete(key)) {
+                if (child.keyCount < child.minKeys()) {
+                    rebalance(index);
+                }
+                return true;
+            }
+            if (index == keyCount || keys[index] > key) {
+                break;
+            }
         }
-        return children.get(index).update(key, value);
+        return false;
+    }
+
+    @Override
+    int minKeys() {
+        // A split of order keys leaves order / 2 on the left and order - order / 2 - 1 on the right
+        return (order - 1) / 2;
     }
+
+    /**
+     * Fix the underflowing child at index.
+     * Borrow an entry from a sibling that has more than its minimum,
+     * otherwise merge the child with a sibling, which removes one key from this node.
+     * A sibling at its minimum and an underflowing child always fit into one node.
+     */
+    private void rebalance(int index) {
+        Node left = index > 0 ? children[index - 1] : null;
+        Node right = index < childCount - 1 ? children[index + 1] : null;
+        if (left != null && left.keyCount > left.minKeys()) {
+            borrowFromLeft(index);
+        } else if (right != null && right.keyCount > right.minKeys()) {
+            borrowFromRight(index);
+        } else if (left != null) {
+            merge(index - 1);
+        } else if (right != null) {
+            merge(index);
+        }
+    }
+
+    private void borrowFromLeft(int index) {
+        Node child = children[index];
+        Node left = children[index - 1];
+        if (child instanceof LeafNode leaf) {
+            LeafNode leftLeaf = (LeafNode) left;
+            int last = leftLeaf.keyCount - 1;
+            leaf.insertAt(0, leftLeaf.keys[last], leftLeaf.values[last]);
+            leftLeaf.removeAt(last);
+            keys[index - 1] = leaf.keys[0];
+        } else {
+            // Rotate right through this node: the separator moves down, the left's last key moves up
+            InternalNode node = (InternalNode) child;
+            InternalNode leftNode = (InternalNode) left;
+            System.arraycopy(node.keys, 0, node.keys, 1, node.keyCount);
+            node.keys[0] = keys[index - 1];
+            node.keyCount++;
+            System.arraycopy(node.children, 0, node.children, 1, node.childCount);
+            node.children[0] = leftNode.children[leftNode.childCount - 1];
+            node.childCount++;
+            keys[index - 1] = leftNode.keys[--leftNode.keyCount];
+            leftNode.children[--leftNode.childCount] = null;
+        }
+    }
+
+    private void borrowFromRight(int index) {
+        Node child = children[index];
+        Node right = children[index + 1];
+        if (child instanceof LeafNode leaf) {
+            LeafNode rightLeaf = (LeafNode) right;
+            leaf.append(rightLeaf.keys[0], rightLeaf.values[0]);
+            rightLeaf.removeAt(0);
+            keys[index] = rightLeaf.keys[0];
+        } else {
+            // Rotate left through this node: the separator moves down, the right's first key moves up
+            InternalNode node = (InternalNode) child;
+            InternalNode rightNode = (InternalNode) right;
+            node.appendKey(keys[index]);
+            node.appendChild(rightNode.children[0]);
+            keys[index] = rightNode.removeFirstKey();
+            System.arraycopy(rightNode.children, 1, rightNode.children, 0, rightNode.childCount - 1);
+            rightNode.children[--rightNode.childCount] = null;
+        }
+    }
+
+    /**
+     * Merge children[index + 1] into children[index] and drop the separator between them.
+     */
+    private void merge(int index) {
+        Node left = children[index];
+        Node right = children[index + 1];
+        if (left instanceof LeafNode leftLeaf) {
+            leftLeaf.mergeFrom((LeafNode) right);
+        } else {
+            // The separator comes down between the two halves
+            InternalNode leftNode = (InternalNode) left;
+            InternalNode rightNode = (InternalNode) right;
+            leftNode.appendKey(keys[index]);
+            System.arraycopy(rightNode.keys, 0, leftNode.keys, leftNode.keyCount, rightNode.keyCount);
+            leftNode.keyCount += rightNode.keyCount;
+            System.arraycopy(rightNode.children, 0, leftNode.children, leftNode.childCount, rightNode.childCount);
+            leftNode.childCount += rightNode.childCount;
+        }
+        System.arraycopy(keys, index + 1, keys, index, keyCount - index - 1);
+        keyCount--;
+        System.arraycopy(children, index + 2, children, index + 1, childCount - index - 2);
+        children[--childCount] = null;
+    }
+
     @Override
     public String toString() {
         List<String> childrenKeys = new ArrayList<>();
-        for (Node child : children) {
-            childrenKeys.add(child.keys.toString());
+        for (int i = 0; i < childCount; i++) {
+            childrenKeys.add(Arrays.toString(children[i].keys()));
         }
         String childrenKeysString = String.join(",",  childrenKeys);
-        return "InternalNode{" + "keys=" + keys + ", children=" + childrenKeysString + '}';
+        return "InternalNode{" + "keys=" + Arrays.toString(keys()) + ", children=" + childrenKeysString + '}';
     }
-}
\ No newline at end of file
+}
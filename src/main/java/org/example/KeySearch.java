@@ -0,0 +1,89 @@
+package org.example;
+
+/**
+ * Search in the sorted key array of a node, used by every node type instead of hand-written scans.
+
+ * Two strategies, chosen by the number of keys:
+ *   up to LINEAR_MAX keys - count the keys below the search key over the whole array.
+ *                           The loop has no early exit and no branch on the data, so the JIT
+ *                           compiles it to SIMD compares and adds, several keys per instruction.
+ *   more keys             - branchless binary search. The loop always runs log2(n) times and
+ *                           the comparison only selects the next base, which compiles to a conditional move,
+ *                           so no branch is mispredicted on random keys.
+ * The threshold comes from KeySearchBenchmark: the count is ahead up to about 8 keys,
+ * after that its cost grows with the node while the binary search barely moves.
+
+ * Both return the same index, so callers do not depend on the strategy.
+ */
+final class KeySearch {
+    static final int LINEAR_MAX = 8;
+
+    private KeySearch() {
+    }
+
+    /**
+     * Index of the first key >= key, or count if there is none.
+     * The position where key is inserted before its duplicates.
+     */
+    static int lowerBound(int[] keys, int count, int key) {
+        if (count <= LINEAR_MAX) {
+            return countBelow(keys, count, key);
+        }
+        return branchlessLowerBound(keys, count, key);
+    }
+
+    /**
+     * Index of the first key > key, or count if there is none.
+     * The child to descend into in an internal node, and the position where key is inserted after its duplicates.
+     */
+    static int upperBound(int[] keys, int count, int key) {
+        if (count <= LINEAR_MAX) {
+            return countAtMost(keys, count, key);
+        }
+        return branchlessUpperBound(keys, count, key);
+    }
+
+    static int countBelow(int[] keys, int count, int key) {
+        int below = 0;
+        for (int i = 0; i < count; i++) {
+            below += keys[i] < key ? 1 : 0;
+        }
+        return below;
+    }
+
+    static int countAtMost(int[] keys, int count, int key) {
+        int atMost = 0;
+        for (int i = 0; i < count; i++) {
+            atMost += keys[i] <= key ? 1 : 0;
+        }
+        return atMost;
+    }
+
+    static int branchlessLowerBound(int[] keys, int count, int key) {
+        if (count == 0) {
+            return 0;
+        }
+        int base = 0;
+        int length = count;
+        while (length > 1) {
+            int half = length >>> 1;
+            base = keys[base + half - 1] < key ? base + half : base;
+            length -= half;
+        }
+        return base + (keys[base] < key ? 1 : 0);
+    }
+
+    static int branchlessUpperBound(int[] keys, int count, int key) {
+        if (count == 0) {
+            return 0;
+        }
+        int base = 0;
+        int length = count;
+        while (length > 1) {
+            int half = length >>> 1;
+            base = keys[base + half - 1] <= key ? base + half : base;
+            length -= half;
+        }
+        return base + (keys[base] <= key ? 1 : 0);
+    }
+}
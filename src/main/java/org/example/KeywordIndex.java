@@ -0,0 +1,388 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Inverted index from the words of a name to the records that contain them, for keyword search.
+ * A name is split into tokens at every character that is not a letter or digit, and tokens are lower-cased,
+ * so "Mary-Ann O'Neil" is found by "mary", "ANN" or "neil".
+
+ * Records are numbered in file order, and every posting list is the increasing list of record numbers of one token.
+ * Lists are stored compressed as varint-encoded gaps: records are appended in order, so gaps are small
+ * and a common token costs about one byte per record instead of four.
+ * Every SKIP_INTERVAL postings a skip entry keeps the record and byte offset where that block starts,
+ * so a block can be decoded without the ones before it.
+
+ * Queries combine the lists of their tokens:
+ *   all - intersection. Only the shortest list is decoded. Each of its m records is looked up in a longer list
+ *         of n records by galloping over the skip entries: the probe distance doubles from the last match,
+ *         then a binary search narrows it down, and only the block found is decoded, unless it is already.
+ *         That is O(m log(n / m)) skip entries plus at most min(m, n / SKIP_INTERVAL) decoded blocks,
+ *         instead of decoding all n postings.
+ *   any - union by decoding and merging the lists.
+ * Both return record numbers in increasing order.
+ */
+class KeywordIndex {
+    private final Map<String, PostingList> postings = new HashMap<>();
+
+    /**
+     * Increasing record numbers, stored as the varint-encoded gap to the previous one,
+     * with a skip entry at the start of every block of SKIP_INTERVAL postings.
+     */
+    static final class PostingList {
+        static final int SKIP_INTERVAL = 128;
+
+        private byte[] bytes = new byte[4];
+        private int length;
+        private int count;
+        private int last = -1;
+        // First record of block k and the offset of its gap in bytes
+        private int[] skipRecords = new int[1];
+        private int[] skipOffsets = new int[1];
+        private int skips;
+
+        /**
+         * Append a record number greater than every number already in the list.
+         */
+        void add(int record) {
+            if (record <= last) {
+                throw new IllegalArgumentException("Record " + record + " is not after " + last);
+            }
+            int gap = last < 0 ? record : record - last;
+            if (count % SKIP_INTERVAL == 0) {
+                if (skips == skipRecords.length) {
+                    skipRecords = Arrays.copyOf(skipRecords, skips * 2);
+                    skipOffsets = Arrays.copyOf(skipOffsets, skips * 2);
+                }
+                skipRecords[skips] = record;
+                skipOffsets[skips] = length;
+                skips++;
+            }
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            }
+            // 7 bits per byte, the high bit marks that more bytes follow
+            while ((gap & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            bytes[length++] = (byte) gap;
+            last = record;
+            count++;
+        }
+
+        int[] decode() {
+            int[] records = new int[count];
+            int position = 0;
+            int record = 0;
+            for (int i = 0; i < count; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                record = i == 0 ? gap : record + gap;
+                records[i] = record;
+            }
+            return records;
+        }
+
+        /**
+         * Decode block k of the list into block.
+         * @return The number of postings in the block
+         */
+        private int decodeBlock(int k, int[] block) {
+            int size = Math.min(SKIP_INTERVAL, count - k * SKIP_INTERVAL);
+            int position = skipOffsets[k];
+            // The first gap is not needed, the skip entry has the record
+            while (bytes[position++] < 0) {
+            }
+            int record = skipRecords[k];
+            block[0] = record;
+            for (int i = 1; i < size; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                record += gap;
+                block[i] = record;
+            }
+            return size;
+        }
+
+        Cursor cursor() {
+            return new Cursor();
+        }
+
+        /**
+         * Forward-only position in the list that decodes one block at a time, see advance.
+         */
+        final class Cursor {
+            private final int[] block = new int[SKIP_INTERVAL];
+            private int blockIndex = -1;
+            private int blockSize;
+            private int position;
+            private int blocksDecoded;
+
+            /**
+             * Move to the first record >= target at or after the current one.
+             * Targets must not decrease between calls.
+             * @return The record, or -1 if there is none
+             */
+            int advance(int target) {
+                int from = Math.max(blockIndex, 0);
+                // First block starting after target, the one before it is the only one that may hold target
+                int next = gallop(skipRecords, from, skips, target);
+                if (next < skips && skipRecords[next] == target) {
+                    next++;
+                }
+                int k = Math.max(next - 1, from);
+                if (k != blockIndex) {
+                    load(k);
+                }
+                position = gallop(block, position, blockSize, target);
+                if (position == blockSize) {
+                    // Everything left in this block is below target, the next block starts after it
+                    if (blockIndex + 1 == skips) {
+                        return -1;
+                    }
+                    load(blockIndex + 1);
+                }
+                return block[position];
+            }
+
+            private void load(int k) {
+                blockSize = decodeBlock(k, block);
+                blockIndex = k;
+                position = 0;
+                blocksDecoded++;
+            }
+
+            /**
+             * Blocks decoded so far, to check that advance skips the rest.
+             */
+            int blocksDecoded() {
+                return blocksDecoded;
+            }
+        }
+
+        int size() {
+            return count;
+        }
+
+        int last() {
+            return last;
+        }
+
+        /**
+         * Bytes used by the encoded gaps.
+         */
+        int encodedBytes() {
+            return length;
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Index the name of a record. Records must be added in increasing order.
+     */
+    void add(int record, String name) {
+        for (String token : tokenize(name)) {
+            PostingList list = postings.computeIfAbsent(token, t -> new PostingList());
+            // A token repeated within one name is indexed once
+            if (list.last() != record) {
+                list.add(record);
+            }
+        }
+    }
+
+    /**
+     * Records whose name contains every token of the keywords.
+     */
+    int[] all(String keywords) {
+        List<String> tokens = tokenize(keywords);
+        if (tokens.isEmpty()) {
+            return new int[0];
+        }
+        List<PostingList> lists = new ArrayList<>();
+        for (String token : tokens) {
+            PostingList list = postings.get(token);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        int[] result = lists.get(0).decode();
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Records whose name contains at least one token of the keywords.
+     */
+    int[] any(String keywords) {
+        int[] result = new int[0];
+        for (String token : tokenize(keywords)) {
+            PostingList list = postings.get(token);
+            if (list != null) {
+                result = union(result, list.decode());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Intersection of two increasing lists, galloping through the longer one.
+     */
+    static int[] intersect(int[] small, int[] large) {
+        if (small.length > large.length) {
+            return intersect(large, small);
+        }
+        int[] result = new int[small.length];
+        int count = 0;
+        int from = 0;
+        for (int value : small) {
+            from = gallop(large, from, value);
+            if (from == large.length) {
+                break;
+            }
+            if (large[from] == value) {
+                result[count++] = value;
+                from++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Intersection of an increasing list with a posting list, galloping through the skip entries
+     * of the posting list and decoding only the blocks that may hold a record of small.
+     */
+    static int[] intersect(int[] small, PostingList large) {
+        PostingList.Cursor cursor = large.cursor();
+        int[] result = new int[small.length];
+        int count = 0;
+        for (int value : small) {
+            int found = cursor.advance(value);
+            if (found < 0) {
+                break;
+            }
+            if (found == value) {
+                result[count++] = value;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Index of the first element >= value at or after from, or list.length if there is none.
+     */
+    static int gallop(int[] list, int from, int value) {
+        return gallop(list, from, list.length, value);
+    }
+
+    /**
+     * gallop over the first length elements of list.
+     */
+    static int gallop(int[] list, int from, int length, int value) {
+        if (from >= length || list[from] >= value) {
+            return from;
+        }
+        // Double the step until it passes value, list[low] < value holds throughout
+        int low = from;
+        int step = 1;
+        while (low + step < length && list[low + step] < value) {
+            low += step;
+            step <<= 1;
+        }
+        int high = Math.min(low + step, length);
+        // Binary search in (low, high]
+        low++;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[count++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[count++] = a[i++];
+        }
+        while (j < b.length) {
+            result[count++] = b[j++];
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    int tokens() {
+        return postings.size();
+    }
+
+    /**
+     * Bytes of all encoded posting lists, to compare with 4 bytes per posting uncompressed.
+     */
+    long encodedBytes() {
+        long bytes = 0;
+        for (PostingList list : postings.values()) {
+            bytes += list.encodedBytes();
+        }
+        return bytes;
+    }
+
+    long postingCount() {
+        long total = 0;
+        for (PostingList list : postings.values()) {
+            total += list.size();
+        }
+        return total;
+    }
+}
@@ -1,29 +1,42 @@
 package org.example;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Leaf nodes store the actual keys and form a linked list.
  * This allows for efficient range queries and sequential access.
+
+ * Values are stored in a String array parallel to the key array,
+ * so the value for keys[i] is values[i].
+
+ * With lazy deletes, a deleted entry keeps its slot and its value is replaced by TOMBSTONE,
+ * which search, update and cursors skip. The sentinel is compared by identity.
+
+ * Leaves are also linked backwards, so a copy made for a snapshot can take the place of
+ * the original in the chain without searching for its predecessor. Snapshots never follow
+ * the links, which is why they may be updated on leaves a snapshot shares.
  */
 public class LeafNode extends Node {
+    static final String TOMBSTONE = new String("<deleted>");
+
+    String[] values;
+    // Right sibling in key order, null for the last leaf
+    LeafNode next;
+    // Left sibling in key order, null for the first leaf
+    LeafNode prev;
+
     LeafNode(int order) {
         super(order);
+        values = new String[order + 1];
     }
 
 
     @Override
     Node insert(int key, String value) {
-        int index = 0;
-        while (index < keys.size() && key > keys.get(index)) {
-            index++;
-        }
-        System.out.println("insert key: " + key+ " insert value: "+ value + " index: " + index + " " + this);
-
-        // insert first then check if it needs to split 
+        // insert first then check if it needs to split
         insertIntoNode(key, value);
         // max number of keys in leaf node is order
-        if (keys.size() <= order) {
+        if (keyCount <= order) {
             return null; // Leaf node not full, no split needed
         } else {
             return splitLeafNode();
@@ -31,12 +44,66 @@ public class LeafNode extends Node {
     }
 
     private void insertIntoNode(int key, String value) {
-        int index = 0;
-        while (index < keys.size() && key >= keys.get(index)) {
-            index++;
+        insertAt(KeySearch.upperBound(keys, keyCount, key), key, value);
+    }
+
+    /**
+     * Index of the first live entry for key, or -1 if there is none.
+     * Duplicates are adjacent, so the scan starts at the lower bound and stops at the first larger key.
+     */
+    private int indexOf(int key) {
+        for (int i = KeySearch.lowerBound(keys, keyCount, key); i < keyCount && keys[i] == key; i++) {
+            if (values[i] != TOMBSTONE) {
+                return i;
+            }
         }
-        keys.add(index, key);
-        values.add(index, value);
+        return -1;
+    }
+
+    /**
+     * Put an entry at index, shifting the tail right by one slot to make room.
+     */
+    void insertAt(int index, int key, String value) {
+        System.arraycopy(keys, index, keys, index + 1, keyCount - index);
+        System.arraycopy(values, index, values, index + 1, keyCount - index);
+        keys[index] = key;
+        values[index] = value;
+        keyCount++;
+    }
+
+    /**
+     * Remove the entry at index, shifting the tail left.
+     */
+    void removeAt(int index) {
+        System.arraycopy(keys, index + 1, keys, index, keyCount - index - 1);
+        System.arraycopy(values, index + 1, values, index, keyCount - index - 1);
+        keyCount--;
+        // Do not keep the string reachable from the vacated slot
+        values[keyCount] = null;
+    }
+
+    /**
+     * Move every entry of the right sibling to the end of this leaf and unlink the sibling.
+     * The caller makes sure the entries fit.
+     */
+    void mergeFrom(LeafNode right) {
+        System.arraycopy(right.keys, 0, keys, keyCount, right.keyCount);
+        System.arraycopy(right.values, 0, values, keyCount, right.keyCount);
+        keyCount += right.keyCount;
+        next = right.next;
+        if (next != null) {
+            next.prev = this;
+        }
+    }
+
+    /**
+     * Append a key and value after the last entry.
+     * The caller must keep keys in ascending order and stay within capacity.
+     */
+    void append(int key, String value) {
+        keys[keyCount] = key;
+        values[keyCount] = value;
+        keyCount++;
     }
 
 
@@ -48,46 +115,99 @@ public class LeafNode extends Node {
      * The first key of the new node is pushed up to the parent as a separator.
      */
     private Node splitLeafNode() {
+        Metrics.increment(Metrics.Counter.NODE_SPLITS);
         LeafNode newNode = new LeafNode(order);
-        int keyMiddleIndex = keys.size() / 2;
-        
+        int keyMiddleIndex = keyCount / 2;
+        int moved = keyCount - keyMiddleIndex;
+
         // Move the right half of the keys to the new node.
-        // Update the new node first because subList's toIndex depends on the current node's keys.
-        newNode.keys = new ArrayList<>(keys.subList(keyMiddleIndex, keys.size()));
-        newNode.values = new ArrayList<>(values.subList(keyMiddleIndex, values.size()));
+        System.arraycopy(keys, keyMiddleIndex, newNode.keys, 0, moved);
+        System.arraycopy(values, keyMiddleIndex, newNode.values, 0, moved);
+        newNode.keyCount = moved;
         // Update the current node to keep left half
-        keys = new ArrayList<>(keys.subList(0, keyMiddleIndex));
-        values = new ArrayList<>(values.subList(0, keyMiddleIndex));
-
+        // Clear the moved values so the old slots do not keep the strings reachable
+        Arrays.fill(values, keyMiddleIndex, keyCount, null);
+        keyCount = keyMiddleIndex;
+        // Link the new node into the leaf chain right after this node
+        newNode.version = version;
+        newNode.next = next;
+        newNode.prev = this;
+        if (next != null) {
+            next.prev = newNode;
+        }
+        next = newNode;
 
         return newNode;
     }
 
+    /**
+     * Copy this leaf for copy-on-write and link the copy into the leaf chain in its place.
+     * @param target A leaf of the same order to copy into, with no values left in it, or null to allocate one
+     */
+    LeafNode copy(LeafNode target, long version) {
+        LeafNode copy = target != null ? target : new LeafNode(order);
+        System.arraycopy(keys, 0, copy.keys, 0, keyCount);
+        System.arraycopy(values, 0, copy.values, 0, keyCount);
+        copy.keyCount = keyCount;
+        copy.version = version;
+        copy.prev = prev;
+        copy.next = next;
+        if (prev != null) {
+            prev.next = copy;
+        }
+        if (next != null) {
+            next.prev = copy;
+        }
+        return copy;
+    }
+
+    @Override
+    LeafNode findLeaf(int key) {
+        return this;
+    }
+
     @Override
     String search(int key) {
-        // Linear search is used here. For very large order, binary search could be more efficient
-        for (int i = 0; i < keys.size(); i++) {
-            if (key == keys.get(i)) {
-                return values.get(i);
-            }
-        }
-        return null;
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
     }
 
     @Override
     Boolean update(int key, String value) {
-        for (int i = 0; i < keys.size(); i++) {
-            if (key == keys.get(i)) {
-                values.set(i, value);
-                return true;
-            }
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
         }
-        return false;
+        values[index] = value;
+        return true;
+    }
+
+    @Override
+    Boolean delete(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    int minKeys() {
+        // A split of order + 1 keys leaves (order + 1) / 2 in the left half
+        return (order + 1) / 2;
+    }
+
+    /**
+     * Copy of the used part of the value array, for debugging and tests.
+     */
+    String[] values() {
+        return Arrays.copyOf(values, keyCount);
     }
 
 
     @Override
     public String toString() {
-        return "LeafNode{" + keys.toString() + "}";
+        return "LeafNode{" + Arrays.toString(keys()) + "}";
     }
 }
@@ -0,0 +1,40 @@
+package org.example;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Least recently used: evict the unpinned page whose last pin is the oldest.
+ * A single large scan pushes every other page out of the pool.
+ */
+class LruPolicy implements EvictionPolicy {
+    // Most recently used frame first
+    private final FrameList frames;
+
+    LruPolicy(int frames) {
+        this.frames = new FrameList(frames);
+    }
+
+    @Override
+    public void loaded(int frame, int pageNo) {
+        frames.addFirst(frame);
+    }
+
+    @Override
+    public void accessed(int frame) {
+        frames.moveToFront(frame);
+    }
+
+    @Override
+    public void removed(int frame) {
+        frames.remove(frame);
+    }
+
+    @Override
+    public int victim(IntPredicate evictable) {
+        int frame = frames.lastMatching(evictable);
+        if (frame >= 0) {
+            frames.remove(frame);
+        }
+        return frame;
+    }
+}
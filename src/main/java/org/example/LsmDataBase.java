@@ -0,0 +1,518 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Log-structured alternative to SimpleDataBase, stored in a directory.
+ * Writes are appends, reads are binary searches, and inserting an existing id replaces its name.
+
+ * Write path:
+ *   1. The 16-byte record is appended to the log of the current memtable, <seq>.log
+ *   2. The record goes into the memtable, a BPlusTreeMemory from id to name
+ *   3. A full memtable is frozen and a background thread writes it as a sorted segment, <seq>.seg
+ * Segments are immutable files of 16-byte records sorted by id with unique ids,
+ * the same layout SimpleDataBase.selectBinarySearch reads, and are searched through a mapping.
+
+ * Read path: the memtable, then the frozen memtable being written, then the segments from newest to oldest.
+ * The first hit wins, so newer records shadow older ones.
+ * Every segment has a Bloom filter over its ids in <seq>.bloom, so a segment without the id
+ * is almost always skipped without touching its pages. A missing filter is rebuilt on open.
+
+ * Size-tiered compaction: a segment's tier is log base fanout of its size in memtables.
+ * When fanout consecutive segments are in the same tier, the background thread merges them into one,
+ * keeping the newest record for every id. Reads then search O(fanout * log n) segments at most.
+ * The merged segment takes the newest input's sequence number, so it stays ordered against the others.
+
+ * Recovery: logs without a segment are replayed and flushed when the directory is opened.
+ * The log is not fsynced per insert, call sync for that, a crash loses what the operating system did not write.
+
+ * Not thread-safe, the only other thread is the internal background thread.
+ */
+public class LsmDataBase implements AutoCloseable {
+    static final int DEFAULT_MEMTABLE_RECORDS = 64 * 1024;
+    static final int DEFAULT_FANOUT = 4;
+    private static final int MEMTABLE_ORDER = 64;
+
+    private final File directory;
+    private final int memtableRecords;
+    private final int fanout;
+    private final int bitsPerKey;
+    private final BloomFilter.Stats bloomStats = new BloomFilter.Stats();
+    private final ExecutorService background;
+
+    private BPlusTreeMemory memtable;
+    private FileChannel log;
+    private long seq;
+    // Frozen memtable while the background thread writes it, read by select meanwhile
+    private volatile BPlusTreeMemory flushing;
+    private Future<?> pendingFlush;
+    // Newest first, replaced as a whole by flushes and compactions
+    private volatile List<Segment> segments = List.of();
+    // Segments replaced by a compaction, closed by the caller thread once no read can be using them
+    private final List<Segment> retired = new ArrayList<>();
+    private volatile Throwable failure;
+
+    private record Segment(long seq, File file, MappedRecordFile records, BloomFilter bloom) {
+        long bytes() {
+            return records.recordCount() * SimpleDataBase.RECORD_SIZE;
+        }
+    }
+
+    public LsmDataBase(String directory) {
+        this(directory, DEFAULT_MEMTABLE_RECORDS, DEFAULT_FANOUT, BloomFilter.DEFAULT_BITS_PER_KEY);
+    }
+
+    LsmDataBase(String directory, int memtableRecords, int fanout) {
+        this(directory, memtableRecords, fanout, BloomFilter.DEFAULT_BITS_PER_KEY);
+    }
+
+    /**
+     * @param memtableRecords Records in a memtable before it is flushed to a segment
+     * @param fanout Segments of one tier that are merged into one
+     * @param bitsPerKey Size of the segments' Bloom filters, more bits mean fewer wasted segment searches
+     */
+    LsmDataBase(String directory, int memtableRecords, int fanout, int bitsPerKey) {
+        if (memtableRecords <= 0) {
+            throw new IllegalArgumentException("Memtable size must be positive");
+        }
+        if (fanout < 2) {
+            throw new IllegalArgumentException("Fanout must be at least 2");
+        }
+        this.directory = new File(directory);
+        this.memtableRecords = memtableRecords;
+        this.fanout = fanout;
+        this.bitsPerKey = bitsPerKey;
+        background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lsm-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            open();
+        } catch (IOException e) {
+            background.shutdown();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory.toPath());
+        List<Long> segmentSeqs = new ArrayList<>();
+        List<Long> logSeqs = new ArrayList<>();
+        for (File file : directory.listFiles()) {
+            String name = file.getName();
+            if (name.endsWith(".tmp")) {
+                // Left by a flush or compaction that did not finish
+                file.delete();
+            } else if (name.endsWith(".seg")) {
+                segmentSeqs.add(Long.parseLong(name.substring(0, name.length() - 4)));
+            } else if (name.endsWith(".log")) {
+                logSeqs.add(Long.parseLong(name.substring(0, name.length() - 4)));
+            }
+        }
+        logSeqs.sort(null);
+        for (long logSeq : logSeqs) {
+            File logFile = logFile(logSeq);
+            if (!segmentSeqs.contains(logSeq)) {
+                BPlusTreeMemory replayed = replay(logFile);
+                if (replayed.size() > 0) {
+                    writeSegment(replayed, logSeq);
+                    segmentSeqs.add(logSeq);
+                }
+            }
+            logFile.delete();
+        }
+
+        segmentSeqs.sort(Comparator.reverseOrder());
+        List<Segment> opened = new ArrayList<>();
+        for (long segmentSeq : segmentSeqs) {
+            opened.add(openSegment(segmentSeq));
+        }
+        segments = List.copyOf(opened);
+        seq = segmentSeqs.isEmpty() ? 1 : segmentSeqs.getFirst() + 1;
+        startMemtable();
+        pendingFlush = background.submit(this::compact);
+    }
+
+    private BPlusTreeMemory replay(File logFile) throws IOException {
+        BPlusTreeMemory replayed = new BPlusTreeMemory(MEMTABLE_ORDER);
+        byte[] bytes = Files.readAllBytes(logFile.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        // A torn record at the end was never acknowledged as written, skip it
+        for (int offset = 0; offset + SimpleDataBase.RECORD_SIZE <= bytes.length; offset += SimpleDataBase.RECORD_SIZE) {
+            User user = SimpleDataBase.decodeRecord(buffer, offset);
+            put(replayed, user.id(), user.name());
+        }
+        return replayed;
+    }
+
+    private static void put(BPlusTreeMemory tree, int id, String name) {
+        if (!tree.update(id, name)) {
+            tree.insert(id, name);
+        }
+    }
+
+    private void startMemtable() throws IOException {
+        memtable = new BPlusTreeMemory(MEMTABLE_ORDER);
+        log = FileChannel.open(logFile(seq).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private File logFile(long seq) {
+        return new File(directory, seq + ".log");
+    }
+
+    private File segmentFile(long seq) {
+        return new File(directory, seq + ".seg");
+    }
+
+    private File bloomFile(long seq) {
+        return new File(directory, seq + ".bloom");
+    }
+
+    /**
+     * Map a segment and load its Bloom filter, rebuilding the filter if it is missing or belongs to another file.
+     */
+    private Segment openSegment(long seq) throws IOException {
+        File file = segmentFile(seq);
+        MappedRecordFile records = new MappedRecordFile(file.getPath(), MappedRecordFile.DEFAULT_CHUNK_SIZE);
+        BloomFilter bloom = BloomFilter.readFrom(bloomFile(seq));
+        if (bloom == null || bloom.coveredBytes() != file.length()) {
+            bloom = new BloomFilter(records.recordCount(), bitsPerKey);
+            for (long i = 0; i < records.recordCount(); i++) {
+                bloom.add(records.read(i).id());
+            }
+            bloom.setCoveredBytes(file.length());
+            bloom.writeTo(bloomFile(seq));
+        }
+        return new Segment(seq, file, records, bloom);
+    }
+
+    /**
+     * Insert a user, or replace the name of an existing id.
+     * The name is truncated to 12 bytes of UTF-8 like in SimpleDataBase.insert.
+     */
+    public void insert(int id, String name) {
+        checkFailure();
+        try {
+            ByteBuffer record = ByteBuffer.allocate(SimpleDataBase.RECORD_SIZE).putInt(id);
+            RecordWriter.encodeName(name, record);
+            record.flip();
+            while (record.hasRemaining()) {
+                log.write(record);
+            }
+            // Keep the name as it will read back from a segment
+            put(memtable, id, SimpleDataBase.decodeRecord(record, 0).name());
+            if (memtable.size() >= memtableRecords) {
+                rotate();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public User select(int id) {
+        checkFailure();
+        closeRetired();
+        String name = memtable.search(id);
+        if (name != null) {
+            return new User(id, name);
+        }
+        BPlusTreeMemory frozen = flushing;
+        if (frozen != null) {
+            name = frozen.search(id);
+            if (name != null) {
+                return new User(id, name);
+            }
+        }
+        for (Segment segment : segments) {
+            if (!bloomStats.check(segment.bloom(), id)) {
+                continue;
+            }
+            User user = segment.records().binarySearch(id);
+            if (user != null) {
+                return user;
+            }
+            bloomStats.falsePositive();
+        }
+        return null;
+    }
+
+    /**
+     * Freeze the memtable and hand it to the background thread.
+     * Waits for the previous flush first, so at most one memtable is frozen at a time.
+     */
+    private void rotate() throws IOException {
+        awaitBackground();
+        closeRetired();
+        BPlusTreeMemory frozen = memtable;
+        long frozenSeq = seq;
+        log.close();
+        flushing = frozen;
+        seq++;
+        startMemtable();
+        pendingFlush = background.submit(() -> {
+            try {
+                writeSegment(frozen, frozenSeq);
+                Segment segment = openSegment(frozenSeq);
+                List<Segment> updated = new ArrayList<>(segments.size() + 1);
+                updated.add(segment);
+                updated.addAll(segments);
+                // Publish the segment before dropping the frozen memtable, so no read misses its records
+                segments = List.copyOf(updated);
+                flushing = null;
+                logFile(frozenSeq).delete();
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+                return;
+            }
+            compact();
+        });
+    }
+
+    /**
+     * Write a tree's entries as a sorted segment, through a temporary file so a crash never leaves half a segment,
+     * and its Bloom filter.
+     */
+    private void writeSegment(BPlusTreeMemory tree, long seq) throws IOException {
+        File file = segmentFile(seq);
+        File tmp = new File(file.getPath() + ".tmp");
+        BloomFilter bloom = new BloomFilter(tree.size(), bitsPerKey);
+        try (RecordWriter writer = new RecordWriter(tmp.getPath(), RecordWriter.SyncMode.EVERY_FLUSH, 0, null)) {
+            BPlusTreeCursor cursor = tree.scan();
+            while (cursor.next()) {
+                writer.append(cursor.key(), cursor.value());
+                bloom.add(cursor.key());
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        bloom.setCoveredBytes(file.length());
+        bloom.writeTo(bloomFile(seq));
+    }
+
+    /**
+     * Tier of a segment: 0 below fanout memtables, 1 below fanout^2 and so on.
+     */
+    private int tier(long bytes) {
+        int tier = 0;
+        long limit = (long) memtableRecords * SimpleDataBase.RECORD_SIZE * fanout;
+        while (bytes >= limit) {
+            tier++;
+            limit *= fanout;
+        }
+        return tier;
+    }
+
+    /**
+     * Merge runs of fanout consecutive segments of the same tier until there are none. Runs on the background thread.
+     */
+    private void compact() {
+        try {
+            List<Segment> run;
+            while ((run = findRun()) != null) {
+                long mergedSeq = run.getFirst().seq();
+                merge(run, mergedSeq);
+                Segment segment = openSegment(mergedSeq);
+                List<Segment> updated = new ArrayList<>();
+                for (Segment old : segments) {
+                    if (old == run.getFirst()) {
+                        updated.add(segment);
+                    } else if (!run.contains(old)) {
+                        updated.add(old);
+                    }
+                }
+                segments = List.copyOf(updated);
+                for (Segment old : run) {
+                    if (old.seq() != mergedSeq) {
+                        old.file().delete();
+                        bloomFile(old.seq()).delete();
+                    }
+                }
+                synchronized (retired) {
+                    retired.addAll(run);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    private List<Segment> findRun() {
+        List<Segment> current = segments;
+        for (int start = 0; start + fanout <= current.size(); start++) {
+            int tier = tier(current.get(start).bytes());
+            int end = start + 1;
+            while (end < current.size() && end - start < fanout && tier(current.get(end).bytes()) == tier) {
+                end++;
+            }
+            if (end - start == fanout) {
+                return current.subList(start, end);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * K-way merge of segments given newest first. For an id in several segments, the newest record is kept.
+     * The result and its Bloom filter replace the newest segment's files.
+     */
+    private void merge(List<Segment> run, long seq) throws IOException {
+        File file = segmentFile(seq);
+        // Position in each input and the record there
+        long[] positions = new long[run.size()];
+        User[] heads = new User[run.size()];
+        // Smaller id first, and for equal ids the newer segment, which has the lower index
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> {
+            int byId = Integer.compare(heads[a].id(), heads[b].id());
+            return byId != 0 ? byId : Integer.compare(a, b);
+        });
+        long inputRecords = 0;
+        for (int i = 0; i < run.size(); i++) {
+            inputRecords += run.get(i).records().recordCount();
+            if (run.get(i).records().recordCount() > 0) {
+                heads[i] = run.get(i).records().read(0);
+                queue.add(i);
+            }
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        BloomFilter bloom = new BloomFilter(inputRecords, bitsPerKey);
+        try (RecordWriter writer = new RecordWriter(tmp.getPath(), RecordWriter.SyncMode.EVERY_FLUSH, 0, null)) {
+            boolean first = true;
+            int lastId = 0;
+            while (!queue.isEmpty()) {
+                int i = queue.poll();
+                User user = heads[i];
+                if (first || user.id() != lastId) {
+                    writer.append(user.id(), user.name());
+                    bloom.add(user.id());
+                    lastId = user.id();
+                    first = false;
+                }
+                MappedRecordFile records = run.get(i).records();
+                if (++positions[i] < records.recordCount()) {
+                    heads[i] = records.read(positions[i]);
+                    queue.add(i);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        bloom.setCoveredBytes(file.length());
+        bloom.writeTo(bloomFile(seq));
+    }
+
+    /**
+     * Write the memtable to a segment and wait for the background thread to finish flushing and compacting.
+     */
+    public void flush() {
+        checkFailure();
+        try {
+            if (memtable.size() > 0) {
+                rotate();
+            }
+            awaitBackground();
+            closeRetired();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * fsync the memtable log, so every insert so far survives a crash.
+     */
+    public void sync() {
+        try {
+            log.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void awaitBackground() {
+        if (pendingFlush == null) {
+            return;
+        }
+        try {
+            pendingFlush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        pendingFlush = null;
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new RuntimeException("Background flush or compaction failed", failure);
+        }
+    }
+
+    /**
+     * Close segments replaced by compactions. Only called by the caller thread between reads,
+     * the segment list read by a select is never retired while that select runs.
+     */
+    private void closeRetired() {
+        synchronized (retired) {
+            for (Segment segment : retired) {
+                try {
+                    segment.records().close();
+                } catch (IOException e) {
+                    // Read-only channel, nothing to lose
+                }
+            }
+            retired.clear();
+        }
+    }
+
+    /**
+     * Counters of the segments' Bloom filters, hit and false positive rates included.
+     */
+    BloomFilter.Stats bloomFilterStats() {
+        return bloomStats;
+    }
+
+    /**
+     * Number of segment files, for tests.
+     */
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Flush the memtable and close every file.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            background.shutdown();
+            try {
+                log.close();
+                for (Segment segment : segments) {
+                    segment.records().close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only view of the 16-byte record file through memory-mapped chunks.
+ * The file is opened once, and records are decoded straight from the mapping,
+ * so a lookup does no open, seek or read system call and only allocates the User it returns.
+
+ * A MappedByteBuffer can address at most 2 GiB, so the file is mapped in chunks.
+ * The chunk size is a multiple of the record size, so a record never crosses two chunks.
+ * When the file grows, the last chunk is mapped again with the new length and new chunks are added.
+ */
+class MappedRecordFile implements AutoCloseable {
+    static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+
+    private final FileChannel channel;
+    private final int chunkSize;
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    // Number of bytes covered by the chunks, always a whole number of records
+    private long mappedSize;
+
+    MappedRecordFile(String filename, int chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize % SimpleDataBase.RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive multiple of " + SimpleDataBase.RECORD_SIZE);
+        }
+        this.chunkSize = chunkSize;
+        channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ);
+        refresh();
+    }
+
+    /**
+     * Map records appended since the last call.
+     * A torn record at the end of the file is left out until it is complete.
+     */
+    void refresh() throws IOException {
+        long size = channel.size();
+        size -= size % SimpleDataBase.RECORD_SIZE;
+        if (size == mappedSize) {
+            return;
+        }
+        if (size < mappedSize) {
+            // The file was truncated by someone else, drop every mapping
+            reset();
+        }
+        int count = (int) ((size + chunkSize - 1) / chunkSize);
+        // The previous last chunk may be partial, map it again
+        int first = Math.max(0, chunks.length - 1);
+        chunks = Arrays.copyOf(chunks, count);
+        for (int i = first; i < count; i++) {
+            long start = (long) i * chunkSize;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+        }
+        mappedSize = size;
+    }
+
+    /**
+     * Forget all mappings, e.g. before the file is truncated.
+     * The buffers are unmapped when they are garbage collected, they must not be read after this.
+     */
+    void reset() {
+        chunks = new MappedByteBuffer[0];
+        mappedSize = 0;
+    }
+
+    long recordCount() {
+        return mappedSize / SimpleDataBase.RECORD_SIZE;
+    }
+
+    /**
+     * Linear scan for the first record with the id, like SimpleDataBase.select.
+     */
+    User select(int idQuery) {
+        for (MappedByteBuffer chunk : chunks) {
+            int limit = chunk.limit();
+            for (int offset = 0; offset < limit; offset += SimpleDataBase.RECORD_SIZE) {
+                if (chunk.getInt(offset) == idQuery) {
+                    return SimpleDataBase.decodeRecord(chunk, offset);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Binary search over records sorted by id, like SimpleDataBase.selectBinarySearch.
+     */
+    User binarySearch(int idQuery) {
+        long low = 0;
+        long high = recordCount() - 1;
+        while (low <= high) {
+            long mid = (low + high) / 2;
+            long position = mid * SimpleDataBase.RECORD_SIZE;
+            MappedByteBuffer chunk = chunks[(int) (position / chunkSize)];
+            int offset = (int) (position % chunkSize);
+            int id = chunk.getInt(offset);
+            if (id < idQuery) {
+                low = mid + 1;
+            } else if (id > idQuery) {
+                high = mid - 1;
+            } else {
+                return SimpleDataBase.decodeRecord(chunk, offset);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decode the record with the given number, counting from 0.
+     */
+    User read(long record) {
+        long position = record * SimpleDataBase.RECORD_SIZE;
+        return SimpleDataBase.decodeRecord(chunks[(int) (position / chunkSize)], (int) (position % chunkSize));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reset();
+        channel.close();
+    }
+}
@@ -0,0 +1,172 @@
+package org.example;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters and latency histograms for the trees and databases, replacing the println tracing.
+
+ * Instrumented code reads the clock and records through static methods:
+ *   long start = Metrics.start();
+ *   ...
+ *   Metrics.end(Metrics.Operation.TREE_INSERT, start, key);
+ *   Metrics.add(Metrics.Counter.BYTES_READ, n);
+ * Counters are LongAdders, striped per thread under contention, and histograms are LatencyHistograms.
+ * An operation slower than the slow threshold also emits a SlowOperationEvent to JFR.
+
+ * Modes, chosen with the seedbase.metrics system property:
+ *   off     - compiled out. The flag is a static final constant, so the JIT removes every instrumented branch.
+ *   on      - recording from startup.
+ *   not set - available but disabled until setEnabled(true). A disabled call is a volatile read and
+ *             a predicted branch: no clock read, no write to shared memory, no allocation.
+ */
+final class Metrics {
+    private static final boolean AVAILABLE = !"off".equals(System.getProperty("seedbase.metrics"));
+    private static volatile boolean enabled = AVAILABLE && "on".equals(System.getProperty("seedbase.metrics"));
+    private static volatile long slowThresholdNanos = 10_000_000;
+
+    enum Operation {
+        TREE_INSERT,
+        TREE_SEARCH,
+        TREE_UPDATE,
+        TREE_DELETE,
+        DB_INSERT,
+        DB_SELECT
+    }
+
+    enum Counter {
+        NODE_SPLITS,
+        BYTES_READ,
+        BYTES_WRITTEN,
+        FILE_OPENS,
+        CACHE_HITS,
+        CACHE_MISSES,
+        ROW_CACHE_HITS,
+        ROW_CACHE_MISSES
+    }
+
+    private static final Map<Operation, LatencyHistogram> LATENCIES = new EnumMap<>(Operation.class);
+    private static final Map<Counter, LongAdder> COUNTERS = new EnumMap<>(Counter.class);
+    // Height of the tallest tree seen since the last reset
+    private static final LongAccumulator TREE_HEIGHT = new LongAccumulator(Math::max, 0);
+
+    static {
+        for (Operation operation : Operation.values()) {
+            LATENCIES.put(operation, new LatencyHistogram());
+        }
+        for (Counter counter : Counter.values()) {
+            COUNTERS.put(counter, new LongAdder());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    static boolean enabled() {
+        return AVAILABLE && enabled;
+    }
+
+    /**
+     * Turn recording on or off at run time. Has no effect when compiled out with -Dseedbase.metrics=off.
+     */
+    static void setEnabled(boolean on) {
+        enabled = AVAILABLE && on;
+    }
+
+    /**
+     * Operations that take at least this long emit a SlowOperationEvent.
+     */
+    static void setSlowThresholdNanos(long nanos) {
+        slowThresholdNanos = nanos;
+    }
+
+    /**
+     * Start timing an operation.
+     * @return The start time, or 0 when disabled, which makes the matching end a no-op
+     */
+    static long start() {
+        return enabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record an operation that began at start, a value from start().
+     */
+    static void end(Operation operation, long start, long key) {
+        if (start == 0 || !enabled()) {
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        LATENCIES.get(operation).record(latency);
+        if (latency >= slowThresholdNanos) {
+            SlowOperationEvent event = new SlowOperationEvent();
+            if (event.isEnabled()) {
+                event.operation = operation.name();
+                event.key = key;
+                event.latency = latency;
+                event.commit();
+            }
+        }
+    }
+
+    static void increment(Counter counter) {
+        if (enabled()) {
+            COUNTERS.get(counter).increment();
+        }
+    }
+
+    static void add(Counter counter, long amount) {
+        if (enabled()) {
+            COUNTERS.get(counter).add(amount);
+        }
+    }
+
+    static void treeHeight(int height) {
+        if (enabled()) {
+            TREE_HEIGHT.accumulate(height);
+        }
+    }
+
+    static long count(Counter counter) {
+        return COUNTERS.get(counter).sum();
+    }
+
+    static LatencyHistogram latency(Operation operation) {
+        return LATENCIES.get(operation);
+    }
+
+    static long maxTreeHeight() {
+        return TREE_HEIGHT.get();
+    }
+
+    static void reset() {
+        for (LatencyHistogram histogram : LATENCIES.values()) {
+            histogram.reset();
+        }
+        for (LongAdder counter : COUNTERS.values()) {
+            counter.reset();
+        }
+        TREE_HEIGHT.reset();
+    }
+
+    /**
+     * One line per operation with count and percentiles, then the counters.
+     */
+    static String report() {
+        StringBuilder report = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = LATENCIES.get(operation);
+            long count = histogram.count();
+            if (count > 0) {
+                report.append(String.format("%-12s count=%d p50=%dns p99=%dns p999=%dns%n", operation, count,
+                        histogram.percentile(0.5), histogram.percentile(0.99), histogram.percentile(0.999)));
+            }
+        }
+        for (Counter counter : Counter.values()) {
+            report.append(String.format("%-12s %d%n", counter, count(counter)));
+        }
+        report.append(String.format("%-12s %d%n", "TREE_HEIGHT", maxTreeHeight()));
+        return report.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Secondary index from user name to the offsets of the records with that name.
+ * Names are keys of a StringBPlusTree, so an exact lookup is O(log n) and a prefix lookup O(log n + k).
+ * Names are not unique, each key holds the offsets of all its records in file order.
+
+ * The index is persisted as:
+ *   magic (int), covered bytes (long), names (int),
+ *   then per name: UTF-8 length (int), UTF-8 bytes, record count (int), offsets (long[])
+ * Covered bytes records how much of the data file the index has seen, like BloomFilter.
+ */
+class NameIndex {
+    static final int MAGIC = 0x4E41_4D45;
+    private static final int ORDER = 64;
+
+    private final StringBPlusTree<Postings> tree = new StringBPlusTree<>(ORDER);
+    private long records;
+    private long coveredBytes;
+
+    /**
+     * Record offsets of one name, a growable array so names shared by many records append in amortized O(1).
+     */
+    private static final class Postings {
+        long[] offsets = new long[1];
+        int count;
+
+        void add(long offset) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(offsets, count);
+        }
+    }
+
+    void add(String name, long offset) {
+        Postings postings = tree.search(name);
+        if (postings == null) {
+            postings = new Postings();
+            tree.insert(name, postings);
+        }
+        postings.add(offset);
+        records++;
+    }
+
+    /**
+     * Offsets of the records named exactly name, in file order.
+     */
+    long[] lookup(String name) {
+        Postings postings = tree.search(name);
+        return postings == null ? new long[0] : postings.toArray();
+    }
+
+    /**
+     * Offsets of the records whose name starts with prefix, ordered by name and then by file order.
+     */
+    long[] lookupPrefix(String prefix) {
+        long[] offsets = new long[16];
+        int count = 0;
+        StringBPlusTree<Postings>.Cursor cursor = tree.prefix(prefix);
+        while (cursor.next()) {
+            Postings postings = cursor.value();
+            if (count + postings.count > offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, count + postings.count));
+            }
+            System.arraycopy(postings.offsets, 0, offsets, count, postings.count);
+            count += postings.count;
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * Number of distinct names.
+     */
+    int names() {
+        return tree.size();
+    }
+
+    /**
+     * Number of indexed records.
+     */
+    long records() {
+        return records;
+    }
+
+    long coveredBytes() {
+        return coveredBytes;
+    }
+
+    void setCoveredBytes(long coveredBytes) {
+        this.coveredBytes = coveredBytes;
+    }
+
+    void writeTo(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(coveredBytes);
+            out.writeInt(tree.size());
+            StringBPlusTree<Postings>.Cursor cursor = tree.scan();
+            while (cursor.next()) {
+                byte[] name = cursor.key().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+                Postings postings = cursor.value();
+                out.writeInt(postings.count);
+                for (int i = 0; i < postings.count; i++) {
+                    out.writeLong(postings.offsets[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read an index written by writeTo.
+     * @return null if the file is missing, truncated or not an index, the caller then rebuilds it
+     */
+    static NameIndex readFrom(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            NameIndex index = new NameIndex();
+            index.coveredBytes = in.readLong();
+            int names = in.readInt();
+            if (index.coveredBytes < 0 || names < 0) {
+                return null;
+            }
+            for (int i = 0; i < names; i++) {
+                int length = in.readInt();
+                if (length < 0 || length > file.length()) {
+                    return null;
+                }
+                byte[] name = in.readNBytes(length);
+                int count = in.readInt();
+                if (name.length != length || count <= 0 || count > file.length() / Long.BYTES) {
+                    return null;
+                }
+                Postings postings = new Postings();
+                postings.offsets = new long[count];
+                for (int j = 0; j < count; j++) {
+                    postings.offsets[j] = in.readLong();
+                }
+                postings.count = count;
+                index.tree.insert(new String(name, StandardCharsets.UTF_8), postings);
+                index.records += count;
+            }
+            // Trailing bytes mean the file is not what writeTo produced
+            return in.read() == -1 ? index : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -1,21 +1,29 @@
 package org.example;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Abstract base class for tree nodes.
  * We use an abstract class to share common properties and methods
  * between internal and leaf nodes, promoting code reuse.
+
+ * Keys are kept in a primitive int array with an explicit count instead of a List<Integer>,
+ * so lookups compare ints directly without unboxing or chasing pointers.
+ * The array has one spare slot beyond the maximum, so a node can overflow by one key
+ * before it is split.
  */
 public abstract class Node {
-    List<Integer> keys;
-    List<String> values;
+    int[] keys;
+    int keyCount;
     int order;
+    // Tree version the node was written at, see BPlusTreeMemory.snapshot.
+    // Once the node is retired, the version it was retired at
+    long version;
 
     Node(int order) {
-        keys = new ArrayList<>();
-        values = new ArrayList<>();
+        // Leaf nodes hold at most order keys, internal nodes order - 1,
+        // plus one slot for the key that triggers the split
+        keys = new int[order + 1];
         this.order = order;
     }
 
@@ -23,8 +31,46 @@ public abstract class Node {
     abstract String search(int key );
     abstract Boolean update(int key, String value);
 
+    /**
+     * Remove one entry with the key.
+     * A child left with fewer than minKeys keys is fixed by its parent,
+     * by borrowing from a sibling or merging with one.
+     * @return true if an entry was removed
+     */
+    abstract Boolean delete(int key);
+
+    /**
+     * Fewest keys a node other than the root may have, about half of its capacity.
+     * It matches what a split leaves in the smaller half.
+     */
+    abstract int minKeys();
+
+    /**
+     * Descend to the leftmost leaf that may contain key.
+     * Keys smaller than key can still be present in that leaf, so callers skip them.
+     */
+    abstract LeafNode findLeaf(int key);
+
+    /**
+     * Remove the first key and shift the rest left.
+     * Used when the first key of a split internal node is pushed up to the parent.
+     */
+    int removeFirstKey() {
+        int first = keys[0];
+        System.arraycopy(keys, 1, keys, 0, keyCount - 1);
+        keyCount--;
+        return first;
+    }
+
+    /**
+     * Copy of the used part of the key array, for debugging and tests.
+     */
+    int[] keys() {
+        return Arrays.copyOf(keys, keyCount);
+    }
+
     @Override
     public String toString() {
-        return keys.toString();
+        return Arrays.toString(keys());
     }
 }
@@ -0,0 +1,479 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * B+ tree from int keys to long values whose nodes live outside the Java heap, in direct ByteBuffer slabs.
+ * Holding many millions of keys costs the garbage collector one small ByteBuffer object per slab,
+ * not one object per node and key as BPlusTreeMemory does, so the heap and GC pauses stay small.
+
+ * A node is referenced by an int node number instead of an object reference:
+ * node n is at byte (n % nodesPerSlab) * nodeSize of slab n / nodesPerSlab.
+ * Nodes are allocated from the slabs by this tree's own allocator, which reuses freed nodes
+ * through a free list threaded through the first int of each free node.
+
+ * Every node has the same size. Layout, in native byte order:
+ *   0: byte type (1 = leaf, 2 = internal)
+ *   4: int  key count
+ *   8: int  next leaf, NIL for the last leaf (leaves only)
+ *  12: int  previous leaf, NIL for the first leaf (leaves only)
+ *  16: int[order + 1] keys
+ *   then long[order + 1] values for leaves, or int[order + 1] child node numbers for internal nodes
+ * Leaves hold up to order keys and internal nodes up to order - 1, with one spare slot for the key
+ * that triggers the split, like LeafNode and InternalNode.
+
+ * Keys are unique. Deletes do not merge underfull nodes: a node is freed when its last key is deleted,
+ * and a root with a single child is replaced by that child. Under mixed workloads nodes stay
+ * reasonably full without the cost of borrowing and merging.
+
+ * Slabs are released when the tree becomes unreachable, direct buffers cannot be freed explicitly.
+ * Not thread-safe.
+ */
+class OffHeapBPlusTree {
+    static final long NOT_FOUND = Long.MIN_VALUE;
+    static final int DEFAULT_SLAB_BYTES = 16 << 20;
+
+    private static final int NIL = -1;
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int TYPE = 0;
+    private static final int COUNT = 4;
+    private static final int NEXT = 8;
+    private static final int PREV = 12;
+    private static final int KEYS = 16;
+
+    // Results of the recursive insert and delete besides a new sibling's node number
+    private static final int NO_SPLIT = -1;
+    private static final int DUPLICATE = -2;
+    private static final int ABSENT = 0;
+    private static final int DELETED = 1;
+    private static final int EMPTIED = 2;
+
+    private final int order;
+    private final int nodeSize;
+    private final int valuesOffset;
+    private final int childrenOffset;
+    private final int slabShift;
+    private final int slabMask;
+
+    private ByteBuffer[] slabs = new ByteBuffer[0];
+    // Node numbers below this have been handed out at least once
+    private int allocatedNodes;
+    private int freeList = NIL;
+    private int freeNodes;
+
+    private int root;
+    private int size;
+    // Separator of the last split, read by the parent right after the recursive call returns
+    private int splitKey;
+
+    OffHeapBPlusTree(int order) {
+        this(order, DEFAULT_SLAB_BYTES);
+    }
+
+    OffHeapBPlusTree(int order, int slabBytes) {
+        if (order < 3) {
+            throw new IllegalArgumentException("Order must be at least 3");
+        }
+        this.order = order;
+        // order + 1 key slots: a leaf overflows to order + 1 keys and an internal node to order keys
+        valuesOffset = align(KEYS + (order + 1) * Integer.BYTES);
+        childrenOffset = KEYS + (order + 1) * Integer.BYTES;
+        nodeSize = align(Math.max(valuesOffset + (order + 1) * Long.BYTES, childrenOffset + (order + 1) * Integer.BYTES));
+        // A power of two nodes per slab, so the slab and the offset come from a shift and a mask
+        int nodesPerSlab = Integer.highestOneBit(Math.max(1, slabBytes / nodeSize));
+        slabShift = Integer.numberOfTrailingZeros(nodesPerSlab);
+        slabMask = nodesPerSlab - 1;
+        root = newNode(LEAF);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    private ByteBuffer slab(int node) {
+        return slabs[node >>> slabShift];
+    }
+
+    private int base(int node) {
+        return (node & slabMask) * nodeSize;
+    }
+
+    /**
+     * Take a node from the free list, or the next never used node, adding a slab when needed.
+     */
+    private int newNode(byte type) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = slab(node).getInt(base(node));
+            freeNodes--;
+        } else {
+            node = allocatedNodes++;
+            if (node >>> slabShift == slabs.length) {
+                slabs = Arrays.copyOf(slabs, slabs.length + 1);
+                slabs[slabs.length - 1] = ByteBuffer.allocateDirect((slabMask + 1) * nodeSize).order(ByteOrder.nativeOrder());
+            }
+        }
+        ByteBuffer slab = slab(node);
+        int base = base(node);
+        slab.put(base + TYPE, type);
+        slab.putInt(base + COUNT, 0);
+        slab.putInt(base + NEXT, NIL);
+        slab.putInt(base + PREV, NIL);
+        return node;
+    }
+
+    private void freeNode(int node) {
+        slab(node).putInt(base(node), freeList);
+        freeList = node;
+        freeNodes++;
+    }
+
+    private boolean isLeaf(int node) {
+        return slab(node).get(base(node) + TYPE) == LEAF;
+    }
+
+    private int count(int node) {
+        return slab(node).getInt(base(node) + COUNT);
+    }
+
+    private void setCount(int node, int count) {
+        slab(node).putInt(base(node) + COUNT, count);
+    }
+
+    private int key(int node, int index) {
+        return slab(node).getInt(base(node) + KEYS + index * Integer.BYTES);
+    }
+
+    private void setKey(int node, int index, int key) {
+        slab(node).putInt(base(node) + KEYS + index * Integer.BYTES, key);
+    }
+
+    private long value(int node, int index) {
+        return slab(node).getLong(base(node) + valuesOffset + index * Long.BYTES);
+    }
+
+    private void setValue(int node, int index, long value) {
+        slab(node).putLong(base(node) + valuesOffset + index * Long.BYTES, value);
+    }
+
+    private int child(int node, int index) {
+        return slab(node).getInt(base(node) + childrenOffset + index * Integer.BYTES);
+    }
+
+    private void setChild(int node, int index, int child) {
+        slab(node).putInt(base(node) + childrenOffset + index * Integer.BYTES, child);
+    }
+
+    private int next(int leaf) {
+        return slab(leaf).getInt(base(leaf) + NEXT);
+    }
+
+    private void setNext(int leaf, int next) {
+        slab(leaf).putInt(base(leaf) + NEXT, next);
+    }
+
+    private int prev(int leaf) {
+        return slab(leaf).getInt(base(leaf) + PREV);
+    }
+
+    private void setPrev(int leaf, int prev) {
+        slab(leaf).putInt(base(leaf) + PREV, prev);
+    }
+
+    /**
+     * Move length elements of elementSize bytes within a node, from index from to index to.
+     */
+    private void shift(int node, int offset, int elementSize, int from, int to, int length) {
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer slab = slab(node);
+        int start = base(node) + offset;
+        // Overlapping moves are safe, put(index, ByteBuffer, ...) copies as if through a temporary buffer
+        slab.put(start + to * elementSize, slab, start + from * elementSize, length * elementSize);
+    }
+
+    /**
+     * Copy length elements from one node to another, which may live in different slabs.
+     */
+    private void copy(int source, int target, int offset, int elementSize, int from, int to, int length) {
+        if (length <= 0) {
+            return;
+        }
+        slab(target).put(base(target) + offset + to * elementSize,
+                slab(source), base(source) + offset + from * elementSize, length * elementSize);
+    }
+
+    /**
+     * Index of the first key >= key.
+     */
+    private int lowerBound(int node, int count, int key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key(node, mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first key > key, the child to follow in an internal node, as in KeySearch.upperBound.
+     */
+    private int upperBound(int node, int count, int key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key(node, mid) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Insert a key if it is not in the tree yet.
+     * @return false if the key was already present, its value is then unchanged
+     */
+    boolean insert(int key, long value) {
+        int result = insert(root, key, value);
+        if (result == DUPLICATE) {
+            return false;
+        }
+        if (result != NO_SPLIT) {
+            int newRoot = newNode(INTERNAL);
+            setKey(newRoot, 0, splitKey);
+            setCount(newRoot, 1);
+            setChild(newRoot, 0, root);
+            setChild(newRoot, 1, result);
+            root = newRoot;
+        }
+        size++;
+        return true;
+    }
+
+    private int insert(int node, int key, long value) {
+        int count = count(node);
+        if (isLeaf(node)) {
+            int index = lowerBound(node, count, key);
+            if (index < count && key(node, index) == key) {
+                return DUPLICATE;
+            }
+            shift(node, KEYS, Integer.BYTES, index, index + 1, count - index);
+            shift(node, valuesOffset, Long.BYTES, index, index + 1, count - index);
+            setKey(node, index, key);
+            setValue(node, index, value);
+            setCount(node, ++count);
+            return count <= order ? NO_SPLIT : splitLeaf(node);
+        }
+        int index = upperBound(node, count, key);
+        int result = insert(child(node, index), key, value);
+        if (result == NO_SPLIT || result == DUPLICATE) {
+            return result;
+        }
+        // The child split, the new sibling goes right after it
+        shift(node, KEYS, Integer.BYTES, index, index + 1, count - index);
+        shift(node, childrenOffset, Integer.BYTES, index + 1, index + 2, count - index);
+        setKey(node, index, splitKey);
+        setChild(node, index + 1, result);
+        setCount(node, ++count);
+        return count <= order - 1 ? NO_SPLIT : splitInternal(node);
+    }
+
+    /**
+     * Move the right half of a leaf to a new leaf linked in after it, the new leaf's first key is the separator.
+     */
+    private int splitLeaf(int leaf) {
+        Metrics.increment(Metrics.Counter.NODE_SPLITS);
+        int count = count(leaf);
+        int middle = count / 2;
+        int sibling = newNode(LEAF);
+        copy(leaf, sibling, KEYS, Integer.BYTES, middle, 0, count - middle);
+        copy(leaf, sibling, valuesOffset, Long.BYTES, middle, 0, count - middle);
+        setCount(sibling, count - middle);
+        setCount(leaf, middle);
+
+        int next = next(leaf);
+        setNext(sibling, next);
+        setPrev(sibling, leaf);
+        if (next != NIL) {
+            setPrev(next, sibling);
+        }
+        setNext(leaf, sibling);
+        splitKey = key(sibling, 0);
+        return sibling;
+    }
+
+    /**
+     * Move the keys after the middle one and their children to a new node, the middle key moves up.
+     */
+    private int splitInternal(int node) {
+        Metrics.increment(Metrics.Counter.NODE_SPLITS);
+        int count = count(node);
+        int middle = count / 2;
+        int sibling = newNode(INTERNAL);
+        copy(node, sibling, KEYS, Integer.BYTES, middle + 1, 0, count - middle - 1);
+        copy(node, sibling, childrenOffset, Integer.BYTES, middle + 1, 0, count - middle);
+        setCount(sibling, count - middle - 1);
+        splitKey = key(node, middle);
+        setCount(node, middle);
+        return sibling;
+    }
+
+    /**
+     * Look up the value of a key.
+     * @return the value, or NOT_FOUND
+     */
+    long search(int key) {
+        int node = root;
+        while (!isLeaf(node)) {
+            node = child(node, upperBound(node, count(node), key));
+        }
+        int count = count(node);
+        int index = lowerBound(node, count, key);
+        return index < count && key(node, index) == key ? value(node, index) : NOT_FOUND;
+    }
+
+    /**
+     * Remove a key. A node left without keys goes back to the free list.
+     * @return false if the key was not in the tree
+     */
+    boolean delete(int key) {
+        int result = delete(root, key);
+        if (result == ABSENT) {
+            return false;
+        }
+        size--;
+        if (result == EMPTIED && !isLeaf(root)) {
+            // Cannot happen while roots with one child are collapsed, but keep the tree usable
+            freeNode(root);
+            root = newNode(LEAF);
+        }
+        // A root with a single child adds a level without separating anything
+        while (!isLeaf(root) && count(root) == 0) {
+            int child = child(root, 0);
+            freeNode(root);
+            root = child;
+        }
+        return true;
+    }
+
+    private int delete(int node, int key) {
+        int count = count(node);
+        if (isLeaf(node)) {
+            int index = lowerBound(node, count, key);
+            if (index == count || key(node, index) != key) {
+                return ABSENT;
+            }
+            shift(node, KEYS, Integer.BYTES, index + 1, index, count - index - 1);
+            shift(node, valuesOffset, Long.BYTES, index + 1, index, count - index - 1);
+            setCount(node, --count);
+            return count == 0 ? EMPTIED : DELETED;
+        }
+        int index = upperBound(node, count, key);
+        int child = child(node, index);
+        int result = delete(child, key);
+        if (result != EMPTIED) {
+            return result;
+        }
+        if (isLeaf(child)) {
+            unlinkLeaf(child);
+        }
+        freeNode(child);
+        if (count == 0) {
+            // That was the only child
+            return EMPTIED;
+        }
+        // Drop the child with the separator on its left, or on its right for the first child
+        int keyIndex = index > 0 ? index - 1 : 0;
+        shift(node, KEYS, Integer.BYTES, keyIndex + 1, keyIndex, count - keyIndex - 1);
+        shift(node, childrenOffset, Integer.BYTES, index + 1, index, count - index);
+        setCount(node, count - 1);
+        return DELETED;
+    }
+
+    private void unlinkLeaf(int leaf) {
+        int prev = prev(leaf);
+        int next = next(leaf);
+        if (prev != NIL) {
+            setNext(prev, next);
+        }
+        if (next != NIL) {
+            setPrev(next, prev);
+        }
+    }
+
+    /**
+     * Keys from from to to inclusive, in order, following the leaf chain.
+     */
+    int[] rangeKeys(int from, int to) {
+        int node = root;
+        while (!isLeaf(node)) {
+            node = child(node, upperBound(node, count(node), from));
+        }
+        int[] keys = new int[16];
+        int found = 0;
+        int index = lowerBound(node, count(node), from);
+        while (node != NIL) {
+            int count = count(node);
+            for (; index < count; index++) {
+                int key = key(node, index);
+                if (key > to) {
+                    return Arrays.copyOf(keys, found);
+                }
+                if (found == keys.length) {
+                    keys = Arrays.copyOf(keys, found * 2);
+                }
+                keys[found++] = key;
+            }
+            node = next(node);
+            index = 0;
+        }
+        return Arrays.copyOf(keys, found);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int height() {
+        int height = 1;
+        for (int node = root; !isLeaf(node); node = child(node, 0)) {
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Nodes in use by the tree, not counting free ones.
+     */
+    int liveNodes() {
+        return allocatedNodes - freeNodes;
+    }
+
+    int freeNodes() {
+        return freeNodes;
+    }
+
+    int nodeSize() {
+        return nodeSize;
+    }
+
+    /**
+     * Bytes reserved off the heap by the slabs.
+     */
+    long offHeapBytes() {
+        return (long) slabs.length * (slabMask + 1) * nodeSize;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A frame of the buffer pool holding one page of a PageFile.
+ * A page is only valid between BufferPool.pin and BufferPool.unpin,
+ * after unpin the frame can be reused for another page.
+ */
+class Page {
+    final int frame;
+    final ByteBuffer data;
+    int pageNo = -1;
+    int pinCount;
+    boolean dirty;
+
+    Page(int frame, int pageSize) {
+        this.frame = frame;
+        data = ByteBuffer.allocate(pageSize);
+    }
+
+    int pageNo() {
+        return pageNo;
+    }
+
+    /**
+     * The page content. Use absolute get/put, the position is shared by every user of the page.
+     */
+    ByteBuffer data() {
+        return data;
+    }
+}
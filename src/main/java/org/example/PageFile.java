@@ -0,0 +1,100 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file split into fixed-size pages addressed by page number.
+ * Page n starts at byte offset n * pageSize.
+
+ * All reads and writes are positional, so the channel position is never moved
+ * and one open channel serves every page access.
+ */
+class PageFile implements AutoCloseable {
+    static final int DEFAULT_PAGE_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final int pageSize;
+    private int pageCount;
+
+    PageFile(String filename, int pageSize) throws IOException {
+        this.pageSize = pageSize;
+        channel = FileChannel.open(Path.of(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // A torn last page is ignored, it will be overwritten by the next allocation
+        pageCount = (int) (channel.size() / pageSize);
+    }
+
+    int pageSize() {
+        return pageSize;
+    }
+
+    int pageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Current length of the file in bytes, which can end in a partial page.
+     */
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Reserve a new page at the end of the file.
+     * The page is not written until writePage is called.
+     */
+    int allocatePage() {
+        return pageCount++;
+    }
+
+    /**
+     * Read a whole page into dst, starting at dst's position 0.
+     * Pages that were allocated but never written read as zeros.
+     */
+    void readPage(int pageNo, ByteBuffer dst) throws IOException {
+        dst.clear();
+        long offset = (long) pageNo * pageSize;
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, offset + dst.position());
+            if (n < 0) {
+                // Past the end of the file
+                while (dst.hasRemaining()) {
+                    dst.put((byte) 0);
+                }
+            }
+        }
+        Metrics.add(Metrics.Counter.BYTES_READ, pageSize);
+        dst.clear();
+    }
+
+    void writePage(int pageNo, ByteBuffer src) throws IOException {
+        src.clear();
+        long offset = (long) pageNo * pageSize;
+        while (src.hasRemaining()) {
+            channel.write(src, offset + src.position());
+        }
+        Metrics.add(Metrics.Counter.BYTES_WRITTEN, pageSize);
+        src.clear();
+    }
+
+    /**
+     * Force written pages to the storage device.
+     */
+    void sync() throws IOException {
+        channel.force(false);
+    }
+
+    void truncate() throws IOException {
+        channel.truncate(0);
+        pageCount = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,76 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Predicate on a raw 16-byte record, evaluated by RecordScanner before the record is decoded.
+ * Filters compare the id and the name bytes in place, so rows that do not match cost no allocation.
+ * The record is at offset in buffer: id (int) followed by 12 bytes of zero-padded UTF-8 name.
+ */
+@FunctionalInterface
+interface RecordFilter {
+    RecordFilter ALL = (buffer, offset) -> true;
+
+    boolean test(ByteBuffer buffer, int offset);
+
+    /**
+     * Records with from <= id <= to.
+     */
+    static RecordFilter idBetween(int from, int to) {
+        return (buffer, offset) -> {
+            int id = buffer.getInt(offset);
+            return id >= from && id <= to;
+        };
+    }
+
+    /**
+     * Records whose stored name equals name, compared as the 12 bytes insert writes for it.
+     */
+    static RecordFilter nameEquals(String name) {
+        byte[] expected = encodedName(name);
+        return (buffer, offset) -> {
+            for (int i = 0; i < expected.length; i++) {
+                if (buffer.get(offset + 4 + i) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Records whose stored name starts with prefix.
+     */
+    static RecordFilter nameStartsWith(String prefix) {
+        byte[] padded = encodedName(prefix);
+        // Only the bytes of the prefix itself, not its padding
+        int length = padded.length;
+        while (length > 0 && padded[length - 1] == 0) {
+            length--;
+        }
+        byte[] expected = Arrays.copyOf(padded, length);
+        return (buffer, offset) -> {
+            for (int i = 0; i < expected.length; i++) {
+                if (buffer.get(offset + 4 + i) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static byte[] encodedName(String name) {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        RecordWriter.encodeName(name, buffer);
+        return buffer.array();
+    }
+
+    default RecordFilter and(RecordFilter other) {
+        return (buffer, offset) -> test(buffer, offset) && other.test(buffer, offset);
+    }
+
+    default RecordFilter or(RecordFilter other) {
+        return (buffer, offset) -> test(buffer, offset) || other.test(buffer, offset);
+    }
+}
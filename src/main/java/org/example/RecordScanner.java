@@ -0,0 +1,167 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Sequential scan of the 16-byte record file, the source of SimpleDataBase.scan.
+ * The file is read in large blocks with positional reads into one reused buffer,
+ * and the filter runs on the raw bytes of each record. Only matching records are decoded,
+ * so a scan that matches few rows allocates almost nothing per block.
+
+ * The scan covers the records in the file when it was opened, records appended later are not returned.
+ * A torn record at the end of the file is skipped.
+
+ * For parallel streams the range splits in half at a record boundary, down to two blocks per part.
+ * Every part has its own buffer and reads with positional FileChannel.read calls,
+ * which do not share a file position, so the parts read concurrently through the one channel.
+ * Only the scanner that opened the channel closes it.
+ */
+class RecordScanner implements Spliterator<User>, AutoCloseable {
+    static final int DEFAULT_BLOCK_SIZE = 256 << 10;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final RecordFilter filter;
+    private final int blockSize;
+    private final ByteBuffer block;
+    // Next file position to read, and end of the scanned range
+    private long position;
+    private long end;
+
+    /**
+     * Open a scan over the whole record file.
+     */
+    static RecordScanner open(String filename, RecordFilter filter, int blockSize) throws IOException {
+        if (blockSize <= 0 || blockSize % SimpleDataBase.RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("Block size must be a positive multiple of " + SimpleDataBase.RECORD_SIZE);
+        }
+        Metrics.increment(Metrics.Counter.FILE_OPENS);
+        FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            return new RecordScanner(channel, true, filter, blockSize, 0, size - size % SimpleDataBase.RECORD_SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private RecordScanner(FileChannel channel, boolean ownsChannel, RecordFilter filter, int blockSize, long start, long end) {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.filter = filter;
+        this.blockSize = blockSize;
+        position = start;
+        this.end = end;
+        block = ByteBuffer.allocate((int) Math.min(blockSize, Math.max(end - start, SimpleDataBase.RECORD_SIZE)));
+        // Empty until the first read
+        block.limit(0);
+    }
+
+    /**
+     * Read the next block.
+     * @return false at the end of the scanned range
+     */
+    private boolean fill() throws IOException {
+        if (position >= end) {
+            return false;
+        }
+        block.clear();
+        block.limit((int) Math.min(block.capacity(), end - position));
+        while (block.hasRemaining()) {
+            if (channel.read(block, position + block.position()) < 0) {
+                // Truncated under the scan, stop at the last whole record
+                block.limit(block.position() - block.position() % SimpleDataBase.RECORD_SIZE);
+                break;
+            }
+        }
+        position += block.limit();
+        Metrics.add(Metrics.Counter.BYTES_READ, block.limit());
+        block.flip();
+        return block.hasRemaining();
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super User> action) {
+        try {
+            while (true) {
+                while (block.remaining() >= SimpleDataBase.RECORD_SIZE) {
+                    int offset = block.position();
+                    block.position(offset + SimpleDataBase.RECORD_SIZE);
+                    if (filter.test(block, offset)) {
+                        action.accept(SimpleDataBase.decodeRecord(block, offset));
+                        return true;
+                    }
+                }
+                if (!fill()) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super User> action) {
+        // Same as repeated tryAdvance, without returning after every match
+        try {
+            do {
+                int limit = block.limit();
+                for (int offset = block.position(); offset + SimpleDataBase.RECORD_SIZE <= limit; offset += SimpleDataBase.RECORD_SIZE) {
+                    if (filter.test(block, offset)) {
+                        action.accept(SimpleDataBase.decodeRecord(block, offset));
+                    }
+                }
+                block.position(limit);
+            } while (fill());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Hand the first half of the unread range to a new scanner and keep the second half.
+     * Not split once a block is buffered, or when a half would be less than two blocks.
+     */
+    @Override
+    public Spliterator<User> trySplit() {
+        long records = (end - position) / SimpleDataBase.RECORD_SIZE;
+        if (block.hasRemaining() || records * SimpleDataBase.RECORD_SIZE < 4L * blockSize) {
+            return null;
+        }
+        long middle = position + records / 2 * SimpleDataBase.RECORD_SIZE;
+        RecordScanner prefix = new RecordScanner(channel, false, filter, blockSize, position, middle);
+        position = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        // Records left, an upper bound on the matches
+        return (end - position + block.remaining()) / SimpleDataBase.RECORD_SIZE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    @Override
+    public void close() {
+        if (!ownsChannel) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
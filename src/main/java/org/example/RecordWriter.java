@@ -0,0 +1,252 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived writer for appending many records to a SimpleDataBase file.
+
+ * Records are encoded into a ring of reusable direct buffers. When every buffer is full,
+ * or on flush, they are written with one gathering write through a single FileChannel,
+ * so a million rows cost a few dozen system calls instead of an open, two writes and a close each.
+
+ * Durability is controlled by the SyncMode:
+ *   EVERY_FLUSH - fsync after each gathering write, i.e. group commit per batch
+ *   INTERVAL    - a background thread fsyncs every syncIntervalMillis, appends never wait for the disk
+ *   NEVER       - leave it to the operating system, like SimpleDataBase.insert
+ * In every mode, records still in the buffers are lost on a crash, call flush to write them.
+
+ * When the database has a write-ahead log, flushed buffers are appended through the log instead
+ * and committed on every flush. The log's own sync mode then decides whether that fsyncs,
+ * and even without fsyncs the log writes its frames out every 64 KiB instead of holding them in memory.
+
+ * A writer is not thread-safe, but several writers, each used by one thread, may append to one database
+ * together with plain inserts: a flush takes the end of the file, writes and updates the index and caches
+ * under the database's monitor, so every record gets its own offset and the index sees them in file order.
+ */
+public class RecordWriter implements AutoCloseable {
+    public enum SyncMode {
+        EVERY_FLUSH,
+        INTERVAL,
+        NEVER
+    }
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    static final int DEFAULT_SEGMENTS = 16;
+
+    // Null when the records go through the owner's write-ahead log
+    private final FileChannel channel;
+    private final WriteAheadLog log;
+    private final ByteBuffer[] segments;
+    private int current;
+    private final SyncMode syncMode;
+    private final ScheduledExecutorService syncer;
+    // Notified after each write so it can update its index and caches, may be null
+    private final SimpleDataBase owner;
+
+    RecordWriter(String filename, SyncMode syncMode, long syncIntervalMillis, SimpleDataBase owner) throws IOException {
+        this(filename, DEFAULT_SEGMENTS, DEFAULT_SEGMENT_SIZE, syncMode, syncIntervalMillis, owner);
+    }
+
+    /**
+     * @param segments Number of buffers written by one gathering write
+     * @param segmentSize Size of each buffer in bytes, a multiple of the record size
+     * @param syncIntervalMillis fsync period for SyncMode.INTERVAL, ignored otherwise
+     */
+    RecordWriter(String filename, int segments, int segmentSize, SyncMode syncMode, long syncIntervalMillis,
+                 SimpleDataBase owner) throws IOException {
+        if (segmentSize <= 0 || segmentSize % SimpleDataBase.RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("Segment size must be a positive multiple of " + SimpleDataBase.RECORD_SIZE);
+        }
+        if (syncMode == SyncMode.INTERVAL && syncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Sync interval must be positive");
+        }
+        this.segments = new ByteBuffer[segments];
+        for (int i = 0; i < segments; i++) {
+            this.segments[i] = ByteBuffer.allocateDirect(segmentSize);
+        }
+        this.syncMode = syncMode;
+        this.owner = owner;
+        log = owner != null ? owner.writeAheadLog() : null;
+        channel = log != null ? null : FileChannel.open(Path.of(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        if (syncMode == SyncMode.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "record-writer-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Add a record to the buffers. The name is truncated to 12 bytes of UTF-8 like in SimpleDataBase.insert.
+     */
+    public void append(int id, String name) throws IOException {
+        ByteBuffer buffer = segments[current];
+        if (!buffer.hasRemaining()) {
+            if (current == segments.length - 1) {
+                flush();
+            } else {
+                current++;
+            }
+            buffer = segments[current];
+        }
+        buffer.putInt(id);
+        encodeName(name, buffer);
+    }
+
+    public void appendAll(Iterable<User> users) throws IOException {
+        for (User user : users) {
+            append(user.id(), user.name());
+        }
+    }
+
+    /**
+     * Write all buffered records with one gathering write,
+     * and fsync them if the sync mode is EVERY_FLUSH. Through a write-ahead log, commit them instead.
+     */
+    public void flush() throws IOException {
+        long length = 0;
+        for (int i = 0; i <= current; i++) {
+            segments[i].flip();
+            length += segments[i].remaining();
+        }
+        if (length > 0) {
+            Metrics.add(Metrics.Counter.BYTES_WRITTEN, length);
+            long offset;
+            if (log != null) {
+                // Like SimpleDataBase.insertLogged: log and index in one step under the database's monitor,
+                // so appended sees offsets in order even with concurrent inserts and writers
+                synchronized (owner) {
+                    offset = log.append(segments, 0, current + 1);
+                    notifyOwner(offset);
+                }
+                log.commit(offset + length);
+            } else {
+                if (owner != null) {
+                    synchronized (owner) {
+                        offset = write(length);
+                        for (int i = 0; i <= current; i++) {
+                            segments[i].flip();
+                        }
+                        notifyOwner(offset);
+                    }
+                } else {
+                    write(length);
+                }
+                if (syncMode == SyncMode.EVERY_FLUSH) {
+                    channel.force(false);
+                }
+            }
+        }
+        for (int i = 0; i <= current; i++) {
+            segments[i].clear();
+        }
+        current = 0;
+    }
+
+    /**
+     * Write the flipped buffers at the end of the data file.
+     * @return Offset of the first record
+     */
+    private long write(long length) throws IOException {
+        long offset = channel.size();
+        long written = 0;
+        while (written < length) {
+            written += channel.write(segments, 0, current + 1);
+        }
+        return offset;
+    }
+
+    /**
+     * Pass the flipped buffers, written at offset, to the owner's index and caches.
+     */
+    private void notifyOwner(long offset) throws IOException {
+        for (int i = 0; i <= current; i++) {
+            owner.appended(segments[i], offset);
+            offset += segments[i].remaining();
+        }
+    }
+
+    /**
+     * Flush the buffers and fsync, whatever the sync mode.
+     */
+    public void sync() throws IOException {
+        flush();
+        force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (syncer != null) {
+                syncer.shutdown();
+                // Data written since the last periodic fsync must not wait for the next one
+                force();
+            }
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private void force() throws IOException {
+        if (log != null) {
+            log.sync();
+        } else {
+            channel.force(false);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            force();
+        } catch (IOException e) {
+            // The channel was closed or the disk failed, the next flush or close reports it
+        }
+    }
+
+    /**
+     * Put the name as 12 bytes of UTF-8, truncated or padded with zeros.
+     * Produces the same bytes as Arrays.copyOf(name.getBytes(UTF_8), 12)
+     * without allocating for ASCII names.
+     */
+    static void encodeName(String name, ByteBuffer buffer) {
+        int length = Math.min(name.length(), 12);
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        int written;
+        if (ascii) {
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) name.charAt(i));
+            }
+            written = length;
+        } else {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            written = Math.min(nameBytes.length, 12);
+            buffer.put(nameBytes, 0, written);
+        }
+        for (int i = written; i < 12; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.example;
+
+/**
+ * Bounded cache of rows by id in front of SimpleDataBase.select, see SimpleDataBase.useRowCache.
+
+ * Ids are looked up in an IntIntMap from id to slot, so neither lookups nor hits box or allocate,
+ * and a hit returns the cached User itself instead of decoding a new one.
+
+ * Eviction is W-TinyLFU (Einziger, Friedman and Manes):
+ * - New rows enter a small LRU window, about 1% of the capacity, which absorbs bursts of new ids.
+ * - Rows leaving the window compete for the main segment. A row is admitted only if a
+ *   FrequencySketch says it was requested more often recently than the main segment's victim,
+ *   so a scan over many cold ids cannot flush the popular rows.
+ * - The main segment is a segmented LRU: rows start on probation and move to the protected
+ *   part, 80% of the main segment, when hit again. The victim is the probation LRU row.
+ * Every lookup, hit or miss, is counted in the sketch, so a row that keeps missing earns admission.
+
+ * The capacity is derived from a budget in bytes with ENTRY_BYTES per row.
+ * Methods are synchronized, a cache is shared by the threads selecting from its database.
+ */
+class RowCache {
+    // Estimated heap bytes per row with compressed references: the User (24), its name String (24)
+    // and byte array (32 for names up to 12 bytes), the slot in users (4), the links of 3 FrameLists (27),
+    // the id map at a quarter to half load (up to 36) and the sketch (up to 8), rounded up
+    static final int ENTRY_BYTES = 160;
+    private static final int NONE = -1;
+
+    private final long budgetBytes;
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    // id -> slot
+    private final IntIntMap slots;
+    private final User[] users;
+    private final FrameList window;
+    private final FrameList probation;
+    private final FrameList protectedRows;
+    private final FrequencySketch sketch;
+    private final int[] freeSlots;
+    private int freeCount;
+    // Bumped by every invalidation, see generation()
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * @param budgetBytes Heap to spend on cached rows, at least ENTRY_BYTES
+     */
+    RowCache(long budgetBytes) {
+        if (budgetBytes < ENTRY_BYTES) {
+            throw new IllegalArgumentException("Row cache budget must be at least " + ENTRY_BYTES + " bytes");
+        }
+        this.budgetBytes = budgetBytes;
+        capacity = (int) Math.min(budgetBytes / ENTRY_BYTES, Integer.MAX_VALUE - 1);
+        windowCapacity = Math.max(1, capacity / 100);
+        protectedCapacity = (int) ((capacity - windowCapacity) * 0.8);
+        slots = new IntIntMap(capacity + 1, NONE);
+        // One slot more than the capacity holds a new row until the window gives up its candidate
+        users = new User[capacity + 1];
+        window = new FrameList(capacity + 1);
+        probation = new FrameList(capacity + 1);
+        protectedRows = new FrameList(capacity + 1);
+        sketch = new FrequencySketch(capacity);
+        freeSlots = new int[capacity + 1];
+        for (int i = 0; i <= capacity; i++) {
+            freeSlots[i] = capacity - i;
+        }
+        freeCount = capacity + 1;
+    }
+
+    /**
+     * @return The cached row, or null on a miss
+     */
+    synchronized User get(int id) {
+        sketch.increment(id);
+        int slot = slots.get(id);
+        if (slot == NONE) {
+            misses++;
+            Metrics.increment(Metrics.Counter.ROW_CACHE_MISSES);
+            return null;
+        }
+        hits++;
+        Metrics.increment(Metrics.Counter.ROW_CACHE_HITS);
+        if (window.contains(slot)) {
+            window.moveToFront(slot);
+        } else if (probation.contains(slot)) {
+            probation.remove(slot);
+            protectedRows.addFirst(slot);
+            if (protectedRows.size() > protectedCapacity) {
+                // Demote the protected LRU row, it gets another chance on probation
+                int demoted = protectedRows.last();
+                protectedRows.remove(demoted);
+                probation.addFirst(demoted);
+            }
+        } else {
+            protectedRows.moveToFront(slot);
+        }
+        return users[slot];
+    }
+
+    /**
+     * Counter read before a lookup whose result is then passed to put. Invalidations in between
+     * change it, and put drops the row, which may have been read before the invalidating write.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Cache a row read after a miss.
+     * @param generation generation() from before the row was read
+     */
+    synchronized void put(User user, long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        int slot = slots.get(user.id());
+        if (slot != NONE) {
+            users[slot] = user;
+            return;
+        }
+        slot = freeSlots[--freeCount];
+        users[slot] = user;
+        slots.put(user.id(), slot);
+        window.addFirst(slot);
+        if (window.size() > windowCapacity) {
+            admitCandidate();
+        }
+    }
+
+    /**
+     * Move the window's LRU row to probation if the main segment has room or the row is more
+     * popular than the main segment's victim, and evict whichever of the two loses.
+     */
+    private void admitCandidate() {
+        int candidate = window.last();
+        window.remove(candidate);
+        if (probation.size() + protectedRows.size() < capacity - windowCapacity) {
+            probation.addFirst(candidate);
+            return;
+        }
+        int victim = probation.last() != NONE ? probation.last() : protectedRows.last();
+        if (victim != NONE && sketch.frequency(users[candidate].id()) > sketch.frequency(users[victim].id())) {
+            probation.remove(victim);
+            protectedRows.remove(victim);
+            free(victim);
+            probation.addFirst(candidate);
+        } else {
+            rejections++;
+            free(candidate);
+        }
+        evictions++;
+    }
+
+    /**
+     * Drop the row of an id that was written, so the next select reads it from the file.
+     */
+    synchronized void invalidate(int id) {
+        generation++;
+        int slot = slots.get(id);
+        if (slot != NONE) {
+            window.remove(slot);
+            probation.remove(slot);
+            protectedRows.remove(slot);
+            free(slot);
+        }
+    }
+
+    /**
+     * Drop every row and the access history, e.g. when the database is cleared.
+     */
+    synchronized void clear() {
+        generation++;
+        for (int slot = 0; slot <= capacity; slot++) {
+            if (users[slot] != null) {
+                window.remove(slot);
+                probation.remove(slot);
+                protectedRows.remove(slot);
+                free(slot);
+            }
+        }
+        sketch.clear();
+    }
+
+    private void free(int slot) {
+        slots.remove(users[slot].id());
+        users[slot] = null;
+        freeSlots[freeCount++] = slot;
+    }
+
+    synchronized int size() {
+        return slots.size();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long budgetBytes() {
+        return budgetBytes;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Share of lookups served from the cache, 0 before the first lookup.
+     */
+    synchronized double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Rows dropped to make room, including new rows that were not admitted.
+     */
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * New rows that lost against the main segment's victim and were not admitted.
+     */
+    synchronized long rejections() {
+        return rejections;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RowCache{size=%d, capacity=%d, hits=%d, misses=%d, hitRatio=%.3f, evictions=%d, rejections=%d}",
+                slots.size(), capacity, hits, misses, hitRatio(), evictions, rejections);
+    }
+}
@@ -0,0 +1,173 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client for SeedBaseServer. One instance is one connection and is not thread-safe.
+
+ * insert, select and range send one request and wait for its response.
+ * insertAll and selectAll pipeline: they send up to PIPELINE_WINDOW requests before reading any
+ * response, so a batch costs a few round trips instead of one per element. The window bounds
+ * the unread responses, which keeps both socket buffers from filling up and deadlocking.
+ * After every half window of responses the window is refilled with one flush.
+ */
+public class SeedBaseClient implements AutoCloseable {
+    static final int PIPELINE_WINDOW = 1024;
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Connect to a server on the loopback interface.
+     */
+    public SeedBaseClient(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    public SeedBaseClient(InetAddress address, int port) throws IOException {
+        socket = new Socket(address, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+    }
+
+    public void insert(int id, String name) throws IOException {
+        writeInsert(id, name);
+        out.flush();
+        readInsert();
+    }
+
+    /**
+     * @return The user, or null if the id is absent
+     */
+    public User select(int id) throws IOException {
+        writeSelect(id);
+        out.flush();
+        return readSelect();
+    }
+
+    /**
+     * Users with from <= id <= to, in file order.
+     * The server scans the whole data file for every call.
+     */
+    public List<User> range(int from, int to) throws IOException {
+        out.writeByte(WireProtocol.RANGE);
+        out.writeInt(from);
+        out.writeInt(to);
+        out.flush();
+        expect(in.readByte());
+        int count = in.readInt();
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(WireProtocol.readUser(in));
+        }
+        return users;
+    }
+
+    /**
+     * Insert users with pipelined requests.
+     */
+    public void insertAll(List<User> users) throws IOException {
+        int sent = 0;
+        int received = 0;
+        while (received < users.size()) {
+            sent = refill(sent, received, users.size(), i -> writeInsert(users.get(i).id(), users.get(i).name()));
+            for (int end = received + receiveChunk(sent - received); received < end; received++) {
+                readInsert();
+            }
+        }
+    }
+
+    /**
+     * Select ids with pipelined requests.
+     * @return The users in the order of ids, null for absent ids
+     */
+    public User[] selectAll(int[] ids) throws IOException {
+        User[] users = new User[ids.length];
+        int sent = 0;
+        int received = 0;
+        while (received < ids.length) {
+            sent = refill(sent, received, ids.length, i -> writeSelect(ids[i]));
+            for (int end = received + receiveChunk(sent - received); received < end; received++) {
+                users[received] = readSelect();
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Send requests until the window is full and flush them once.
+     * @return The number of requests sent after this call
+     */
+    private int refill(int sent, int received, int count, Request request) throws IOException {
+        int end = Math.min(count, received + PIPELINE_WINDOW);
+        if (sent < end) {
+            for (; sent < end; sent++) {
+                request.write(sent);
+            }
+            out.flush();
+        }
+        return sent;
+    }
+
+    /**
+     * Responses to read before the next refill: half a window, so each flush carries
+     * that many requests instead of one per response, or all outstanding ones at the end.
+     */
+    private static int receiveChunk(int outstanding) {
+        return Math.min(outstanding, PIPELINE_WINDOW / 2);
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        void write(int index) throws IOException;
+    }
+
+    private void writeInsert(int id, String name) throws IOException {
+        out.writeByte(WireProtocol.INSERT);
+        out.writeInt(id);
+        WireProtocol.writeString(out, name);
+    }
+
+    private void readInsert() throws IOException {
+        expect(in.readByte());
+    }
+
+    private void writeSelect(int id) throws IOException {
+        out.writeByte(WireProtocol.SELECT);
+        out.writeInt(id);
+    }
+
+    private User readSelect() throws IOException {
+        byte status = in.readByte();
+        if (status == WireProtocol.NOT_FOUND) {
+            return null;
+        }
+        expect(status);
+        return WireProtocol.readUser(in);
+    }
+
+    private void expect(byte status) throws IOException {
+        if (status == WireProtocol.ERROR) {
+            throw new IOException("Server error: " + WireProtocol.readString(in));
+        }
+        if (status != WireProtocol.OK) {
+            throw new IOException("Unexpected status " + status);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
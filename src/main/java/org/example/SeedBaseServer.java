@@ -0,0 +1,215 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * TCP server exposing a SimpleDataBase through WireProtocol, see SeedBaseClient.
+
+ * Every connection is served by its own virtual thread, so thousands of mostly idle connections
+ * cost a few KiB each and blocking reads and writes do not tie up platform threads.
+ * A connection reads requests one after another and writes the responses into a buffer,
+ * which is flushed only when no further request is already buffered. Pipelined requests
+ * therefore get their responses in one write instead of one write per request.
+
+ * A request whose database call throws is answered with WireProtocol.ERROR and the message,
+ * and the connection goes on with the next request. I/O errors on a connection close only that connection.
+
+ * Inserts are serialized with a write lock, because a plain insert writes a record in two parts,
+ * while selects and ranges share a read lock. Locks instead of synchronized keep virtual threads
+ * from pinning their carrier while they wait. Plain selects and scans open their own file handles
+ * and run concurrently; with a buffer pool or mapped reads, SimpleDataBase serializes selects
+ * on its monitor, because neither reader is thread-safe.
+
+ * SELECT scans the data file like SimpleDataBase.select and RANGE scans all of it with
+ * RecordFilter.idBetween, so both cost O(n) per request. The index is not used for RANGE because
+ * it holds only the first row of an id, while RANGE returns every matching row in file order.
+ */
+public class SeedBaseServer implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    private final SimpleDataBase db;
+    private final ServerSocket serverSocket;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    /**
+     * Listen on the loopback interface.
+     * @param port Port to listen on, 0 for any free port, see port()
+     */
+    public SeedBaseServer(SimpleDataBase db, int port) throws IOException {
+        this.db = db;
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        acceptor = Thread.ofVirtual().name("seedbase-acceptor").start(this::acceptLoop);
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                Thread.ofVirtual().name("seedbase-connection-" + socket.getPort()).start(() -> serve(socket));
+            } catch (IOException e) {
+                // Closed by close(), or a failed accept that the next iteration retries
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            while (true) {
+                int opcode = in.read();
+                if (opcode < 0) {
+                    break;
+                }
+                handle((byte) opcode, in, out);
+                // Batch the responses of pipelined requests that are already here
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client went away mid-request, close() shut the socket, or the connection broke.
+            // Either way only this connection is lost, and the socket is closed on the way out
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void handle(byte opcode, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (opcode) {
+            case WireProtocol.INSERT -> {
+                int id = in.readInt();
+                String name = WireProtocol.readString(in);
+                lock.writeLock().lock();
+                try {
+                    db.insert(id, name);
+                } catch (RuntimeException e) {
+                    writeError(out, e);
+                    return;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                out.writeByte(WireProtocol.OK);
+            }
+            case WireProtocol.SELECT -> {
+                int id = in.readInt();
+                User user;
+                lock.readLock().lock();
+                try {
+                    user = db.select(id);
+                } catch (RuntimeException e) {
+                    writeError(out, e);
+                    return;
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (user == null) {
+                    out.writeByte(WireProtocol.NOT_FOUND);
+                } else {
+                    out.writeByte(WireProtocol.OK);
+                    WireProtocol.writeUser(out, user);
+                }
+            }
+            case WireProtocol.RANGE -> {
+                int from = in.readInt();
+                int to = in.readInt();
+                User[] users;
+                lock.readLock().lock();
+                try (Stream<User> matching = db.scan(RecordFilter.idBetween(from, to))) {
+                    users = matching.toArray(User[]::new);
+                } catch (RuntimeException e) {
+                    writeError(out, e);
+                    return;
+                } finally {
+                    lock.readLock().unlock();
+                }
+                out.writeByte(WireProtocol.OK);
+                out.writeInt(users.length);
+                for (User user : users) {
+                    WireProtocol.writeUser(out, user);
+                }
+            }
+            default -> {
+                // The rest of the stream cannot be parsed, answer and let the client close
+                out.writeByte(WireProtocol.ERROR);
+                WireProtocol.writeString(out, "Unknown opcode " + opcode);
+                out.flush();
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Answer a request whose database call failed. The request was read completely,
+     * so the connection stays usable for the requests after it.
+     */
+    private static void writeError(DataOutputStream out, RuntimeException e) throws IOException {
+        String message = e.getMessage() != null ? e.getMessage() : e.toString();
+        if (e.getCause() != null) {
+            message += ": " + e.getCause();
+        }
+        // Keep within the unsigned short length of WireProtocol strings even for 3-byte characters
+        if (message.length() > 0xFFFF / 3) {
+            message = message.substring(0, 0xFFFF / 3);
+        }
+        out.writeByte(WireProtocol.ERROR);
+        WireProtocol.writeString(out, message);
+    }
+
+    /**
+     * Stop accepting, close every connection and wait for the acceptor to exit.
+     * The database is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Iterator<Socket> it = connections.iterator(); it.hasNext(); ) {
+            it.next().close();
+            it.remove();
+        }
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Serve a database file until the process is killed.
+     * Usage: SeedBaseServer <database file> [port]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: SeedBaseServer <database file> [port]");
+            System.exit(1);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7878;
+        SimpleDataBase db = new SimpleDataBase(args[0], false);
+        SeedBaseServer server = new SeedBaseServer(db, port);
+        System.out.println("SeedBase listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.port());
+        server.acceptor.join();
+    }
+}
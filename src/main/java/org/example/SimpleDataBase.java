@@ -1,62 +1,201 @@
 package org.example;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-record User(int id, String name) {
-    // 使用 record 可以自动生成构造器、getter 方法、equals()、hashCode() 和 toString() 方法。
-    // 表明这个类只存数据
-    @Override
-    public String toString() {
-        return "User{id=" + id + ", name='" + name + "'}";
-    }
+public class SimpleDataBase implements AutoCloseable {
+    // Each user record is 16 bytes (4 bytes for id + 12 bytes for name)
+    static final int RECORD_SIZE = 16;
 
-}
-
-public class SimpleDataBase {
-    private static String filename = "db_simple.db";
+    private final String filename;
+    // Optional on-disk B+ tree from id to record offset, see createIndex
+    private DiskBPlusTree index;
+    // Optional page cache for reading the data file, see useBufferPool
+    private BufferPool pool;
+    // Optional memory-mapped view for reading the data file, see useMappedReads
+    private MappedRecordFile mapped;
+    // Optional redo log that makes inserts crash-safe, see useWriteAheadLog
+    private WriteAheadLog wal;
+    // Optional filter that rejects most absent ids without reading the file, see useBloomFilter
+    private BloomFilter bloom;
+    private int bloomBitsPerKey;
+    private final BloomFilter.Stats bloomStats = new BloomFilter.Stats();
+    // Optional secondary index from name to record offsets, see useNameIndex
+    private NameIndex nameIndex;
+    // Optional inverted index from name tokens to records, see useKeywordIndex
+    private KeywordIndex keywordIndex;
+    // Optional cache of selected rows by id, see useRowCache
+    private RowCache rowCache;
 
     public SimpleDataBase(String filename, boolean clear) {
-        SimpleDataBase.filename = filename;
+        this.filename = filename;
         if (clear) {
             clear();
         }
     }
 
     public void insert(int id, String name) {
-        try (FileOutputStream fos = new FileOutputStream(filename, true)) {
-            // FileOutputStream 是用于写入字节流到文件的类
-            // 追加模式打开，新数据会写入到文件末尾
-            // Use 4 bytes to represent id
-            // 使用 4 bytes 保存 id
-            // Byte length can be chosen arbitrarily
-            // 实际的字节长度是任意的
-            byte[] idBytes = intToBytes(id);
-
-            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
-            // Use 12 bytes to represent name
-            // 使用 12 bytes 保存 name
-            // Byte length can be chosen arbitrarily
-            // Pad the data length
-            // name 定长，需要填充
-            byte[] nameBytePadded = Arrays.copyOf(nameBytes, 12);
-
-            System.out.println("insert " + Arrays.toString(idBytes) + " " + Arrays.toString(nameBytePadded));
-
-            fos.write(idBytes);
-            fos.write(nameBytePadded);
+        long start = Metrics.start();
+        if (wal != null) {
+            ByteBuffer record = ByteBuffer.allocate(16).putInt(id);
+            RecordWriter.encodeName(name, record);
+            insertLogged(record.flip());
+            Metrics.end(Metrics.Operation.DB_INSERT, start, id);
+            return;
+        }
+        Metrics.increment(Metrics.Counter.FILE_OPENS);
+        // Taking the end of the file, writing and indexing must not interleave with other inserts or a RecordWriter
+        synchronized (this) {
+            try (FileOutputStream fos = new FileOutputStream(filename, true)) {
+                // Offset of the new record, which is the current end of the file
+                long offset = fos.getChannel().size();
+                // FileOutputStream 是用于写入字节流到文件的类
+                // 追加模式打开，新数据会写入到文件末尾
+                // Use 4 bytes to represent id
+                // 使用 4 bytes 保存 id
+                // Byte length can be chosen arbitrarily
+                // 实际的字节长度是任意的
+                byte[] idBytes = intToBytes(id);
+
+                byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                // Use 12 bytes to represent name
+                // 使用 12 bytes 保存 name
+                // Byte length can be chosen arbitrarily
+                // Pad the data length
+                // name 定长，需要填充
+                byte[] nameBytePadded = Arrays.copyOf(nameBytes, 12);
+
+                fos.write(idBytes);
+                fos.write(nameBytePadded);
+                Metrics.add(Metrics.Counter.BYTES_WRITTEN, RECORD_SIZE);
+
+                appended(ByteBuffer.allocate(16).put(idBytes).put(nameBytePadded).flip(), offset);
+            } catch (IOException e) {
+                throw new RuntimeException();
+            }
+        }
+        Metrics.end(Metrics.Operation.DB_INSERT, start, id);
+    }
+
+    /**
+     * Log the record, write it to the data file and wait for the log to be durable.
+     * Concurrent inserts share one fsync of the log, see WriteAheadLog.
+     */
+    private void insertLogged(ByteBuffer record) {
+        try {
+            long offset;
+            synchronized (this) {
+                offset = wal.append(record);
+                appended(record, offset);
+            }
+            wal.commit(offset + record.remaining());
         } catch (IOException e) {
-            throw new RuntimeException();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Insert many users with buffered, batched writes and one fsync per batch.
+     * The users are durable when the call returns.
+     */
+    public void insertAll(Iterable<User> users) {
+        try (RecordWriter writer = openWriter(RecordWriter.SyncMode.EVERY_FLUSH, 0)) {
+            writer.appendAll(users);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Open a long-lived writer for appending many rows, see RecordWriter.
+     * The index and read caches of this database are updated when the writer flushes,
+     * rows still buffered in the writer are not visible to select yet.
+     * @param syncMode When written rows are forced to disk
+     * @param syncIntervalMillis fsync period for SyncMode.INTERVAL, ignored otherwise
+     */
+    public RecordWriter openWriter(RecordWriter.SyncMode syncMode, long syncIntervalMillis) {
+        try {
+            return new RecordWriter(filename, syncMode, syncIntervalMillis, this);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Keep the index and the buffer pool in step with whole records appended at offset.
+     * Called by insert and by RecordWriter after the records are written.
+     */
+    synchronized void appended(ByteBuffer records, long offset) throws IOException {
+        int start = records.position();
+        int length = records.remaining();
+        if (index != null) {
+            for (int position = start; position < start + length; position += 16) {
+                index.insert(records.getInt(position), offset + position - start);
+            }
+            index.setIndexedBytes(offset + length);
+        }
+        if (bloom != null) {
+            for (int position = start; position < start + length; position += 16) {
+                bloom.add(records.getInt(position));
+            }
+            bloom.setCoveredBytes(offset + length);
+            if (bloom.isFull()) {
+                rebuildBloomFilter();
+            }
+        }
+        if (nameIndex != null) {
+            for (int position = start; position < start + length; position += 16) {
+                nameIndex.add(decodeRecord(records, position).name(), offset + position - start);
+            }
+            nameIndex.setCoveredBytes(offset + length);
+        }
+        if (keywordIndex != null) {
+            for (int position = start; position < start + length; position += 16) {
+                keywordIndex.add((int) ((offset + position - start) / RECORD_SIZE), decodeRecord(records, position).name());
+            }
+        }
+        if (rowCache != null) {
+            for (int position = start; position < start + length; position += 16) {
+                rowCache.invalidate(records.getInt(position));
+            }
+        }
+        if (pool != null) {
+            // The cached copies of these pages do not have the new records
+            int pageSize = pool.file().pageSize();
+            for (long pageNo = offset / pageSize; pageNo <= (offset + length - 1) / pageSize; pageNo++) {
+                pool.discard((int) pageNo);
+            }
         }
     }
 
     public User select(int idQuery) {
+        return filtered(idQuery, this::selectScan);
+    }
+
+    private User selectScan(int idQuery) {
+        // The buffer pool and the mapping are not thread-safe, and appended changes them too
+        synchronized (this) {
+            if (mapped != null) {
+                refreshMapping();
+                return mapped.select(idQuery);
+            }
+            if (pool != null) {
+                return selectPooled(idQuery);
+            }
+        }
         // o(n) time complexity
         // incorrect read: all at once
         // content = file.readall()
         // users = decode(content)
         // correct read: one user at a time
+        Metrics.increment(Metrics.Counter.FILE_OPENS);
         try (FileInputStream fis = new FileInputStream(filename)) {
             byte[] idBytes = new byte[4];
             byte[] nameBytePadded = new byte[12];
@@ -66,6 +205,7 @@ public class SimpleDataBase {
             // available memory.
             while (fis.read(idBytes) != -1) {
                 fis.read(nameBytePadded);
+                Metrics.add(Metrics.Counter.BYTES_READ, RECORD_SIZE);
                 int id = bytesToInt(idBytes);
                 if (id == idQuery) {
                     // Remove trailing zeros
@@ -81,8 +221,22 @@ public class SimpleDataBase {
     }
 
     public User selectBinarySearch(int idQuery) {
+        return filtered(idQuery, this::selectSorted);
+    }
+
+    private User selectSorted(int idQuery) {
+        synchronized (this) {
+            if (mapped != null) {
+                refreshMapping();
+                return mapped.binarySearch(idQuery);
+            }
+            if (pool != null) {
+                return selectBinarySearchPooled(idQuery);
+            }
+        }
         // o(log n) time complexity
         // binary search for id
+        Metrics.increment(Metrics.Counter.FILE_OPENS);
         try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
             long low = 0;
             // Each user record is 16 bytes (4 bytes for id + 12 bytes for name)
@@ -96,6 +250,7 @@ public class SimpleDataBase {
 
                 byte[] idBytes = new byte[4];
                 raf.read(idBytes);
+                Metrics.add(Metrics.Counter.BYTES_READ, idBytes.length);
                 int id = bytesToInt(idBytes);
 
                 if (id < idQuery) {
@@ -105,6 +260,7 @@ public class SimpleDataBase {
                 } else {
                     byte[] nameBytePadded = new byte[12];
                     raf.read(nameBytePadded);
+                    Metrics.add(Metrics.Counter.BYTES_READ, nameBytePadded.length);
                     byte[] nameBytes = stripTrailingZeros(nameBytePadded);
                     String name = new String(nameBytes, StandardCharsets.UTF_8);
                     return new User(id, name);
@@ -116,21 +272,665 @@ public class SimpleDataBase {
         return null;
     }
 
-    public void clear() {
-        // create a new db file
-        File file = new File(filename);
-        // Delete if exists
-        if (file.exists()) {
-            file.delete();
+    /**
+     * Stream every user in insertion order, see scan(RecordFilter).
+     */
+    public Stream<User> scan() {
+        return scan(RecordFilter.ALL);
+    }
+
+    /**
+     * Stream the users that match a filter, in insertion order.
+     * Unlike repeated select calls, the file is read once, front to back in large blocks,
+     * and the filter is evaluated on the raw record bytes, so only matching rows are decoded.
+     * E.g. scan(RecordFilter.idBetween(100, 199).and(RecordFilter.nameStartsWith("A"))).
+
+     * The stream holds the file open, close it or use it in try-with-resources.
+     * It covers the rows in the file when it was created.
+     */
+    public Stream<User> scan(RecordFilter filter) {
+        return scan(filter, RecordScanner.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Like scan(filter), as a parallel stream: the file is split into ranges of whole records
+     * that the common ForkJoinPool scans concurrently, each with its own positional reads.
+     * Counts and other aggregates over large files scale with the cores.
+     * The order of the rows is kept for operations that need it, e.g. collect to a list or findFirst.
+     */
+    public Stream<User> scanParallel(RecordFilter filter) {
+        return scan(filter, RecordScanner.DEFAULT_BLOCK_SIZE, true);
+    }
+
+    Stream<User> scan(RecordFilter filter, int blockSize) {
+        return scan(filter, blockSize, false);
+    }
+
+    Stream<User> scan(RecordFilter filter, int blockSize, boolean parallel) {
+        try {
+            RecordScanner scanner = RecordScanner.open(filename, filter, blockSize);
+            return StreamSupport.stream(scanner, parallel).onClose(scanner::close);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        // Create an empty file
+    }
+
+    /**
+     * Log every insert in a write-ahead log, stored next to the data file as filename + ".wal".
+     * Opening the log recovers the data file from a previous crash first:
+     * logged records are written again and a torn or unlogged tail is truncated,
+     * so the file always holds whole records.
+
+     * The data file is only fsynced at checkpoints, inserts fsync the log:
+     *   EVERY_FLUSH - insert returns once its record is durable, concurrent inserts share one fsync
+     *   INTERVAL    - a background thread fsyncs the log every syncIntervalMillis, insert never waits
+     *   NEVER       - the log is fsynced at checkpoints and on close only
+     * insertAll and writers from openWriter go through the log as well.
+     */
+    public void useWriteAheadLog(RecordWriter.SyncMode syncMode, long syncIntervalMillis) {
+        if (wal != null) {
+            return;
+        }
+        try {
+            if (mapped != null) {
+                // Recovery can truncate the file under the mapping
+                mapped.reset();
+            }
+            wal = new WriteAheadLog(filename, syncMode, syncIntervalMillis);
+            if (pool != null) {
+                pool.discardAll();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The log set by useWriteAheadLog, or null.
+     */
+    WriteAheadLog writeAheadLog() {
+        return wal;
+    }
+
+    /**
+     * Open the on-disk index on id, stored next to the data file as filename + ".idx".
+     * Records appended since the index was last written are indexed first,
+     * and later inserts keep the index up to date. An index file left behind by a crash
+     * comes back empty from DiskBPlusTree, so the whole data file is indexed again.
+
+     * Building the index from scratch takes O(n log n), catching up only reads the new records.
+     */
+    public void createIndex() {
+        createIndex(PageFile.DEFAULT_PAGE_SIZE);
+    }
+
+    synchronized void createIndex(int pageSize) {
+        if (index != null) {
+            return;
+        }
+        // Synchronized with appended, which would insert into the tree while the catch-up scan does
+        try {
+            index = new DiskBPlusTree(filename + ".idx", pageSize);
+            try (FileInputStream fis = new FileInputStream(filename)) {
+                long offset = index.indexedBytes();
+                if (offset > fis.getChannel().size()) {
+                    // The data file was replaced or truncated, the index is stale
+                    index.clear();
+                    offset = 0;
+                }
+                fis.getChannel().position(offset);
+                BufferedInputStream in = new BufferedInputStream(fis);
+                byte[] record = new byte[16];
+                while (in.readNBytes(record, 0, 16) == 16) {
+                    index.insert(bytesToInt(record), offset);
+                    offset += 16;
+                }
+                index.setIndexedBytes(offset);
+            }
+            index.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Select a user through the index created by createIndex.
+     * Reads one index page per tree level and then the record itself,
+     * no matter in which order the rows were inserted.
+
+     * Time complexity: O(log n)
+     */
+    public User selectIndexed(int idQuery) {
+        if (index == null) {
+            throw new IllegalStateException("No index, call createIndex first");
+        }
+        return filtered(idQuery, this::selectThroughIndex);
+    }
+
+    /**
+     * Synchronized because the index reads through its own buffer pool, which is not thread-safe.
+     */
+    private synchronized User selectThroughIndex(int idQuery) {
+        try {
+            long offset = index.search(idQuery);
+            if (offset == DiskBPlusTree.NOT_FOUND) {
+                return null;
+            }
+            return readAt(offset);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Read the record at a byte offset found through an index, from whichever reader is in use.
+     */
+    private User readAt(long offset) {
         try {
-            file.createNewFile();
+            if (mapped != null) {
+                refreshMapping();
+                return mapped.read(offset / RECORD_SIZE);
+            }
+            if (pool != null) {
+                return readPooled(offset / 16);
+            }
+            Metrics.increment(Metrics.Counter.FILE_OPENS);
+            try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+                raf.seek(offset);
+                Metrics.add(Metrics.Counter.BYTES_READ, RECORD_SIZE);
+                byte[] idBytes = new byte[4];
+                raf.readFully(idBytes);
+                byte[] nameBytePadded = new byte[12];
+                raf.readFully(nameBytePadded);
+                byte[] nameBytes = stripTrailingZeros(nameBytePadded);
+                String name = new String(nameBytes, StandardCharsets.UTF_8);
+                return new User(bytesToInt(idBytes), name);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Answer from the row cache if possible, otherwise run a lookup unless the Bloom filter rules the id out,
+     * and count the filter's answers. Rows found by the lookup are offered to the cache.
+     */
+    private User filtered(int idQuery, IntFunction<User> lookup) {
+        long start = Metrics.start();
+        RowCache cache = rowCache;
+        long generation = 0;
+        if (cache != null) {
+            User cached = cache.get(idQuery);
+            if (cached != null) {
+                Metrics.end(Metrics.Operation.DB_SELECT, start, idQuery);
+                return cached;
+            }
+            generation = cache.generation();
+        }
+        BloomFilter filter = bloom;
+        if (filter != null && !bloomStats.check(filter, idQuery)) {
+            Metrics.end(Metrics.Operation.DB_SELECT, start, idQuery);
+            return null;
+        }
+        User user = lookup.apply(idQuery);
+        if (user == null && filter != null) {
+            bloomStats.falsePositive();
+        }
+        if (user != null && cache != null) {
+            cache.put(user, generation);
+        }
+        Metrics.end(Metrics.Operation.DB_SELECT, start, idQuery);
+        return user;
+    }
+
+    /**
+     * Cache selected rows in memory, see RowCache.
+     * select, selectBinarySearch and selectIndexed then answer repeated ids without reading the file
+     * and return the cached User. Rows are dropped when their id is inserted again.
+     * Absent ids are not cached, the Bloom filter is the tool for those.
+     * @param budgetBytes Heap to spend on the cache, RowCache.ENTRY_BYTES per row
+     */
+    public void useRowCache(long budgetBytes) {
+        rowCache = new RowCache(budgetBytes);
+    }
+
+    /**
+     * The row cache set by useRowCache, or null. Reports the hit ratio.
+     */
+    RowCache rowCache() {
+        return rowCache;
+    }
+
+    /**
+     * Keep a Bloom filter over the ids in the data file, stored next to it as filename + ".bloom".
+     * select, selectBinarySearch and selectIndexed then return null for most absent ids
+     * without reading the data file, about 99% of them with the default 10 bits per id.
+
+     * A filter saved by close is loaded and caught up with the records appended since,
+     * otherwise it is rebuilt by reading the ids once. Inserts add their ids,
+     * and a filter that is outgrown by the file is rebuilt with twice the room.
+     */
+    public void useBloomFilter() {
+        useBloomFilter(BloomFilter.DEFAULT_BITS_PER_KEY);
+    }
+
+    synchronized void useBloomFilter(int bitsPerKey) {
+        if (bloom != null) {
+            return;
+        }
+        // Synchronized with appended, like useKeywordIndex
+        bloomBitsPerKey = bitsPerKey;
+        try {
+            BloomFilter loaded = BloomFilter.readFrom(bloomFile());
+            if (loaded != null && loaded.coveredBytes() <= new File(filename).length()) {
+                bloom = loaded;
+                addIdsToBloomFilter(loaded.coveredBytes());
+                if (bloom.isFull()) {
+                    rebuildBloomFilter();
+                }
+            } else {
+                rebuildBloomFilter();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private File bloomFile() {
+        return new File(filename + ".bloom");
+    }
+
+    /**
+     * Size a new filter for twice the records in the file and add all their ids.
+     */
+    private void rebuildBloomFilter() throws IOException {
+        long records = new File(filename).length() / 16;
+        bloom = new BloomFilter(Math.max(1024, 2 * records), bloomBitsPerKey);
+        addIdsToBloomFilter(0);
+    }
+
+    private void addIdsToBloomFilter(long offset) throws IOException {
+        try (FileInputStream fis = new FileInputStream(filename)) {
+            fis.getChannel().position(offset);
+            BufferedInputStream in = new BufferedInputStream(fis);
+            byte[] record = new byte[16];
+            while (in.readNBytes(record, 0, 16) == 16) {
+                bloom.add(bytesToInt(record));
+                offset += 16;
+            }
+        }
+        bloom.setCoveredBytes(offset);
+    }
+
+    /**
+     * Counters of the Bloom filter set by useBloomFilter, hit and false positive rates included.
+     */
+    BloomFilter.Stats bloomFilterStats() {
+        return bloomStats;
+    }
+
+    /**
+     * Keep a secondary index on name, stored next to the data file as filename + ".names".
+     * selectByName and selectByNamePrefix then find users in O(log n + k) for k matches
+     * instead of decoding every record.
+
+     * Like the Bloom filter, an index saved by close is loaded and caught up with the records appended since,
+     * otherwise it is rebuilt by reading the file once. Inserts keep it up to date.
+     */
+    public synchronized void useNameIndex() {
+        if (nameIndex != null) {
+            return;
+        }
+        // Synchronized with appended, so no insert falls between the catch-up scan and the assignment
+        try {
+            NameIndex loaded = NameIndex.readFrom(nameIndexFile());
+            long offset = 0;
+            if (loaded != null && loaded.coveredBytes() <= new File(filename).length()) {
+                offset = loaded.coveredBytes();
+            } else {
+                loaded = new NameIndex();
+            }
+            try (FileInputStream fis = new FileInputStream(filename)) {
+                fis.getChannel().position(offset);
+                BufferedInputStream in = new BufferedInputStream(fis);
+                byte[] record = new byte[16];
+                while (in.readNBytes(record, 0, 16) == 16) {
+                    loaded.add(decodeRecord(ByteBuffer.wrap(record), 0).name(), offset);
+                    offset += 16;
+                }
+            }
+            loaded.setCoveredBytes(offset);
+            nameIndex = loaded;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private File nameIndexFile() {
+        return new File(filename + ".names");
+    }
+
+    /**
+     * Users whose stored name equals name, in insertion order, through the index set by useNameIndex.
+     * Names are stored in 12 bytes, so a longer name matches the records it was truncated to on insert.
+     */
+    public List<User> selectByName(String name) {
+        long[] offsets;
+        synchronized (this) {
+            offsets = requireNameIndex().lookup(storedName(name));
+        }
+        return readAll(offsets);
+    }
+
+    /**
+     * Users whose stored name starts with prefix, ordered by name and then by insertion order.
+     */
+    public List<User> selectByNamePrefix(String prefix) {
+        long[] offsets;
+        synchronized (this) {
+            offsets = requireNameIndex().lookupPrefix(storedName(prefix));
+        }
+        return readAll(offsets);
+    }
+
+    private NameIndex requireNameIndex() {
+        if (nameIndex == null) {
+            throw new IllegalStateException("No name index, call useNameIndex first");
+        }
+        return nameIndex;
+    }
+
+    /**
+     * The name as insert stores it: truncated to 12 bytes of UTF-8 and read back.
+     */
+    static String storedName(String name) {
+        ByteBuffer record = ByteBuffer.allocate(16).putInt(0);
+        RecordWriter.encodeName(name, record);
+        return decodeRecord(record, 0).name();
+    }
+
+    /**
+     * Keep an inverted index from the words of each name to its records, for searchAll and searchAny.
+     * The index lives in memory: it is built by reading the file once and kept up to date by inserts.
+     */
+    public synchronized void useKeywordIndex() {
+        if (keywordIndex != null) {
+            return;
+        }
+        // Synchronized with appended, so no insert falls between the scan and the first indexed insert
+        KeywordIndex built = new KeywordIndex();
+        try (FileInputStream fis = new FileInputStream(filename)) {
+            BufferedInputStream in = new BufferedInputStream(fis);
+            byte[] record = new byte[16];
+            int recordNo = 0;
+            while (in.readNBytes(record, 0, 16) == 16) {
+                built.add(recordNo++, decodeRecord(ByteBuffer.wrap(record), 0).name());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        keywordIndex = built;
+    }
+
+    /**
+     * Users whose name contains every word of keywords, case-insensitive, in insertion order.
+     * E.g. searchAll("ann lee") finds "Ann Lee" and "Lee, Mary Ann".
+     */
+    public List<User> searchAll(String keywords) {
+        int[] records;
+        synchronized (this) {
+            records = requireKeywordIndex().all(keywords);
+        }
+        return readRecords(records);
+    }
+
+    /**
+     * Users whose name contains at least one word of keywords, case-insensitive, in insertion order.
+     */
+    public List<User> searchAny(String keywords) {
+        int[] records;
+        synchronized (this) {
+            records = requireKeywordIndex().any(keywords);
+        }
+        return readRecords(records);
+    }
+
+    private KeywordIndex requireKeywordIndex() {
+        if (keywordIndex == null) {
+            throw new IllegalStateException("No keyword index, call useKeywordIndex first");
+        }
+        return keywordIndex;
+    }
+
+    private List<User> readRecords(int[] records) {
+        List<User> users = new ArrayList<>(records.length);
+        for (int record : records) {
+            users.add(readAt((long) record * RECORD_SIZE));
+        }
+        return users;
+    }
+
+    private List<User> readAll(long[] offsets) {
+        List<User> users = new ArrayList<>(offsets.length);
+        for (long offset : offsets) {
+            users.add(readAt(offset));
+        }
+        return users;
+    }
+
+    /**
+     * Read the data file through a buffer pool of fixed-size pages instead of opening it on every call.
+     * A 4 KiB page holds 256 records, and a record never crosses a page boundary.
+     * select, selectBinarySearch and selectIndexed use the pool from now on,
+     * repeated reads of the same pages are served from memory.
+     * The pool is not thread-safe, so concurrent selects take turns on this database's monitor.
+     * @param pages Number of pages in the pool
+     * @param policyFactory Eviction policy, e.g. LruPolicy::new, ClockPolicy::new or TwoQueuePolicy::new
+     */
+    public synchronized void useBufferPool(int pages, IntFunction<EvictionPolicy> policyFactory) {
+        try {
+            closeReaders();
+            pool = new BufferPool(new PageFile(filename, PageFile.DEFAULT_PAGE_SIZE), pages, policyFactory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Read the data file through memory-mapped chunks instead of opening it on every call.
+     * select and selectBinarySearch then decode records straight from the mapping,
+     * without seek or read system calls and without temporary byte arrays.
+     * Records appended later are mapped on the next read.
+     * Replaces a buffer pool set by useBufferPool.
+     * Mapping new records changes the chunks, so concurrent selects take turns on this database's monitor.
+     */
+    public void useMappedReads() {
+        useMappedReads(MappedRecordFile.DEFAULT_CHUNK_SIZE);
+    }
+
+    synchronized void useMappedReads(int chunkSize) {
+        try {
+            closeReaders();
+            mapped = new MappedRecordFile(filename, chunkSize);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void refreshMapping() {
+        try {
+            mapped.refresh();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void closeReaders() throws IOException {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        if (mapped != null) {
+            mapped.close();
+            mapped = null;
+        }
+    }
+
+    /**
+     * The buffer pool set by useBufferPool, or null.
+     */
+    BufferPool bufferPool() {
+        return pool;
+    }
+
+    private User selectPooled(int idQuery) {
+        try {
+            int recordsPerPage = pool.file().pageSize() / 16;
+            long records = pool.file().size() / 16;
+            for (int pageNo = 0; (long) pageNo * recordsPerPage < records; pageNo++) {
+                int count = (int) Math.min(recordsPerPage, records - (long) pageNo * recordsPerPage);
+                Page page = pool.pin(pageNo);
+                try {
+                    ByteBuffer data = page.data();
+                    for (int i = 0; i < count; i++) {
+                        if (data.getInt(i * 16) == idQuery) {
+                            return decodeRecord(data, i * 16);
+                        }
+                    }
+                } finally {
+                    pool.unpin(page, false);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    private User selectBinarySearchPooled(int idQuery) {
+        try {
+            int recordsPerPage = pool.file().pageSize() / 16;
+            long low = 0;
+            long high = pool.file().size() / 16 - 1;
+            while (low <= high) {
+                long mid = (low + high) / 2;
+                Page page = pool.pin((int) (mid / recordsPerPage));
+                try {
+                    int offset = (int) (mid % recordsPerPage) * 16;
+                    int id = page.data().getInt(offset);
+                    if (id < idQuery) {
+                        low = mid + 1;
+                    } else if (id > idQuery) {
+                        high = mid - 1;
+                    } else {
+                        return decodeRecord(page.data(), offset);
+                    }
+                } finally {
+                    pool.unpin(page, false);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    private User readPooled(long record) throws IOException {
+        int recordsPerPage = pool.file().pageSize() / 16;
+        Page page = pool.pin((int) (record / recordsPerPage));
+        try {
+            return decodeRecord(page.data(), (int) (record % recordsPerPage) * 16);
+        } finally {
+            pool.unpin(page, false);
+        }
+    }
+
+    /**
+     * Decode the 16-byte record starting at offset in a buffer.
+     * Only the name bytes without the padding are copied.
+     */
+    static User decodeRecord(ByteBuffer buffer, int offset) {
+        // Remove trailing zeros
+        int length = 12;
+        while (length > 0 && buffer.get(offset + 4 + length - 1) == 0) {
+            length--;
+        }
+        byte[] nameBytes = new byte[length];
+        buffer.get(offset + 4, nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        return new User(buffer.getInt(offset), name);
+    }
+
+    public void clear() {
+        // Truncate the db file, or create it if it does not exist
+        // The file is not deleted, so channels kept open by the buffer pool stay valid
+        try (RandomAccessFile raf = new RandomAccessFile(filename, "rw")) {
+            if (mapped != null) {
+                // Reading a mapping past the end of the truncated file would crash
+                mapped.reset();
+            }
+            raf.setLength(0);
+            if (pool != null) {
+                pool.discardAll();
+            }
+            if (wal != null) {
+                wal.reset();
+            } else {
+                new File(filename + ".wal").delete();
+            }
+            if (bloom != null) {
+                bloom = new BloomFilter(1024, bloomBitsPerKey);
+            }
+            // A filter of the old file would be caught up from the wrong offset
+            bloomFile().delete();
+            if (nameIndex != null) {
+                nameIndex = new NameIndex();
+            }
+            nameIndexFile().delete();
+            if (keywordIndex != null) {
+                keywordIndex = new KeywordIndex();
+            }
+            if (rowCache != null) {
+                rowCache.clear();
+            }
+            if (index != null) {
+                index.clear();
+            } else {
+                // An index left from the old file would point at the wrong records
+                new File(filename + ".idx").delete();
+            }
         } catch (IOException e) {
             throw new RuntimeException();
         }
     }
 
+    @Override
+    public void close() {
+        try {
+            if (wal != null) {
+                wal.close();
+                wal = null;
+            }
+            if (index != null) {
+                index.close();
+                index = null;
+            }
+            if (bloom != null) {
+                bloom.writeTo(bloomFile());
+                bloom = null;
+            }
+            if (nameIndex != null) {
+                nameIndex.writeTo(nameIndexFile());
+                nameIndex = null;
+            }
+            keywordIndex = null;
+            rowCache = null;
+            closeReaders();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public byte[] intToBytes(int value) {
         return new byte[] {
                 (byte) (value >>> 24),
@@ -141,10 +941,11 @@ public class SimpleDataBase {
     }
 
     int bytesToInt(byte[] bytes) {
+        // Mask the lower bytes, otherwise a byte >= 0x80 is sign-extended over the higher ones
         return (bytes[0] << 24) |
-                (bytes[1] << 16) |
-                (bytes[2] << 8) |
-                (bytes[3]);
+                ((bytes[1] & 0xFF) << 16) |
+                ((bytes[2] & 0xFF) << 8) |
+                (bytes[3] & 0xFF);
     }
 
     private byte[] stripTrailingZeros(byte[] array) {
@@ -0,0 +1,390 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Users with names of any length, stored in slotted pages instead of 16-byte records.
+ * SimpleDataBase pads every name to 12 bytes and cuts longer ones off,
+ * here a row takes 6 bytes plus the UTF-8 bytes of its name and nothing is truncated.
+
+ * Data page layout, pages of the data file hold nothing else:
+ *   0: short slot count
+ *   2: short heap start, the lowest byte used by records
+ *   4: short[slot count] slot directory, the offset of each record
+ *   ... free space ...
+ *   heap start: records, growing down from the end of the page
+ * Records are appended to the heap in slot order, so record i ends where record i - 1 starts
+ * and its length needs no field. A record is the id (int) followed by the name bytes.
+
+ * Names longer than maxInline bytes go to a chain of overflow pages in filename + ".ovf",
+ * and the slot has the OVERFLOW bit set. The record then holds:
+ *   id (int), name length (int), first overflow page (int)
+ * Overflow page layout:
+ *   0: int next overflow page, -1 for the last
+ *   4: int bytes used on this page
+ *   8: name bytes
+ * Keeping overflow pages in their own file leaves every data page with at least one row,
+ * which the binary search over pages relies on.
+
+ * Lookups:
+ *   select             - scan every page, O(n)
+ *   selectBinarySearch - binary search over pages by their first and last id, then over the slots,
+ *                        O(log n) page reads, correct when ids were inserted in ascending order
+ *   selectIndexed      - DiskBPlusTree from id to row id (page number << 16 | slot), O(log n) for any order
+ * Pages are read through a BufferPool, new rows go into the last page until it is full.
+ */
+public class SlottedDataBase implements AutoCloseable {
+    static final int DEFAULT_CACHE_PAGES = 256;
+
+    private static final int SLOT_COUNT = 0;
+    private static final int HEAP_START = 2;
+    private static final int HEADER = 4;
+    private static final int SLOT_SIZE = 2;
+    // Marks a slot whose record points to overflow pages, page offsets stay below it
+    private static final int OVERFLOW = 0x8000;
+    private static final int OVERFLOW_RECORD = 12;
+
+    private static final int OVERFLOW_NEXT = 0;
+    private static final int OVERFLOW_USED = 4;
+    private static final int OVERFLOW_HEADER = 8;
+
+    private final String filename;
+    private final int pageSize;
+    private final int maxInline;
+    private final BufferPool pool;
+    private final PageFile overflow;
+    private final DiskBPlusTree index;
+    private long rows;
+
+    public SlottedDataBase(String filename, boolean clear) {
+        this(filename, clear, PageFile.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param pageSize Size of data and overflow pages, at most 32 KiB so offsets fit next to the overflow bit
+     */
+    SlottedDataBase(String filename, boolean clear, int pageSize) {
+        if (pageSize < 64 || pageSize > OVERFLOW) {
+            throw new IllegalArgumentException("Page size must be between 64 bytes and 32 KiB");
+        }
+        this.filename = filename;
+        this.pageSize = pageSize;
+        // Longer names would leave room for only a few rows per page
+        maxInline = pageSize / 8;
+        try {
+            pool = new BufferPool(new PageFile(filename, pageSize), DEFAULT_CACHE_PAGES, LruPolicy::new);
+            overflow = new PageFile(filename + ".ovf", pageSize);
+            index = new DiskBPlusTree(filename + ".idx", pageSize);
+            if (clear) {
+                reset();
+            } else {
+                openRows();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Count the rows and rebuild the index if it does not cover all of them,
+     * e.g. after a crash between a page write and the index flush.
+     */
+    private void openRows() throws IOException {
+        rows = 0;
+        for (int pageNo = 0; pageNo < pool.file().pageCount(); pageNo++) {
+            Page page = pool.pin(pageNo);
+            rows += slotCount(page.data());
+            pool.unpin(page, false);
+        }
+        // The index counts rows in its indexed bytes field
+        if (index.indexedBytes() != rows) {
+            index.clear();
+            for (int pageNo = 0; pageNo < pool.file().pageCount(); pageNo++) {
+                Page page = pool.pin(pageNo);
+                try {
+                    ByteBuffer data = page.data();
+                    for (int slot = 0; slot < slotCount(data); slot++) {
+                        index.insert(data.getInt(recordOffset(data, slot)), rowId(pageNo, slot));
+                    }
+                } finally {
+                    pool.unpin(page, false);
+                }
+            }
+            index.setIndexedBytes(rows);
+            index.flush();
+        }
+    }
+
+    public void insert(int id, String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean isOverflow = nameBytes.length > maxInline;
+        int recordLength = isOverflow ? OVERFLOW_RECORD : Integer.BYTES + nameBytes.length;
+        try {
+            int firstOverflowPage = isOverflow ? writeOverflow(nameBytes) : -1;
+
+            Page page = null;
+            int lastPage = pool.file().pageCount() - 1;
+            if (lastPage >= 0) {
+                page = pool.pin(lastPage);
+                if (freeSpace(page.data()) < recordLength + SLOT_SIZE) {
+                    pool.unpin(page, false);
+                    page = null;
+                }
+            }
+            if (page == null) {
+                page = pool.newPage();
+                page.data().putShort(HEAP_START, (short) pageSize);
+            }
+            try {
+                ByteBuffer data = page.data();
+                int slot = slotCount(data);
+                int offset = heapStart(data) - recordLength;
+                data.putInt(offset, id);
+                if (isOverflow) {
+                    data.putInt(offset + 4, nameBytes.length);
+                    data.putInt(offset + 8, firstOverflowPage);
+                } else {
+                    data.put(offset + 4, nameBytes);
+                }
+                data.putShort(HEADER + slot * SLOT_SIZE, (short) (offset | (isOverflow ? OVERFLOW : 0)));
+                data.putShort(HEAP_START, (short) offset);
+                data.putShort(SLOT_COUNT, (short) (slot + 1));
+                index.insert(id, rowId(page.pageNo(), slot));
+            } finally {
+                pool.unpin(page, true);
+            }
+            rows++;
+            index.setIndexedBytes(rows);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Write a long name to a new chain of overflow pages.
+     * @return the first page of the chain
+     */
+    private int writeOverflow(byte[] nameBytes) throws IOException {
+        int chunk = pageSize - OVERFLOW_HEADER;
+        int pages = (nameBytes.length + chunk - 1) / chunk;
+        int first = overflow.allocatePage();
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        int pageNo = first;
+        for (int i = 0; i < pages; i++) {
+            int next = i == pages - 1 ? -1 : overflow.allocatePage();
+            int used = Math.min(chunk, nameBytes.length - i * chunk);
+            buffer.clear();
+            buffer.putInt(OVERFLOW_NEXT, next);
+            buffer.putInt(OVERFLOW_USED, used);
+            buffer.put(OVERFLOW_HEADER, nameBytes, i * chunk, used);
+            overflow.writePage(pageNo, buffer);
+            pageNo = next;
+        }
+        return first;
+    }
+
+    private String readOverflow(int length, int pageNo) throws IOException {
+        byte[] nameBytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        int read = 0;
+        while (pageNo >= 0 && read < length) {
+            overflow.readPage(pageNo, buffer);
+            int used = buffer.getInt(OVERFLOW_USED);
+            buffer.get(OVERFLOW_HEADER, nameBytes, read, used);
+            read += used;
+            pageNo = buffer.getInt(OVERFLOW_NEXT);
+        }
+        return new String(nameBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Linear scan for the first row with the id, like SimpleDataBase.select.
+     */
+    public User select(int idQuery) {
+        try {
+            for (int pageNo = 0; pageNo < pool.file().pageCount(); pageNo++) {
+                Page page = pool.pin(pageNo);
+                try {
+                    ByteBuffer data = page.data();
+                    for (int slot = 0; slot < slotCount(data); slot++) {
+                        if (data.getInt(recordOffset(data, slot)) == idQuery) {
+                            return decode(data, slot);
+                        }
+                    }
+                } finally {
+                    pool.unpin(page, false);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Binary search over rows inserted in ascending id order, like SimpleDataBase.selectBinarySearch.
+     * The page is found from the first and last id on each probed page, then its slot directory is searched.
+     */
+    public User selectBinarySearch(int idQuery) {
+        try {
+            int low = 0;
+            int high = pool.file().pageCount() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                Page page = pool.pin(mid);
+                try {
+                    ByteBuffer data = page.data();
+                    int count = slotCount(data);
+                    if (idQuery < data.getInt(recordOffset(data, 0))) {
+                        high = mid - 1;
+                    } else if (idQuery > data.getInt(recordOffset(data, count - 1))) {
+                        low = mid + 1;
+                    } else {
+                        int slotLow = 0;
+                        int slotHigh = count - 1;
+                        while (slotLow <= slotHigh) {
+                            int slot = (slotLow + slotHigh) >>> 1;
+                            int id = data.getInt(recordOffset(data, slot));
+                            if (id < idQuery) {
+                                slotLow = slot + 1;
+                            } else if (id > idQuery) {
+                                slotHigh = slot - 1;
+                            } else {
+                                return decode(data, slot);
+                            }
+                        }
+                        return null;
+                    }
+                } finally {
+                    pool.unpin(page, false);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Select through the index on id, which is kept up to date by insert.
+     */
+    public User selectIndexed(int idQuery) {
+        try {
+            long rowId = index.search(idQuery);
+            if (rowId == DiskBPlusTree.NOT_FOUND) {
+                return null;
+            }
+            Page page = pool.pin((int) (rowId >>> 16));
+            try {
+                return decode(page.data(), (int) (rowId & 0xFFFF));
+            } finally {
+                pool.unpin(page, false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private User decode(ByteBuffer data, int slot) throws IOException {
+        int slotValue = data.getShort(HEADER + slot * SLOT_SIZE) & 0xFFFF;
+        int offset = slotValue & ~OVERFLOW;
+        int id = data.getInt(offset);
+        if ((slotValue & OVERFLOW) != 0) {
+            return new User(id, readOverflow(data.getInt(offset + 4), data.getInt(offset + 8)));
+        }
+        byte[] nameBytes = new byte[recordEnd(data, slot) - offset - Integer.BYTES];
+        data.get(offset + Integer.BYTES, nameBytes);
+        return new User(id, new String(nameBytes, StandardCharsets.UTF_8));
+    }
+
+    private static int slotCount(ByteBuffer data) {
+        return data.getShort(SLOT_COUNT) & 0xFFFF;
+    }
+
+    private static int heapStart(ByteBuffer data) {
+        return data.getShort(HEAP_START) & 0xFFFF;
+    }
+
+    private static int freeSpace(ByteBuffer data) {
+        return heapStart(data) - HEADER - slotCount(data) * SLOT_SIZE;
+    }
+
+    private static int recordOffset(ByteBuffer data, int slot) {
+        return data.getShort(HEADER + slot * SLOT_SIZE) & 0xFFFF & ~OVERFLOW;
+    }
+
+    /**
+     * End of a record, which is where the previous record starts or the end of the page for the first one.
+     */
+    private int recordEnd(ByteBuffer data, int slot) {
+        return slot == 0 ? pageSize : recordOffset(data, slot - 1);
+    }
+
+    private static long rowId(int pageNo, int slot) {
+        return ((long) pageNo << 16) | slot;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    /**
+     * Data file bytes per row, page headers and free space included.
+     * 16 for SimpleDataBase, here it depends on the name lengths.
+     */
+    double bytesPerRow() {
+        return rows == 0 ? 0 : (double) pool.file().pageCount() * pageSize / rows;
+    }
+
+    BufferPool bufferPool() {
+        return pool;
+    }
+
+    /**
+     * Write cached pages and the index to disk.
+     */
+    public void flush() {
+        try {
+            pool.flush();
+            pool.file().sync();
+            overflow.sync();
+            index.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void clear() {
+        try {
+            reset();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Empty the data, overflow and index files. Private so the constructor does not call an overridable method.
+     */
+    private void reset() throws IOException {
+        pool.discardAll();
+        pool.file().truncate();
+        overflow.truncate();
+        index.clear();
+        rows = 0;
+        index.setIndexedBytes(0);
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+            index.close();
+            overflow.close();
+            pool.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for an operation slower than Metrics.slowThresholdNanos.
+ * Recorded only while a recording has the event enabled, e.g.
+ *   java -XX:StartFlightRecording:filename=seedbase.jfr ...
+ * and shown in JDK Mission Control under SeedBase.
+ */
+@Name("org.example.SlowOperation")
+@Label("Slow Operation")
+@Category("SeedBase")
+@Description("A database or tree operation that took longer than the slow operation threshold")
+@StackTrace(true)
+final class SlowOperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Key")
+    @Description("Id or key the operation was called with")
+    long key;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+}
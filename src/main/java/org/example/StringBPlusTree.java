@@ -0,0 +1,412 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * B+ tree keyed by strings, for indexing names and other long keys that share prefixes.
+ * Same shape as BPlusTreeMemory: leaves hold up to order entries and are linked, internal nodes hold up to
+ * order - 1 separators. Keys are unique, inserting an existing key replaces its value.
+
+ * Keys are stored as UTF-8 bytes and ordered by unsigned byte comparison, which is code point order.
+ * Two kinds of compression keep nodes small:
+ * - Prefix compression in leaves. Each leaf stores the prefix shared by all its keys once,
+ *   and only the remaining suffix of every key. The prefix is shortened when a key that does not share it
+ *   is inserted, and extended again when a split leaves halves with a longer common prefix.
+ * - Suffix truncation in internal nodes. A leaf split pushes up the shortest separator that still sorts
+ *   after every key of the left half and not after the first key of the right half, usually a few bytes,
+ *   instead of a full copy of the right half's first key.
+
+ * Not thread-safe. Deletes are not supported, the indexes built on it only grow.
+ */
+class StringBPlusTree<V> {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int order;
+    private Node root;
+    private int size;
+
+    StringBPlusTree(int order) {
+        if (order < 3) {
+            throw new IllegalArgumentException("Order must be at least 3");
+        }
+        this.order = order;
+        root = new Leaf(order);
+    }
+
+    private abstract static class Node {
+        int keyCount;
+    }
+
+    private static final class Leaf extends Node {
+        // Shared by every key in this leaf, the full key of entry i is prefix + suffixes[i]
+        byte[] prefix = EMPTY;
+        final byte[][] suffixes;
+        final Object[] values;
+        Leaf next;
+
+        Leaf(int order) {
+            // One spare slot for the entry that triggers the split
+            suffixes = new byte[order + 1][];
+            values = new Object[order + 1];
+        }
+
+        byte[] key(int index) {
+            byte[] suffix = suffixes[index];
+            byte[] key = Arrays.copyOf(prefix, prefix.length + suffix.length);
+            System.arraycopy(suffix, 0, key, prefix.length, suffix.length);
+            return key;
+        }
+
+        /**
+         * Index of key like Arrays.binarySearch: the index if present, otherwise -(insertion point) - 1.
+         */
+        int find(byte[] key) {
+            int p = prefix.length;
+            if (key.length < p || Arrays.mismatch(key, 0, p, prefix, 0, p) >= 0) {
+                // Outside the prefix, so smaller or larger than every key in the leaf
+                int cmp = Arrays.compareUnsigned(key, 0, Math.min(key.length, p), prefix, 0, p);
+                return cmp < 0 ? -1 : -keyCount - 1;
+            }
+            int low = 0;
+            int high = keyCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                byte[] suffix = suffixes[mid];
+                int cmp = Arrays.compareUnsigned(suffix, 0, suffix.length, key, p, key.length);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -low - 1;
+        }
+
+        void insertAt(int index, byte[] key, Object value) {
+            if (keyCount == 0) {
+                prefix = key;
+            } else if (key.length < prefix.length || Arrays.mismatch(key, 0, prefix.length, prefix, 0, prefix.length) >= 0) {
+                shortenPrefix(commonPrefix(key, prefix));
+            }
+            System.arraycopy(suffixes, index, suffixes, index + 1, keyCount - index);
+            System.arraycopy(values, index, values, index + 1, keyCount - index);
+            suffixes[index] = Arrays.copyOfRange(key, prefix.length, key.length);
+            values[index] = value;
+            keyCount++;
+        }
+
+        /**
+         * Keep only the first length bytes of the prefix, moving the rest back into every suffix.
+         */
+        private void shortenPrefix(int length) {
+            int moved = prefix.length - length;
+            for (int i = 0; i < keyCount; i++) {
+                byte[] suffix = suffixes[i];
+                byte[] longer = new byte[moved + suffix.length];
+                System.arraycopy(prefix, length, longer, 0, moved);
+                System.arraycopy(suffix, 0, longer, moved, suffix.length);
+                suffixes[i] = longer;
+            }
+            prefix = Arrays.copyOf(prefix, length);
+        }
+
+        /**
+         * Move the bytes every suffix starts with into the prefix.
+         * Suffixes are sorted, so the first and last one bound the common part.
+         */
+        void extendPrefix() {
+            if (keyCount == 0) {
+                return;
+            }
+            int extra = commonPrefix(suffixes[0], suffixes[keyCount - 1]);
+            if (extra == 0) {
+                return;
+            }
+            byte[] longer = Arrays.copyOf(prefix, prefix.length + extra);
+            System.arraycopy(suffixes[0], 0, longer, prefix.length, extra);
+            prefix = longer;
+            for (int i = 0; i < keyCount; i++) {
+                suffixes[i] = Arrays.copyOfRange(suffixes[i], extra, suffixes[i].length);
+            }
+        }
+    }
+
+    private static final class Internal extends Node {
+        // Suffix-truncated separators, children[i] holds the keys below keys[i]
+        final byte[][] keys;
+        final Node[] children;
+        int childCount;
+
+        Internal(int order) {
+            keys = new byte[order][];
+            children = new Node[order + 1];
+        }
+
+        /**
+         * Index of the first separator greater than key, the child that holds key.
+         */
+        int childIndex(byte[] key) {
+            int low = 0;
+            int high = keyCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Arrays.compareUnsigned(keys[mid], key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        void insertAt(int index, byte[] separator, Node right) {
+            System.arraycopy(keys, index, keys, index + 1, keyCount - index);
+            keys[index] = separator;
+            keyCount++;
+            System.arraycopy(children, index + 1, children, index + 2, childCount - index - 1);
+            children[index + 1] = right;
+            childCount++;
+        }
+    }
+
+    /**
+     * A node split: the new right sibling and the separator the parent needs for it.
+     */
+    private record Split(byte[] separator, Node right) {
+    }
+
+    static byte[] encode(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int commonPrefix(byte[] a, byte[] b) {
+        int mismatch = Arrays.mismatch(a, b);
+        return mismatch < 0 ? a.length : mismatch;
+    }
+
+    /**
+     * Insert a key, or replace the value of an existing key.
+     * @return The previous value, or null if the key is new
+     */
+    V insert(String key, V value) {
+        byte[] bytes = encode(key);
+        Object[] previous = new Object[1];
+        Split split = insert(root, bytes, value, previous);
+        if (split != null) {
+            Internal newRoot = new Internal(order);
+            newRoot.keys[0] = split.separator();
+            newRoot.keyCount = 1;
+            newRoot.children[0] = root;
+            newRoot.children[1] = split.right();
+            newRoot.childCount = 2;
+            root = newRoot;
+        }
+        @SuppressWarnings("unchecked")
+        V old = (V) previous[0];
+        return old;
+    }
+
+    private Split insert(Node node, byte[] key, V value, Object[] previous) {
+        if (node instanceof Leaf leaf) {
+            int index = leaf.find(key);
+            if (index >= 0) {
+                previous[0] = leaf.values[index];
+                leaf.values[index] = value;
+                return null;
+            }
+            leaf.insertAt(-index - 1, key, value);
+            size++;
+            return leaf.keyCount <= order ? null : splitLeaf(leaf);
+        }
+        Internal internal = (Internal) node;
+        int index = internal.childIndex(key);
+        Split split = insert(internal.children[index], key, value, previous);
+        if (split == null) {
+            return null;
+        }
+        internal.insertAt(index, split.separator(), split.right());
+        return internal.keyCount <= order - 1 ? null : splitInternal(internal);
+    }
+
+    private Split splitLeaf(Leaf leaf) {
+        Leaf right = new Leaf(order);
+        int middle = leaf.keyCount / 2;
+        int moved = leaf.keyCount - middle;
+        byte[] separator = shortestSeparator(leaf.key(middle - 1), leaf.key(middle));
+
+        right.prefix = leaf.prefix;
+        System.arraycopy(leaf.suffixes, middle, right.suffixes, 0, moved);
+        System.arraycopy(leaf.values, middle, right.values, 0, moved);
+        right.keyCount = moved;
+        // Clear the moved slots so the old arrays do not keep them reachable
+        Arrays.fill(leaf.suffixes, middle, leaf.keyCount, null);
+        Arrays.fill(leaf.values, middle, leaf.keyCount, null);
+        leaf.keyCount = middle;
+        // Each half covers a narrower key range, so it may share a longer prefix
+        leaf.extendPrefix();
+        right.extendPrefix();
+
+        right.next = leaf.next;
+        leaf.next = right;
+        return new Split(separator, right);
+    }
+
+    /**
+     * Shortest byte string s with left < s <= right: the common prefix plus the first byte where right differs.
+     * Keys are unique, so left < right and right is at least one byte longer than the common prefix.
+     */
+    static byte[] shortestSeparator(byte[] left, byte[] right) {
+        return Arrays.copyOf(right, commonPrefix(left, right) + 1);
+    }
+
+    private Split splitInternal(Internal node) {
+        Internal right = new Internal(order);
+        int middle = node.keyCount / 2;
+        byte[] separator = node.keys[middle];
+
+        // Keys after the middle one and their children move right, the middle key moves up
+        right.keyCount = node.keyCount - middle - 1;
+        System.arraycopy(node.keys, middle + 1, right.keys, 0, right.keyCount);
+        right.childCount = node.childCount - middle - 1;
+        System.arraycopy(node.children, middle + 1, right.children, 0, right.childCount);
+        Arrays.fill(node.keys, middle, node.keyCount, null);
+        Arrays.fill(node.children, middle + 1, node.childCount, null);
+        node.keyCount = middle;
+        node.childCount = middle + 1;
+        return new Split(separator, right);
+    }
+
+    V search(String key) {
+        byte[] bytes = encode(key);
+        Leaf leaf = findLeaf(bytes);
+        int index = leaf.find(bytes);
+        @SuppressWarnings("unchecked")
+        V value = index >= 0 ? (V) leaf.values[index] : null;
+        return value;
+    }
+
+    private Leaf findLeaf(byte[] key) {
+        Node node = root;
+        while (node instanceof Internal internal) {
+            node = internal.children[internal.childIndex(key)];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Cursor over the keys that start with prefix, in key order.
+     */
+    Cursor prefix(String prefix) {
+        byte[] bytes = encode(prefix);
+        return new Cursor(findLeaf(bytes), bytes, bytes);
+    }
+
+    /**
+     * Cursor over all keys in key order.
+     */
+    Cursor scan() {
+        return new Cursor(findLeaf(EMPTY), EMPTY, EMPTY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int height() {
+        int height = 1;
+        Node node = root;
+        while (node instanceof Internal internal) {
+            node = internal.children[0];
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Bytes held by keys across the tree: leaf prefixes and suffixes plus internal separators.
+     * Compare with the sum of the encoded key lengths to see what compression saves.
+     */
+    long keyBytes() {
+        return keyBytes(root);
+    }
+
+    private long keyBytes(Node node) {
+        long bytes = 0;
+        if (node instanceof Leaf leaf) {
+            bytes += leaf.prefix.length;
+            for (int i = 0; i < leaf.keyCount; i++) {
+                bytes += leaf.suffixes[i].length;
+            }
+        } else {
+            Internal internal = (Internal) node;
+            for (int i = 0; i < internal.keyCount; i++) {
+                bytes += internal.keys[i].length;
+            }
+            for (int i = 0; i < internal.childCount; i++) {
+                bytes += keyBytes(internal.children[i]);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Walks the leaf chain from the first key >= from, while keys start with the given prefix.
+     * Usage like BPlusTreeCursor: call next() before reading the first entry.
+     */
+    final class Cursor {
+        private Leaf leaf;
+        private int index;
+        private final byte[] required;
+        private byte[] key;
+
+        private Cursor(Leaf leaf, byte[] from, byte[] required) {
+            this.leaf = leaf;
+            this.required = required;
+            int found = leaf.find(from);
+            // next() advances before reading, so start one position behind
+            index = (found >= 0 ? found : -found - 1) - 1;
+        }
+
+        boolean next() {
+            while (leaf != null) {
+                if (++index < leaf.keyCount) {
+                    byte[] candidate = leaf.key(index);
+                    if (candidate.length < required.length
+                            || Arrays.mismatch(candidate, 0, required.length, required, 0, required.length) >= 0) {
+                        // Past the last key with the prefix
+                        leaf = null;
+                        key = null;
+                        return false;
+                    }
+                    key = candidate;
+                    return true;
+                }
+                leaf = leaf.next;
+                index = -1;
+            }
+            key = null;
+            return false;
+        }
+
+        String key() {
+            checkPositioned();
+            return new String(key, StandardCharsets.UTF_8);
+        }
+
+        V value() {
+            checkPositioned();
+            @SuppressWarnings("unchecked")
+            V value = (V) leaf.values[index];
+            return value;
+        }
+
+        private void checkPositioned() {
+            if (key == null) {
+                throw new IllegalStateException("Cursor is not positioned on an entry, call next() first");
+            }
+        }
+    }
+}
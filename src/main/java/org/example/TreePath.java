@@ -0,0 +1,74 @@
+package org.example;
+
+/**
+ * Path from the root of a BPlusTreeMemory to one of its leaves: the internal node at each level
+ * and the index of the child taken there.
+
+ * Moving to the next leaf goes up to the lowest ancestor with a child further right and back down
+ * its leftmost edge, so the walk uses only keys and children and never the leaf links.
+ * That is how snapshots iterate, because the links of a shared leaf are updated by the live tree,
+ * and how the live tree finds the nodes to copy before writing while snapshots are open.
+ */
+final class TreePath {
+    // parents[d] is the internal node at depth d, indexes[d] the child taken there
+    final InternalNode[] parents;
+    final int[] indexes;
+    // Number of internal levels, 0 when the root is a leaf
+    final int depth;
+    LeafNode leaf;
+
+    private TreePath(int depth) {
+        parents = new InternalNode[depth];
+        indexes = new int[depth];
+        this.depth = depth;
+    }
+
+    /**
+     * Descend from root towards key.
+     * @param lower true to take the leftmost leaf that may contain key, like Node.findLeaf,
+     *              false to take the leaf that insert, search, update and delete use
+     */
+    static TreePath descend(Node root, int key, boolean lower) {
+        int depth = 0;
+        for (Node node = root; node instanceof InternalNode internalNode; node = internalNode.children[0]) {
+            depth++;
+        }
+        TreePath path = new TreePath(depth);
+        Node node = root;
+        for (int d = 0; d < depth; d++) {
+            InternalNode internalNode = (InternalNode) node;
+            int index = lower
+                    ? KeySearch.lowerBound(internalNode.keys, internalNode.keyCount, key)
+                    : KeySearch.upperBound(internalNode.keys, internalNode.keyCount, key);
+            path.parents[d] = internalNode;
+            path.indexes[d] = index;
+            node = internalNode.children[index];
+        }
+        path.leaf = (LeafNode) node;
+        return path;
+    }
+
+    /**
+     * Move to the leaf right of the current one.
+     * @return The new leaf, or null after the last leaf
+     */
+    LeafNode nextLeaf() {
+        int d = depth - 1;
+        while (d >= 0 && indexes[d] + 1 >= parents[d].childCount) {
+            d--;
+        }
+        if (d < 0) {
+            leaf = null;
+            return null;
+        }
+        indexes[d]++;
+        Node node = parents[d].children[indexes[d]];
+        for (d++; d < depth; d++) {
+            parents[d] = (InternalNode) node;
+            indexes[d] = 0;
+            node = parents[d].children[0];
+        }
+        leaf = (LeafNode) node;
+        return leaf;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Simplified 2Q (Johnson and Shasha), a scan resistant alternative to LRU.
+
+ * Pages read for the first time go to a FIFO queue A1in. Only pages that are read again
+ * after leaving A1in are promoted to the LRU queue Am. A1out remembers the page numbers,
+ * not the contents, of pages recently evicted from A1in, so a second reference can be detected.
+ * A sequential scan touches each page once, so it only cycles through A1in
+ * and does not push the frequently used pages out of Am.
+
+ * A1out is a ring buffer of page numbers in eviction order plus an IntIntMap from page number
+ * to ring slot, so neither remembering nor finding a page boxes. A page found in A1out is
+ * removed from the map and its slot is marked as a tombstone, which the ring skips when it wraps.
+ */
+class TwoQueuePolicy implements EvictionPolicy {
+    private final FrameList a1in;
+    private final FrameList am;
+    private final int[] pageOf;
+    // A1in is kept at about a quarter of the pool, A1out remembers half a pool of page numbers
+    private final int a1inTarget;
+    private static final int TOMBSTONE = -1;
+    private final int[] a1out;
+    // Slot of the oldest entry and number of slots in use, tombstones included
+    private int a1outHead;
+    private int a1outCount;
+    // page number -> slot in a1out
+    private final IntIntMap a1outSlots;
+
+    TwoQueuePolicy(int frames) {
+        a1in = new FrameList(frames);
+        am = new FrameList(frames);
+        pageOf = new int[frames];
+        a1inTarget = Math.max(1, frames / 4);
+        a1out = new int[Math.max(1, frames / 2)];
+        a1outSlots = new IntIntMap(a1out.length, TOMBSTONE);
+    }
+
+    @Override
+    public void loaded(int frame, int pageNo) {
+        pageOf[frame] = pageNo;
+        int slot = a1outSlots.remove(pageNo);
+        if (slot != TOMBSTONE) {
+            // Seen recently, this is a second reference
+            a1out[slot] = TOMBSTONE;
+            am.addFirst(frame);
+        } else {
+            a1in.addFirst(frame);
+        }
+    }
+
+    @Override
+    public void accessed(int frame) {
+        // Hits in A1in are not promoted, they are most likely the same access pattern (e.g. a scan)
+        if (am.contains(frame)) {
+            am.moveToFront(frame);
+        }
+    }
+
+    @Override
+    public void removed(int frame) {
+        a1in.remove(frame);
+        am.remove(frame);
+    }
+
+    @Override
+    public int victim(IntPredicate evictable) {
+        if (a1in.size() > a1inTarget || am.size() == 0) {
+            int frame = evictFromA1in(evictable);
+            return frame >= 0 ? frame : evictFromAm(evictable);
+        }
+        int frame = evictFromAm(evictable);
+        return frame >= 0 ? frame : evictFromA1in(evictable);
+    }
+
+    private int evictFromA1in(IntPredicate evictable) {
+        int frame = a1in.lastMatching(evictable);
+        if (frame >= 0) {
+            a1in.remove(frame);
+            remember(pageOf[frame]);
+        }
+        return frame;
+    }
+
+    /**
+     * Add a page number to A1out, forgetting the oldest one when the ring is full.
+     */
+    private void remember(int pageNo) {
+        if (a1outCount == a1out.length) {
+            int oldest = a1out[a1outHead];
+            if (oldest != TOMBSTONE) {
+                a1outSlots.remove(oldest);
+            }
+            a1outHead = (a1outHead + 1) % a1out.length;
+            a1outCount--;
+        }
+        int slot = (a1outHead + a1outCount) % a1out.length;
+        a1out[slot] = pageNo;
+        a1outCount++;
+        a1outSlots.put(pageNo, slot);
+    }
+
+    private int evictFromAm(IntPredicate evictable) {
+        int frame = am.lastMatching(evictable);
+        if (frame >= 0) {
+            am.remove(frame);
+        }
+        return frame;
+    }
+}
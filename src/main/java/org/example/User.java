@@ -0,0 +1,10 @@
+package org.example;
+
+record User(int id, String name) {
+    // 使用 record 可以自动生成构造器、getter 方法、equals()、hashCode() 和 toString() 方法。
+    // 表明这个类只存数据
+    @Override
+    public String toString() {
+        return "User{id=" + id + ", name='" + name + "'}";
+    }
+}
@@ -0,0 +1,61 @@
+package org.example;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary protocol between SeedBaseServer and SeedBaseClient, big-endian as in DataOutputStream.
+
+ * Requests start with an opcode byte:
+ *   INSERT  id (int), name length (unsigned short), name (UTF-8)
+ *   SELECT  id (int)
+ *   RANGE   from (int), to (int), both inclusive. Every row with an id in the range, in file order,
+ *           found by scanning the whole data file
+ * Responses start with a status byte:
+ *   OK         INSERT: nothing more. SELECT: a user. RANGE: count (int), then count users
+ *   NOT_FOUND  SELECT of an absent id
+ *   ERROR      message length (unsigned short), message (UTF-8)
+ * A user is id (int), name length (unsigned short), name (UTF-8).
+
+ * Responses come back in request order, so a client can send many requests before reading
+ * (pipelining) and match the responses by position. There are no request ids.
+ */
+final class WireProtocol {
+    static final byte INSERT = 1;
+    static final byte SELECT = 2;
+    static final byte RANGE = 3;
+
+    static final byte OK = 0;
+    static final byte NOT_FOUND = 1;
+    static final byte ERROR = 2;
+
+    private WireProtocol() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeInt(user.id());
+        writeString(out, user.name());
+    }
+
+    static User readUser(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        return new User(id, readString(in));
+    }
+}
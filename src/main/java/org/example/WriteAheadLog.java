@@ -0,0 +1,424 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Redo log for appends to a SimpleDataBase file, stored next to it as filename + ".wal".
+
+ * Every append is framed in the log before it is written to the data file.
+ * The data file itself is never fsynced on the insert path, only the log is,
+ * and after a crash the log is replayed to repair the data file.
+
+ * Log layout:
+ *   header  - magic (int), unused (int), checkpoint length (long)
+ *   frames  - crc (int), length (int), data offset (long), length bytes of records
+ * The crc is a CRC-32C over length, offset and records, so a torn or partly written frame is detected.
+ * The checkpoint length is the size of the data file when it was last fsynced,
+ * every byte before it is durable without the log.
+
+ * Group commit: frames are collected in memory, and one thread at a time writes and fsyncs
+ * everything collected so far. Threads that commit while an fsync is running wait for the next one,
+ * which then covers all of them, so n concurrent inserts cost about one fsync instead of n.
+ * Positions in the log are identified by the data file offset they end at.
+
+ * Recovery, done when the log is opened:
+ *   1. Read frames until the first one with a bad crc or length, that is the torn tail
+ *   2. Write every valid frame to the data file at its offset, which is idempotent
+ *   3. Truncate the data file after the last logged byte, dropping records that were never logged
+ *   4. fsync the data file and empty the log
+ */
+class WriteAheadLog implements AutoCloseable {
+    static final int MAGIC = 0x5741_4C31;
+    static final int HEADER_SIZE = 16;
+    static final int FRAME_HEADER_SIZE = 16;
+    // A larger length in a frame header can only be garbage
+    static final int MAX_FRAME_LENGTH = 16 << 20;
+    // Once the log is this large, the data file is fsynced and the log emptied
+    static final long DEFAULT_CHECKPOINT_BYTES = 16 << 20;
+
+    private final FileChannel log;
+    private final FileChannel data;
+    private final RecordWriter.SyncMode syncMode;
+    private final long checkpointBytes;
+    private final ScheduledExecutorService syncer;
+    private final CRC32C crc = new CRC32C();
+
+    // Frames appended but not written to the log yet, swapped with spare by the flushing thread
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    // Next write position in the log file
+    private long logSize;
+    // Data file offsets: end of appended records, end of records written to the log, end of fsynced ones
+    private long appendedEnd;
+    private long writtenEnd;
+    private long durableEnd;
+    private boolean flushing;
+    private IOException failure;
+
+    private long syncs;
+    private long recoveredFrames;
+    private long truncatedBytes;
+
+    WriteAheadLog(String dataFilename, RecordWriter.SyncMode syncMode, long syncIntervalMillis) throws IOException {
+        this(dataFilename, syncMode, syncIntervalMillis, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Open the log of a data file and recover the data file from it.
+     * @param syncMode EVERY_FLUSH: commit fsyncs the log, INTERVAL: a background thread does,
+     *                 NEVER: the log is only fsynced at checkpoints and on close
+     * @param syncIntervalMillis fsync period for SyncMode.INTERVAL, ignored otherwise
+     * @param checkpointBytes Log size after which the data file is fsynced and the log emptied
+     */
+    WriteAheadLog(String dataFilename, RecordWriter.SyncMode syncMode, long syncIntervalMillis, long checkpointBytes)
+            throws IOException {
+        if (syncMode == RecordWriter.SyncMode.INTERVAL && syncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Sync interval must be positive");
+        }
+        this.syncMode = syncMode;
+        this.checkpointBytes = checkpointBytes;
+        data = FileChannel.open(Path.of(dataFilename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log = FileChannel.open(Path.of(dataFilename + ".wal"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            log.close();
+            throw e;
+        }
+
+        if (syncMode == RecordWriter.SyncMode.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    private void recover() throws IOException {
+        long checkpoint;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (log.read(header, 0) == HEADER_SIZE && header.getInt(0) == MAGIC) {
+            checkpoint = header.getLong(8);
+        } else {
+            // New log: trust the data file, except for a torn record at its end
+            checkpoint = data.size() - data.size() % SimpleDataBase.RECORD_SIZE;
+        }
+
+        long end = checkpoint;
+        long position = HEADER_SIZE;
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        while (true) {
+            frameHeader.clear();
+            if (readFully(log, frameHeader, position) < FRAME_HEADER_SIZE) {
+                break;
+            }
+            int checksum = frameHeader.getInt(0);
+            int length = frameHeader.getInt(4);
+            long offset = frameHeader.getLong(8);
+            if (length <= 0 || length > MAX_FRAME_LENGTH || length % SimpleDataBase.RECORD_SIZE != 0 || offset < 0) {
+                break;
+            }
+            ByteBuffer records = ByteBuffer.allocate(length);
+            if (readFully(log, records, position + FRAME_HEADER_SIZE) < length) {
+                break;
+            }
+            crc.reset();
+            crc.update(frameHeader.array(), 4, FRAME_HEADER_SIZE - 4);
+            crc.update(records.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            records.flip();
+            while (records.hasRemaining()) {
+                data.write(records, offset + records.position());
+            }
+            end = Math.max(end, offset + length);
+            position += FRAME_HEADER_SIZE + length;
+            recoveredFrames++;
+        }
+
+        if (data.size() > end) {
+            // Records written to the data file whose frames never reached the log, or a torn record
+            truncatedBytes = data.size() - end;
+            data.truncate(end);
+        }
+        appendedEnd = writtenEnd = durableEnd = end;
+        checkpoint(end);
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Log whole records and write them to the end of the data file.
+     * The records are not durable until commit is called with the returned offset plus their length.
+     * @param records Records from position to limit, the position is not changed
+     * @return Offset of the records in the data file
+     */
+    long append(ByteBuffer records) throws IOException {
+        return append(new ByteBuffer[] {records}, 0, 1);
+    }
+
+    /**
+     * Append several buffers of records, one frame each, in order.
+     * @return Offset of the first buffer in the data file
+     */
+    synchronized long append(ByteBuffer[] srcs, int offset, int count) throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log failed earlier", failure);
+        }
+        long start = appendedEnd;
+        for (int i = offset; i < offset + count; i++) {
+            ByteBuffer records = srcs[i].duplicate();
+            int length = records.remaining();
+            if (length == 0) {
+                continue;
+            }
+            if (length % SimpleDataBase.RECORD_SIZE != 0 || length > MAX_FRAME_LENGTH) {
+                throw new IllegalArgumentException("Frames hold up to " + MAX_FRAME_LENGTH + " bytes of whole records");
+            }
+            ensurePending(FRAME_HEADER_SIZE + length);
+            int frameStart = pending.position();
+            pending.putInt(0).putInt(length).putLong(appendedEnd).put(records.duplicate());
+            crc.reset();
+            crc.update(pending.array(), frameStart + 4, FRAME_HEADER_SIZE - 4 + length);
+            pending.putInt(frameStart, (int) crc.getValue());
+
+            // The data file only reaches the page cache here, the log frame makes it durable
+            while (records.hasRemaining()) {
+                data.write(records, appendedEnd + records.position() - srcs[i].position());
+            }
+            appendedEnd += length;
+        }
+        return start;
+    }
+
+    private void ensurePending(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    /**
+     * Make every record before dataEnd durable.
+     * Returns at once in SyncMode.INTERVAL and NEVER, where the background thread or checkpoints fsync the log.
+     */
+    void commit(long dataEnd) throws IOException {
+        if (syncMode == RecordWriter.SyncMode.EVERY_FLUSH) {
+            flush(dataEnd, true);
+        } else if (syncMode == RecordWriter.SyncMode.NEVER && needsWrite()) {
+            flush(dataEnd, false);
+        }
+    }
+
+    /**
+     * Without fsyncs, frames are still handed to the operating system once a buffer's worth is collected.
+     */
+    private synchronized boolean needsWrite() {
+        return pending.position() >= 64 * 1024;
+    }
+
+    /**
+     * Write and fsync everything appended so far, whatever the sync mode.
+     */
+    void sync() throws IOException {
+        flush(appendedEnd(), true);
+    }
+
+    /**
+     * Bytes of frames collected in memory and not written to the log yet.
+     */
+    synchronized int pendingBytes() {
+        return pending.position();
+    }
+
+    synchronized long appendedEnd() {
+        return appendedEnd;
+    }
+
+    /**
+     * Wait until the records before dataEnd are written to the log, and fsynced if force is set.
+     * The first caller to find no flush running does the I/O for everyone waiting.
+     */
+    private void flush(long dataEnd, boolean force) throws IOException {
+        ByteBuffer batch;
+        long target;
+        synchronized (this) {
+            while (true) {
+                if (failure != null) {
+                    throw new IOException("Write-ahead log failed earlier", failure);
+                }
+                if ((force ? durableEnd : writtenEnd) >= dataEnd) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the log", e);
+                }
+            }
+            flushing = true;
+            batch = pending;
+            pending = spare;
+            spare = null;
+            target = appendedEnd;
+        }
+
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                logSize += log.write(batch, logSize);
+            }
+            if (force) {
+                log.force(false);
+            }
+            if (logSize >= checkpointBytes) {
+                checkpoint(target);
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+
+        synchronized (this) {
+            batch.clear();
+            spare = batch;
+            flushing = false;
+            if (error == null) {
+                writtenEnd = target;
+                if (force) {
+                    syncs++;
+                }
+                if (force || logSize == HEADER_SIZE) {
+                    durableEnd = target;
+                }
+            } else {
+                failure = error;
+            }
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * fsync the data file up to dataEnd and empty the log.
+     * Only called by the flushing thread or during recovery, when nothing else writes the log.
+     */
+    private void checkpoint(long dataEnd) throws IOException {
+        data.force(false);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(0).putLong(dataEnd).flip();
+        // A crash between these steps leaves frames before dataEnd, replaying them again is harmless
+        while (header.hasRemaining()) {
+            log.write(header, header.position());
+        }
+        log.truncate(HEADER_SIZE);
+        log.force(false);
+        logSize = HEADER_SIZE;
+    }
+
+    /**
+     * Forget every frame after the data file was truncated to zero.
+     */
+    synchronized void reset() throws IOException {
+        awaitFlush();
+        pending.clear();
+        data.truncate(0);
+        appendedEnd = writtenEnd = durableEnd = 0;
+        failure = null;
+        checkpoint(0);
+    }
+
+    private synchronized void awaitFlush() throws IOException {
+        while (flushing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the log", e);
+            }
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            // Recorded as the failure, the next append or commit reports it
+        }
+    }
+
+    /**
+     * Number of fsyncs of the log by commits, lower than the number of commits when group commit works.
+     */
+    synchronized long syncs() {
+        return syncs;
+    }
+
+    /**
+     * Valid frames replayed by the recovery when the log was opened.
+     */
+    long recoveredFrames() {
+        return recoveredFrames;
+    }
+
+    /**
+     * Bytes cut from the end of the data file by the recovery because they were never logged.
+     */
+    long truncatedBytes() {
+        return truncatedBytes;
+    }
+
+    /**
+     * Write and fsync the remaining frames, then checkpoint, so the next open has nothing to replay.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (syncer != null) {
+                syncer.shutdown();
+            }
+            sync();
+            synchronized (this) {
+                awaitFlush();
+                checkpoint(appendedEnd);
+            }
+        } finally {
+            try {
+                log.close();
+            } finally {
+                data.close();
+            }
+        }
+    }
+}
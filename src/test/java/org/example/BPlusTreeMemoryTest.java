@@ -3,7 +3,14 @@ package org.example;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -129,4 +136,505 @@ class BPlusTreeMemoryTest {
         tree.printTree();
         assertFalse(tree.update(1000, "notExist"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRange() {
+        // Insert out of order so the leaf chain is built by splits in the middle of the tree
+        for (int i = 0; i < 200; i++) {
+            int key = (i * 37) % 200;
+            tree.insert(key, "value" + key);
+        }
+
+        BPlusTreeCursor cursor = tree.range(50, 120);
+        int expected = 50;
+        while (cursor.next()) {
+            assertEquals(expected, cursor.key());
+            assertEquals("value" + expected, cursor.value());
+            expected++;
+        }
+        assertEquals(121, expected);
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    void testRangeBounds() {
+        for (int i = 0; i < 50; i += 2) {
+            tree.insert(i, "value" + i);
+        }
+
+        // Bounds that are not keys in the tree
+        BPlusTreeCursor cursor = tree.range(11, 19);
+        List<Integer> keys = new ArrayList<>();
+        while (cursor.next()) {
+            keys.add(cursor.key());
+        }
+        assertEquals(List.of(12, 14, 16, 18), keys);
+
+        assertFalse(tree.range(100, 200).next());
+        assertFalse(tree.range(20, 10).next());
+        assertFalse(new BPlusTreeMemory(4).range(0, 10).next());
+        assertThrows(IllegalStateException.class, () -> tree.range(0, 10).key());
+    }
+
+    @Test
+    void testRangeWithDuplicates() {
+        for (int i = 0; i < 10; i++) {
+            tree.insert(5, "dup" + i);
+        }
+        tree.insert(4, "value4");
+        tree.insert(6, "value6");
+
+        BPlusTreeCursor cursor = tree.range(5, 5);
+        int count = 0;
+        while (cursor.next()) {
+            assertEquals(5, cursor.key());
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    void testScan() {
+        for (int i = 999; i >= 0; i--) {
+            tree.insert(i, "value" + i);
+        }
+
+        BPlusTreeCursor cursor = tree.scan();
+        int expected = 0;
+        while (cursor.next()) {
+            assertEquals(expected, cursor.key());
+            assertEquals("value" + expected, cursor.value());
+            expected++;
+        }
+        assertEquals(1000, expected);
+    }
+
+    @Test
+    void testBulkLoad() {
+        BPlusTreeBuilder builder = new BPlusTreeBuilder(4, 1.0);
+        for (int i = 0; i < 1000; i++) {
+            builder.add(i * 2, "value" + i * 2);
+        }
+        BPlusTreeMemory loaded = builder.build();
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("value" + i * 2, loaded.search(i * 2));
+            assertNull(loaded.search(i * 2 + 1));
+        }
+
+        BPlusTreeCursor cursor = loaded.scan();
+        int expected = 0;
+        while (cursor.next()) {
+            assertEquals(expected, cursor.key());
+            expected += 2;
+        }
+        assertEquals(2000, expected);
+
+        // Full nodes give a lower tree than inserting the same keys one by one
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i * 2, "value" + i * 2);
+        }
+        assertTrue(loaded.height() < tree.height());
+
+        // The loaded tree still accepts inserts
+        for (int i = 0; i < 1000; i++) {
+            loaded.insert(i * 2 + 1, "value" + (i * 2 + 1));
+        }
+        for (int i = 0; i < 2000; i++) {
+            assertEquals("value" + i, loaded.search(i));
+        }
+    }
+
+    @Test
+    void testBulkLoadSizesAndFillFactors() {
+        for (int order : new int[] {3, 4, 5, 16}) {
+            for (double fill : new double[] {0.1, 0.5, 0.7, 1.0}) {
+                for (int n : new int[] {0, 1, 2, 3, 5, 17, 100, 1001}) {
+                    BPlusTreeBuilder builder = new BPlusTreeBuilder(order, fill);
+                    for (int i = 0; i < n; i++) {
+                        builder.add(i, "value" + i);
+                    }
+                    BPlusTreeMemory loaded = builder.build();
+                    // Even at fill 0.1 every node but the root is at least half full
+                    assertEquals(n, checkStructure(loaded));
+                    for (int i = 0; i < n; i++) {
+                        assertEquals("value" + i, loaded.search(i));
+                    }
+                    BPlusTreeCursor cursor = loaded.range(n / 3, n);
+                    int count = 0;
+                    while (cursor.next()) {
+                        count++;
+                    }
+                    assertEquals(n - n / 3, count);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testBulkLoadRejectsUnsortedInput() {
+        BPlusTreeBuilder builder = new BPlusTreeBuilder(4, 1.0);
+        builder.add(1, "value1");
+        builder.add(1, "value1");
+        assertThrows(IllegalArgumentException.class, () -> builder.add(0, "value0"));
+        assertThrows(IllegalArgumentException.class, () -> new BPlusTreeBuilder(4, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BPlusTreeBuilder(2, 1.0));
+    }
+
+    /**
+     * Check node fill, key order, separators and the leaf chain, return the number of entries.
+     */
+    private static int checkStructure(BPlusTreeMemory tree) {
+        List<LeafNode> leaves = new ArrayList<>();
+        int leafDepth = checkNode(tree.root(), true, Long.MIN_VALUE, Long.MAX_VALUE, 0, leaves);
+        assertTrue(leafDepth > 0);
+        int entries = 0;
+        for (int i = 0; i < leaves.size(); i++) {
+            assertSame(i + 1 < leaves.size() ? leaves.get(i + 1) : null, leaves.get(i).next);
+            assertSame(i > 0 ? leaves.get(i - 1) : null, leaves.get(i).prev);
+            entries += leaves.get(i).keyCount;
+        }
+        return entries;
+    }
+
+    private static int checkNode(Node node, boolean isRoot, long low, long high, int depth, List<LeafNode> leaves) {
+        if (!isRoot) {
+            assertTrue(node.keyCount >= node.minKeys(), "Underfull node " + node);
+        }
+        for (int i = 0; i < node.keyCount; i++) {
+            assertTrue(node.keys[i] >= low && node.keys[i] < high, "Key out of bounds in " + node);
+            assertTrue(i == 0 || node.keys[i - 1] < node.keys[i], "Keys out of order in " + node);
+        }
+        if (node instanceof LeafNode leaf) {
+            leaves.add(leaf);
+            return depth + 1;
+        }
+        InternalNode internal = (InternalNode) node;
+        assertEquals(internal.keyCount + 1, internal.childCount);
+        int leafDepth = -1;
+        for (int i = 0; i < internal.childCount; i++) {
+            long childLow = i == 0 ? low : internal.keys[i - 1];
+            long childHigh = i == internal.keyCount ? high : internal.keys[i];
+            int depthBelow = checkNode(internal.children[i], false, childLow, childHigh, depth + 1, leaves);
+            assertTrue(leafDepth == -1 || leafDepth == depthBelow, "Leaves at different depths");
+            leafDepth = depthBelow;
+        }
+        return leafDepth;
+    }
+
+    @Test
+    void testDelete() {
+        for (int order : new int[] {3, 4, 5, 8}) {
+            BPlusTreeMemory tree = new BPlusTreeMemory(order);
+            List<Integer> keys = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                keys.add(i);
+            }
+            Collections.shuffle(keys, new Random(order));
+            for (int key : keys) {
+                tree.insert(key, "value" + key);
+            }
+            int heightBefore = tree.height();
+
+            Collections.shuffle(keys, new Random(order + 1));
+            for (int i = 0; i < keys.size(); i++) {
+                int key = keys.get(i);
+                assertTrue(tree.delete(key));
+                assertFalse(tree.delete(key));
+                assertNull(tree.search(key));
+                assertEquals(keys.size() - i - 1, tree.size());
+                if (i % 7 == 0) {
+                    assertEquals(tree.size(), checkStructure(tree));
+                }
+            }
+            for (int i = 0; i < keys.size(); i += 10) {
+                assertNull(tree.search(keys.get(i)));
+            }
+            assertTrue(heightBefore > 1);
+            assertEquals(1, tree.height());
+            assertFalse(tree.scan().next());
+        }
+    }
+
+    @Test
+    void testDeleteKeepsRemainingEntries() {
+        for (int i = 0; i < 200; i++) {
+            tree.insert(i, "value" + i);
+        }
+        // Delete every key that is not a multiple of 3, from both ends towards the middle
+        for (int low = 0, high = 199; low <= high; low++, high--) {
+            for (int key : new int[] {low, high}) {
+                if (key % 3 != 0) {
+                    tree.delete(key);
+                }
+            }
+        }
+        assertEquals(67, checkStructure(tree));
+        BPlusTreeCursor cursor = tree.scan();
+        for (int i = 0; i < 200; i += 3) {
+            assertTrue(cursor.next());
+            assertEquals(i, cursor.key());
+            assertEquals("value" + i, cursor.value());
+        }
+        assertFalse(cursor.next());
+        assertFalse(tree.delete(1));
+        assertFalse(new BPlusTreeMemory(4).delete(1));
+    }
+
+    @Test
+    void testDeleteDuplicatesSpanningSplits() {
+        for (int order : new int[] {3, 4, 5}) {
+            BPlusTreeMemory tree = new BPlusTreeMemory(order);
+            for (int i = 0; i < 40; i++) {
+                tree.insert(i, "value" + i);
+            }
+            // A run of copies long enough to fill several leaves, split between them
+            for (int i = 0; i < 30; i++) {
+                tree.insert(20, "copy" + i);
+            }
+            BPlusTreeSnapshot snapshot = tree.snapshot();
+            for (int i = 0; i < 31; i++) {
+                assertTrue(tree.delete(20), "Copy " + i + " of order " + order + " not found");
+            }
+            assertFalse(tree.delete(20));
+            assertNull(tree.search(20));
+            assertEquals(39, tree.size());
+            for (int i = 0; i < 40; i++) {
+                if (i != 20) {
+                    assertEquals("value" + i, tree.search(i));
+                }
+            }
+            assertEquals(39, checkStructure(tree));
+            // The snapshot still has every copy
+            BPlusTreeCursor cursor = snapshot.range(20, 20);
+            int copies = 0;
+            while (cursor.next()) {
+                copies++;
+            }
+            assertEquals(31, copies);
+            snapshot.close();
+        }
+    }
+
+    @Test
+    void testDeleteFromBulkLoadedTree() {
+        BPlusTreeBuilder builder = new BPlusTreeBuilder(5, 1.0);
+        for (int i = 0; i < 100; i++) {
+            builder.add(i, "value" + i);
+        }
+        BPlusTreeMemory loaded = builder.build();
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(loaded.delete(i));
+        }
+        assertEquals(50, loaded.size());
+        assertEquals(50, checkStructure(loaded));
+        assertEquals("value51", loaded.search(51));
+    }
+
+    @Test
+    void testLazyDelete() {
+        tree.useLazyDeletes(0.5);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i, "value" + i);
+        }
+        int height = tree.height();
+        for (int i = 0; i < 40; i++) {
+            assertTrue(tree.delete(i));
+        }
+        assertFalse(tree.delete(5));
+        // Only marked, the tree keeps its shape until the compaction threshold
+        assertEquals(40, tree.tombstones());
+        assertEquals(60, tree.size());
+        assertEquals(100, checkStructure(tree));
+        assertEquals(height, tree.height());
+        assertNull(tree.search(5));
+        assertFalse(tree.update(5, "new"));
+
+        BPlusTreeCursor cursor = tree.range(30, 45);
+        for (int i = 40; i <= 45; i++) {
+            assertTrue(cursor.next());
+            assertEquals(i, cursor.key());
+        }
+        assertFalse(cursor.next());
+
+        // Reinserting a deleted key takes its slot back
+        tree.insert(5, "again");
+        assertEquals("again", tree.search(5));
+        assertEquals(39, tree.tombstones());
+
+        // More than half of the 100 entries deleted: the 51st tombstone compacts
+        for (int i = 40; i < 51; i++) {
+            tree.delete(i);
+        }
+        assertEquals(50, tree.tombstones());
+        tree.delete(51);
+        assertEquals(0, tree.tombstones());
+        assertEquals(49, tree.size());
+        assertEquals(49, checkStructure(tree));
+        assertEquals("again", tree.search(5));
+        assertEquals("value52", tree.search(52));
+
+        tree.delete(5);
+        tree.useEagerDeletes();
+        assertEquals(0, tree.tombstones());
+        assertEquals(48, checkStructure(tree));
+        assertTrue(tree.delete(99));
+        assertEquals(47, checkStructure(tree));
+        assertThrows(IllegalArgumentException.class, () -> tree.useLazyDeletes(0));
+    }
+
+    @Test
+    void testSnapshotIsUnchangedByWrites() {
+        for (int i = 0; i < 1000; i += 2) {
+            tree.insert(i, "value" + i);
+        }
+        try (BPlusTreeSnapshot snapshot = tree.snapshot()) {
+            for (int i = 1; i < 1000; i += 2) {
+                tree.insert(i, "value" + i);
+            }
+            for (int i = 0; i < 1000; i += 4) {
+                tree.update(i, "new" + i);
+            }
+            for (int i = 0; i < 1000; i += 10) {
+                assertTrue(tree.delete(i));
+            }
+
+            assertEquals(500, snapshot.size());
+            assertEquals("value4", snapshot.search(4));
+            assertNull(snapshot.search(3));
+            BPlusTreeCursor cursor = snapshot.scan();
+            for (int i = 0; i < 1000; i += 2) {
+                assertTrue(cursor.next());
+                assertEquals(i, cursor.key());
+                assertEquals("value" + i, cursor.value());
+            }
+            assertFalse(cursor.next());
+            cursor = snapshot.range(101, 107);
+            for (int i = 102; i <= 106; i += 2) {
+                assertTrue(cursor.next());
+                assertEquals(i, cursor.key());
+            }
+            assertFalse(cursor.next());
+
+            assertEquals(900, tree.size());
+            assertEquals(900, checkStructure(tree));
+            assertEquals("new4", tree.search(4));
+            assertEquals("value3", tree.search(3));
+            assertNull(tree.search(10));
+            assertTrue(tree.retiredNodes() > 0);
+        }
+        assertEquals(0, tree.openSnapshots());
+        assertEquals(0, tree.retiredNodes());
+        assertTrue(tree.freeNodes() > 0);
+    }
+
+    @Test
+    void testSnapshotsAtDifferentVersions() {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        List<BPlusTreeSnapshot> snapshots = new ArrayList<>();
+        List<TreeMap<Integer, String>> states = new ArrayList<>();
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                int key = random.nextInt(500);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key) != null, tree.delete(key));
+                } else if (expected.containsKey(key)) {
+                    expected.put(key, "r" + round);
+                    assertTrue(tree.update(key, "r" + round));
+                } else {
+                    expected.put(key, "r" + round);
+                    tree.insert(key, "r" + round);
+                }
+            }
+            snapshots.add(tree.snapshot());
+            states.add(new TreeMap<>(expected));
+            // Close some snapshots out of order, which reclaims only what no older one needs
+            if (round % 3 == 2) {
+                snapshots.get(round - 1).close();
+            }
+        }
+        assertEquals(expected.size(), checkStructure(tree));
+        for (int round = 0; round < snapshots.size(); round++) {
+            if (round % 3 == 1 && round + 1 < snapshots.size()) {
+                BPlusTreeSnapshot closed = snapshots.get(round);
+                assertThrows(IllegalStateException.class, () -> closed.search(0));
+                continue;
+            }
+            BPlusTreeCursor cursor = snapshots.get(round).scan();
+            for (var entry : states.get(round).entrySet()) {
+                assertTrue(cursor.next());
+                assertEquals(entry.getKey(), cursor.key());
+                assertEquals(entry.getValue(), cursor.value());
+            }
+            assertFalse(cursor.next());
+        }
+        for (BPlusTreeSnapshot snapshot : snapshots) {
+            snapshot.close();
+        }
+        assertEquals(0, tree.retiredNodes());
+    }
+
+    @Test
+    void testSnapshotWithLazyDeletesAndCompaction() {
+        tree.useLazyDeletes(0.5);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i, "value" + i);
+        }
+        try (BPlusTreeSnapshot snapshot = tree.snapshot()) {
+            for (int i = 0; i < 60; i++) {
+                tree.delete(i);
+            }
+            tree.insert(55, "again");
+            assertEquals("again", tree.search(55));
+            assertEquals(41, tree.size());
+            assertEquals(41 + tree.tombstones(), checkStructure(tree));
+            assertEquals(100, snapshot.size());
+            BPlusTreeCursor cursor = snapshot.scan();
+            for (int i = 0; i < 100; i++) {
+                assertTrue(cursor.next());
+                assertEquals("value" + i, cursor.value());
+            }
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    void testSnapshotReadersRunDuringWrites() throws InterruptedException {
+        for (int i = 0; i < 10_000; i++) {
+            tree.insert(i, "value" + i);
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (writing.get()) {
+                    try (BPlusTreeSnapshot snapshot = tree.snapshot()) {
+                        BPlusTreeCursor cursor = snapshot.scan();
+                        int count = 0;
+                        int previous = Integer.MIN_VALUE;
+                        while (cursor.next()) {
+                            assertTrue(cursor.key() > previous);
+                            previous = cursor.key();
+                            count++;
+                        }
+                        assertEquals(snapshot.size(), count);
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        for (int i = 10_000; i < 40_000; i++) {
+            tree.insert(i, "value" + i);
+            if (i % 3 == 0) {
+                tree.delete(i - 10_000);
+            }
+        }
+        writing.set(false);
+        reader.join();
+        assertNull(failure.get());
+        assertEquals(tree.size(), checkStructure(tree));
+    }
+}
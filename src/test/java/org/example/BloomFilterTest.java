@@ -0,0 +1,139 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+    private static final String TEST_DB_FILENAME = "test_bloom.db";
+    private SimpleDataBase db;
+
+    @BeforeEach
+    void setUp() {
+        db = new SimpleDataBase(TEST_DB_FILENAME, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+        new File(TEST_DB_FILENAME).delete();
+        new File(TEST_DB_FILENAME + ".bloom").delete();
+        new File(TEST_DB_FILENAME + ".idx").delete();
+    }
+
+    @Test
+    void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(100_000, 10);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(i * 2);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(i * 2));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(i * 2 + 1)) {
+                falsePositives++;
+            }
+        }
+        // About 0.8% expected for 10 bits per key
+        assertTrue(falsePositives < 1500, "False positives: " + falsePositives);
+        assertFalse(filter.isFull());
+        filter.add(-1);
+        assertTrue(filter.isFull());
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        File file = new File(TEST_DB_FILENAME + ".bloom");
+        BloomFilter filter = new BloomFilter(1000, 8);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(i * 7);
+        }
+        filter.setCoveredBytes(16_000);
+        filter.writeTo(file);
+
+        BloomFilter read = BloomFilter.readFrom(file);
+        assertNotNull(read);
+        assertEquals(1000, read.keyCount());
+        assertEquals(16_000, read.coveredBytes());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(filter.mightContain(i), read.mightContain(i));
+        }
+
+        // A truncated file is not a filter
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(100);
+        }
+        assertNull(BloomFilter.readFrom(file));
+        assertNull(BloomFilter.readFrom(new File("missing.bloom")));
+    }
+
+    @Test
+    void testSelectSkipsAbsentIds() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            users.add(new User(i * 2, "User" + i * 2));
+        }
+        db.insertAll(users);
+        db.useBloomFilter();
+        db.createIndex();
+
+        for (int i = 0; i < 5000; i++) {
+            assertNull(db.selectBinarySearch(i * 2 + 1));
+        }
+        BloomFilter.Stats stats = db.bloomFilterStats();
+        assertEquals(5000, stats.queries());
+        assertEquals(5000, stats.negatives() + stats.falsePositives());
+        assertTrue(stats.falsePositiveRate() < 0.03, "False positive rate: " + stats.falsePositiveRate());
+        assertTrue(stats.hitRate() > 0.97);
+
+        assertEquals("User4", db.select(4).name());
+        assertEquals("User8", db.selectIndexed(8).name());
+        assertEquals(5002, stats.queries());
+
+        // Inserted ids are added, also past the size the filter was built for
+        for (int i = 0; i < 20_000; i++) {
+            users.set(i % 5000, new User(10_001 + i * 2, "New"));
+            if (i % 5000 == 4999) {
+                db.insertAll(users);
+            }
+        }
+        for (int i = 0; i < 20_000; i += 97) {
+            assertEquals("New", db.selectIndexed(10_001 + i * 2).name());
+        }
+    }
+
+    @Test
+    void testFilterIsSavedAndCaughtUp() {
+        for (int i = 0; i < 20; i++) {
+            db.insert(i, "User" + i);
+        }
+        db.useBloomFilter();
+        db.close();
+        assertTrue(new File(TEST_DB_FILENAME + ".bloom").isFile());
+
+        // Appended without the filter, the saved filter is caught up on open
+        db = new SimpleDataBase(TEST_DB_FILENAME, false);
+        db.insert(20, "User20");
+        db.useBloomFilter();
+        assertEquals("User20", db.select(20).name());
+        assertEquals("User3", db.select(3).name());
+        assertEquals(0, db.bloomFilterStats().falsePositives() + db.bloomFilterStats().negatives());
+
+        db.clear();
+        assertFalse(new File(TEST_DB_FILENAME + ".bloom").exists());
+        assertNull(db.select(3));
+        assertEquals(1, db.bloomFilterStats().negatives());
+        db.insert(3, "Again");
+        assertEquals("Again", db.select(3).name());
+    }
+}
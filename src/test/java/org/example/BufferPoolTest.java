@@ -0,0 +1,202 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+    private static final String TEST_FILENAME = "test_buffer_pool.db";
+    private static final int PAGE_SIZE = 64;
+    private static final int PAGES = 16;
+    private PageFile file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new File(TEST_FILENAME).delete();
+        file = new PageFile(TEST_FILENAME, PAGE_SIZE);
+        // Each page starts with its own page number
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        for (int i = 0; i < PAGES; i++) {
+            buffer.putInt(0, i);
+            file.writePage(file.allocatePage(), buffer);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        file.close();
+        new File(TEST_FILENAME).delete();
+    }
+
+    private static void touch(BufferPool pool, int pageNo) throws IOException {
+        Page page = pool.pin(pageNo);
+        assertEquals(pageNo, page.data().getInt(0));
+        pool.unpin(page, false);
+    }
+
+    private static boolean isCached(BufferPool pool, int pageNo) throws IOException {
+        long misses = pool.misses();
+        touch(pool, pageNo);
+        return pool.misses() == misses;
+    }
+
+    @Test
+    void testHitsAndMisses() throws IOException {
+        BufferPool pool = new BufferPool(file, 4, LruPolicy::new);
+        touch(pool, 0);
+        touch(pool, 1);
+        touch(pool, 0);
+        assertEquals(1, pool.hits());
+        assertEquals(2, pool.misses());
+        assertEquals(0, pool.evictions());
+        assertEquals(1.0 / 3, pool.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void testLruEvictsLeastRecentlyUsed() throws IOException {
+        BufferPool pool = new BufferPool(file, 3, LruPolicy::new);
+        touch(pool, 0);
+        touch(pool, 1);
+        touch(pool, 2);
+        touch(pool, 0);
+        // 1 is the least recently used page
+        touch(pool, 3);
+        assertEquals(1, pool.evictions());
+        assertTrue(isCached(pool, 0));
+        assertTrue(isCached(pool, 2));
+        assertTrue(isCached(pool, 3));
+        assertFalse(isCached(pool, 1));
+    }
+
+    @Test
+    void testClockGivesSecondChance() throws IOException {
+        BufferPool pool = new BufferPool(file, 3, ClockPolicy::new);
+        touch(pool, 0);
+        touch(pool, 1);
+        touch(pool, 2);
+        // Every reference bit is set, the first sweep clears them and frame 0 is evicted
+        touch(pool, 3);
+        assertFalse(isCached(pool, 0));
+        // 0 was loaded into frame 1 in place of page 1, the hand is at frame 2 now
+        assertFalse(isCached(pool, 1));
+    }
+
+    @Test
+    void testTwoQueueIsScanResistant() throws IOException {
+        BufferPool pool = new BufferPool(file, 4, TwoQueuePolicy::new);
+        // Page 0 is read, evicted from A1in and read again, which promotes it to Am
+        touch(pool, 0);
+        for (int i = 1; i <= 4; i++) {
+            touch(pool, i);
+        }
+        touch(pool, 0);
+        // A long scan only cycles through A1in
+        for (int i = 5; i < PAGES; i++) {
+            touch(pool, i);
+        }
+        assertTrue(isCached(pool, 0));
+
+        // The same access pattern under LRU loses page 0
+        BufferPool lru = new BufferPool(file, 4, LruPolicy::new);
+        touch(lru, 0);
+        for (int i = 5; i < PAGES; i++) {
+            touch(lru, i);
+        }
+        assertFalse(isCached(lru, 0));
+    }
+
+    @Test
+    void testTwoQueueGhostRing() {
+        // 4 frames: A1in target 1, A1out remembers 2 page numbers
+        TwoQueuePolicy policy = new TwoQueuePolicy(4);
+        IntPredicate any = frame -> true;
+        for (int frame = 0; frame < 4; frame++) {
+            policy.loaded(frame, 10 + frame);
+        }
+        assertEquals(0, policy.victim(any));
+        assertEquals(1, policy.victim(any));
+        // A1out is full, page 10 is forgotten when page 12 is remembered
+        assertEquals(2, policy.victim(any));
+        policy.loaded(0, 10);
+        policy.loaded(1, 11);
+        policy.loaded(2, 12);
+        // Pages 11 and 12 were second references and went to Am, 10 and 13 are in A1in
+        assertEquals(3, policy.victim(any));
+        assertEquals(1, policy.victim(any));
+        assertEquals(2, policy.victim(any));
+        assertEquals(0, policy.victim(any));
+        // 13 is remembered, 12 was taken out of A1out by its second reference
+        policy.loaded(0, 13);
+        policy.loaded(1, 12);
+        assertEquals(0, policy.victim(any));
+        assertEquals(1, policy.victim(any));
+    }
+
+    @Test
+    void testPinnedPagesAreNotEvicted() throws IOException {
+        for (IntFunction<EvictionPolicy> policy : List.<IntFunction<EvictionPolicy>>of(
+                LruPolicy::new, ClockPolicy::new, TwoQueuePolicy::new)) {
+            BufferPool pool = new BufferPool(file, 2, policy);
+            Page pinned = pool.pin(0);
+            for (int i = 1; i < PAGES; i++) {
+                touch(pool, i);
+            }
+            assertEquals(0, pinned.pageNo());
+            assertEquals(0, pinned.data().getInt(0));
+
+            Page other = pool.pin(1);
+            assertThrows(IllegalStateException.class, () -> pool.pin(2));
+            pool.unpin(other, false);
+            pool.unpin(pinned, false);
+            assertThrows(IllegalStateException.class, () -> pool.unpin(pinned, false));
+        }
+    }
+
+    @Test
+    void testDirtyPagesAreWrittenBack() throws IOException {
+        BufferPool pool = new BufferPool(file, 2, LruPolicy::new);
+        Page page = pool.pin(0);
+        page.data().putInt(4, 42);
+        pool.unpin(page, true);
+        touch(pool, 1);
+        touch(pool, 2);
+        assertEquals(1, pool.writebacks());
+
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        file.readPage(0, buffer);
+        assertEquals(42, buffer.getInt(4));
+    }
+
+    @Test
+    void testNewPageAndFlush() throws IOException {
+        BufferPool pool = new BufferPool(file, 4, LruPolicy::new);
+        Page page = pool.newPage();
+        assertEquals(PAGES, page.pageNo());
+        page.data().putInt(0, PAGES);
+        pool.unpin(page, false);
+        pool.flush();
+        assertEquals(1, pool.writebacks());
+
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        file.readPage(PAGES, buffer);
+        assertEquals(PAGES, buffer.getInt(0));
+    }
+
+    @Test
+    void testDiscard() throws IOException {
+        BufferPool pool = new BufferPool(file, 2, LruPolicy::new);
+        touch(pool, 0);
+        pool.discard(0);
+        assertFalse(isCached(pool, 0));
+        assertEquals(0, pool.evictions());
+    }
+}
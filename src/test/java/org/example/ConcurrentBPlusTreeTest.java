@@ -0,0 +1,119 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentBPlusTreeTest {
+
+    @Test
+    void testSingleThreaded() {
+        ConcurrentBPlusTree tree = new ConcurrentBPlusTree(3);
+        for (int i = 0; i < 1000; i++) {
+            int key = (i * 7919) % 1000;
+            tree.insert(key, "value" + key);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("value" + i, tree.search(i));
+        }
+        assertNull(tree.search(1000));
+        assertTrue(tree.update(10, "update10"));
+        assertEquals("update10", tree.search(10));
+        assertFalse(tree.update(1000, "notExist"));
+        assertEquals(1000, tree.checkInvariants());
+    }
+
+    @Test
+    void testConcurrentInsertSearchUpdate() throws Exception {
+        for (int order : new int[] {3, 4, 16, 64}) {
+            stress(order);
+        }
+    }
+
+    private void stress(int order) throws Exception {
+        final int writers = 4;
+        final int readers = 4;
+        final int keysPerWriter = 20_000;
+        final int total = writers * keysPerWriter;
+        ConcurrentBPlusTree tree = new ConcurrentBPlusTree(order);
+        // 0 = not inserted yet, 1 = inserted, 2 = updated
+        AtomicIntegerArray state = new AtomicIntegerArray(total);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            futures.add(executor.submit(() -> {
+                // Each writer owns the keys k with k % writers == writer, inserted in random order
+                List<Integer> keys = new ArrayList<>();
+                for (int i = 0; i < keysPerWriter; i++) {
+                    keys.add(i * writers + writer);
+                }
+                Collections.shuffle(keys, new Random(writer));
+                start.await();
+                for (int i = 0; i < keys.size(); i++) {
+                    int key = keys.get(i);
+                    tree.insert(key, "value" + key);
+                    state.set(key, 1);
+                    // Update a key inserted earlier by this writer
+                    if (i % 3 == 0) {
+                        int earlier = keys.get(i / 2);
+                        assertTrue(tree.update(earlier, "update" + earlier));
+                        state.set(earlier, 2);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < readers; r++) {
+            final int reader = r;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(100 + reader);
+                start.await();
+                while (writing.get()) {
+                    int key = random.nextInt(total);
+                    // Read the state first: what was inserted before the search started must be found
+                    int before = state.get(key);
+                    String value = tree.search(key);
+                    if (before == 1) {
+                        assertTrue(("value" + key).equals(value) || ("update" + key).equals(value),
+                                "key " + key + " has value " + value);
+                    } else if (before == 2) {
+                        assertEquals("update" + key, value);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (int w = 0; w < writers; w++) {
+            futures.get(w).get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(total, tree.checkInvariants());
+        for (int key = 0; key < total; key++) {
+            String expected = (state.get(key) == 2 ? "update" : "value") + key;
+            assertEquals(expected, tree.search(key));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskBPlusTreeTest {
+    private static final String TEST_INDEX_FILENAME = "test_index.idx";
+    // Small pages hold only a few keys, so a few hundred inserts build a tree with several levels
+    private static final int SMALL_PAGE_SIZE = 64;
+    private DiskBPlusTree tree;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new File(TEST_INDEX_FILENAME).delete();
+        tree = new DiskBPlusTree(TEST_INDEX_FILENAME, SMALL_PAGE_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        tree.close();
+        new File(TEST_INDEX_FILENAME).delete();
+    }
+
+    @Test
+    void testInsertAndSearch() throws IOException {
+        assertTrue(tree.insert(10, 100));
+        assertTrue(tree.insert(20, 200));
+        assertTrue(tree.insert(5, 50));
+
+        assertEquals(100, tree.search(10));
+        assertEquals(200, tree.search(20));
+        assertEquals(50, tree.search(5));
+        assertEquals(DiskBPlusTree.NOT_FOUND, tree.search(15));
+    }
+
+    @Test
+    void testInsertOutOfOrder() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            int key = (i * 7919) % 1000;
+            assertTrue(tree.insert(key, key * 16L));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 16L, tree.search(i));
+        }
+        assertEquals(DiskBPlusTree.NOT_FOUND, tree.search(1000));
+        assertEquals(DiskBPlusTree.NOT_FOUND, tree.search(-1));
+        assertTrue(tree.height() > 2);
+    }
+
+    @Test
+    void testDuplicateKeepsFirstValue() throws IOException {
+        assertTrue(tree.insert(1, 16));
+        assertFalse(tree.insert(1, 32));
+        assertEquals(16, tree.search(1));
+    }
+
+    @Test
+    void testReopen() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            tree.insert(i, i);
+        }
+        tree.setIndexedBytes(8000);
+        tree.close();
+
+        tree = new DiskBPlusTree(TEST_INDEX_FILENAME, SMALL_PAGE_SIZE);
+        assertEquals(8000, tree.indexedBytes());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, tree.search(i));
+        }
+    }
+
+    @Test
+    void testUncleanShutdownDiscardsIndex() throws IOException {
+        tree.close();
+        // A few frames, so inserts evict and write nodes before any flush
+        DiskBPlusTree crashed = new DiskBPlusTree(TEST_INDEX_FILENAME, SMALL_PAGE_SIZE, 4, LruPolicy::new);
+        assertFalse(crashed.openedUnclean());
+        for (int i = 0; i < 500; i++) {
+            crashed.insert(i, i);
+        }
+        crashed.setIndexedBytes(8000);
+        crashed.flush();
+
+        // Reopened after a flush without later changes, the index is intact
+        tree = new DiskBPlusTree(TEST_INDEX_FILENAME, SMALL_PAGE_SIZE);
+        assertFalse(tree.openedUnclean());
+        assertEquals(8000, tree.indexedBytes());
+        assertEquals(499, tree.search(499));
+        tree.bufferPool().file().close();
+
+        for (int i = 500; i < 1000; i++) {
+            crashed.insert(i, i);
+        }
+        crashed.setIndexedBytes(16_000);
+        assertTrue(crashed.bufferPool().writebacks() > 0);
+        // Crash: the file keeps whatever pages were evicted, but nothing is flushed
+        crashed.bufferPool().file().close();
+
+        tree = new DiskBPlusTree(TEST_INDEX_FILENAME, SMALL_PAGE_SIZE);
+        assertTrue(tree.openedUnclean());
+        assertEquals(0, tree.indexedBytes());
+        assertEquals(DiskBPlusTree.NOT_FOUND, tree.search(1));
+        assertEquals(1, tree.height());
+        tree.insert(1, 16);
+        tree.close();
+
+        tree = new DiskBPlusTree(TEST_INDEX_FILENAME, SMALL_PAGE_SIZE);
+        assertFalse(tree.openedUnclean());
+        assertEquals(16, tree.search(1));
+    }
+
+    @Test
+    void testPageSizeMismatch() throws IOException {
+        tree.close();
+        assertThrows(IOException.class, () -> new DiskBPlusTree(TEST_INDEX_FILENAME, 128));
+        tree = new DiskBPlusTree(TEST_INDEX_FILENAME, SMALL_PAGE_SIZE);
+    }
+
+    @Test
+    void testClear() throws IOException {
+        tree.insert(1, 16);
+        tree.clear();
+        assertEquals(DiskBPlusTree.NOT_FOUND, tree.search(1));
+        assertEquals(1, tree.height());
+    }
+
+    @Test
+    void testDefaultPageSize() throws IOException {
+        tree.close();
+        new File(TEST_INDEX_FILENAME).delete();
+        tree = new DiskBPlusTree(TEST_INDEX_FILENAME, PageFile.DEFAULT_PAGE_SIZE);
+        for (int i = 0; i < 100_000; i++) {
+            tree.insert(i, i);
+        }
+        // About 340 keys per leaf and 510 per internal node
+        assertEquals(3, tree.height());
+        assertEquals(99_999, tree.search(99_999));
+    }
+}
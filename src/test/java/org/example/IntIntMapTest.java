@@ -0,0 +1,51 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntIntMapTest {
+
+    @Test
+    void testPutGetRemove() {
+        IntIntMap map = new IntIntMap(4, -1);
+        map.put(1, 10);
+        map.put(2, 20);
+        map.put(1, 11);
+        assertEquals(2, map.size());
+        assertEquals(11, map.get(1));
+        assertEquals(20, map.get(2));
+        assertEquals(-1, map.get(3));
+
+        assertEquals(11, map.remove(1));
+        assertEquals(-1, map.remove(1));
+        assertEquals(-1, map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void testAgainstHashMap() {
+        // Random operations with a small key range, so probe runs and deletions within them are common
+        IntIntMap map = new IntIntMap(2, -1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(512) - 256;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, -1), map.remove(key));
+                expected.remove(key);
+            } else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -256; key < 256; key++) {
+            assertEquals(expected.getOrDefault(key, -1), map.get(key));
+        }
+    }
+}
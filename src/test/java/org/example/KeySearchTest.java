@@ -0,0 +1,65 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeySearchTest {
+    private static int linearLowerBound(int[] keys, int count, int key) {
+        int index = 0;
+        while (index < count && keys[index] < key) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int linearUpperBound(int[] keys, int count, int key) {
+        int index = 0;
+        while (index < count && keys[index] <= key) {
+            index++;
+        }
+        return index;
+    }
+
+    @Test
+    void testMatchesLinearScanForAllSizes() {
+        Random random = new Random(11);
+        for (int count = 0; count <= 600; count++) {
+            // Spare capacity like a node, filled with garbage that must not be read
+            int[] keys = new int[count + 2];
+            for (int i = 0; i < count; i++) {
+                // Narrow range so there are many duplicates
+                keys[i] = random.nextInt(count / 2 + 1) - count / 4;
+            }
+            Arrays.sort(keys, 0, count);
+            keys[count] = Integer.MIN_VALUE;
+            keys[count + 1] = Integer.MIN_VALUE;
+
+            for (int key = -count / 4 - 2; key <= count / 4 + 2; key++) {
+                int lower = linearLowerBound(keys, count, key);
+                int upper = linearUpperBound(keys, count, key);
+                assertEquals(lower, KeySearch.lowerBound(keys, count, key), "lowerBound of " + key + " in " + count);
+                assertEquals(upper, KeySearch.upperBound(keys, count, key), "upperBound of " + key + " in " + count);
+                assertEquals(lower, KeySearch.countBelow(keys, count, key));
+                assertEquals(lower, KeySearch.branchlessLowerBound(keys, count, key));
+                assertEquals(upper, KeySearch.countAtMost(keys, count, key));
+                assertEquals(upper, KeySearch.branchlessUpperBound(keys, count, key));
+            }
+        }
+    }
+
+    @Test
+    void testExtremeKeys() {
+        int[] keys = {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE};
+        assertEquals(0, KeySearch.lowerBound(keys, keys.length, Integer.MIN_VALUE));
+        assertEquals(1, KeySearch.upperBound(keys, keys.length, Integer.MIN_VALUE));
+        assertEquals(4, KeySearch.lowerBound(keys, keys.length, Integer.MAX_VALUE));
+        assertEquals(5, KeySearch.upperBound(keys, keys.length, Integer.MAX_VALUE));
+        assertEquals(5, KeySearch.branchlessUpperBound(keys, keys.length, Integer.MAX_VALUE));
+        assertEquals(0, KeySearch.lowerBound(keys, 0, 7));
+        assertEquals(0, KeySearch.branchlessUpperBound(keys, 0, 7));
+    }
+}
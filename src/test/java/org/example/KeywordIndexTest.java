@@ -0,0 +1,123 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordIndexTest {
+    private static int[] randomSet(Random random, int size, int range) {
+        TreeSet<Integer> set = new TreeSet<>();
+        while (set.size() < size) {
+            set.add(random.nextInt(range));
+        }
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void testPostingListRoundTrip() {
+        KeywordIndex.PostingList list = new KeywordIndex.PostingList();
+        int[] records = {0, 1, 2, 130, 20_000, 20_001, Integer.MAX_VALUE - 1};
+        for (int record : records) {
+            list.add(record);
+        }
+        assertArrayEquals(records, list.decode());
+        assertThrows(IllegalArgumentException.class, () -> list.add(5));
+
+        // Dense postings take one byte per gap
+        KeywordIndex.PostingList dense = new KeywordIndex.PostingList();
+        for (int record = 0; record < 10_000; record += 3) {
+            dense.add(record);
+        }
+        assertEquals(dense.size(), dense.encodedBytes());
+    }
+
+    @Test
+    void testIntersectAndUnionMatchSets() {
+        Random random = new Random(21);
+        for (int round = 0; round < 200; round++) {
+            int[] a = randomSet(random, random.nextInt(50), 1000);
+            int[] b = randomSet(random, random.nextInt(800), 1000);
+            TreeSet<Integer> both = new TreeSet<>();
+            TreeSet<Integer> either = new TreeSet<>();
+            for (int value : a) {
+                either.add(value);
+            }
+            for (int value : b) {
+                either.add(value);
+                if (Arrays.binarySearch(a, value) >= 0) {
+                    both.add(value);
+                }
+            }
+            assertArrayEquals(both.stream().mapToInt(Integer::intValue).toArray(), KeywordIndex.intersect(a, b));
+            assertArrayEquals(both.stream().mapToInt(Integer::intValue).toArray(), KeywordIndex.intersect(b, a));
+            assertArrayEquals(either.stream().mapToInt(Integer::intValue).toArray(), KeywordIndex.union(a, b));
+        }
+    }
+
+    @Test
+    void testIntersectPostingListDecodesOnlyNeededBlocks() {
+        Random random = new Random(8);
+        int[] large = randomSet(random, 100_000, 1_000_000);
+        KeywordIndex.PostingList list = new KeywordIndex.PostingList();
+        for (int record : large) {
+            list.add(record);
+        }
+        assertArrayEquals(large, list.decode());
+        for (int round = 0; round < 50; round++) {
+            int[] small = randomSet(random, 1 + random.nextInt(round < 40 ? 20 : 5000), 1_000_001);
+            if (round % 2 == 0) {
+                // Make sure some values match, including the first and last record
+                small[0] = large[0];
+                small[small.length - 1] = Math.max(small[small.length - 1], large[large.length - 1]);
+                Arrays.sort(small);
+            }
+            assertArrayEquals(KeywordIndex.intersect(small, large), KeywordIndex.intersect(small, list));
+        }
+
+        KeywordIndex.PostingList.Cursor cursor = list.cursor();
+        int[] small = randomSet(random, 10, 1_000_000);
+        for (int value : small) {
+            cursor.advance(value);
+        }
+        // At most the block holding each value and the one after it, out of 782
+        assertTrue(cursor.blocksDecoded() <= 2 * small.length, "Decoded " + cursor.blocksDecoded() + " blocks");
+        assertEquals(-1, cursor.advance(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void testGallop() {
+        int[] list = {1, 3, 5, 7, 9, 11, 13};
+        assertEquals(0, KeywordIndex.gallop(list, 0, 0));
+        assertEquals(3, KeywordIndex.gallop(list, 0, 6));
+        assertEquals(3, KeywordIndex.gallop(list, 3, 7));
+        assertEquals(6, KeywordIndex.gallop(list, 2, 13));
+        assertEquals(7, KeywordIndex.gallop(list, 2, 14));
+        assertEquals(7, KeywordIndex.gallop(list, 7, 1));
+    }
+
+    @Test
+    void testQueries() {
+        KeywordIndex index = new KeywordIndex();
+        index.add(0, "Mary-Ann O'Neil");
+        index.add(1, "Ann Lee");
+        index.add(2, "Lee, Mary Ann");
+        index.add(3, "Bob Lee Lee");
+        index.add(4, "");
+
+        assertEquals(List.of("mary", "ann", "o", "neil"), KeywordIndex.tokenize("Mary-Ann O'Neil"));
+        assertArrayEquals(new int[] {0, 1, 2}, index.all("ann"));
+        assertArrayEquals(new int[] {1, 2}, index.all("ANN lee"));
+        assertArrayEquals(new int[] {0, 2}, index.all("mary ann"));
+        assertArrayEquals(new int[0], index.all("ann bob"));
+        assertArrayEquals(new int[0], index.all("carol"));
+        assertArrayEquals(new int[0], index.all(" - "));
+        assertArrayEquals(new int[] {0, 3}, index.any("bob neil carol"));
+        assertArrayEquals(new int[] {1, 2, 3}, index.any("lee"));
+        assertEquals(6, index.tokens());
+    }
+}
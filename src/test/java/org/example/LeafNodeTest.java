@@ -3,8 +3,6 @@ package org.example;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
-
 import static org.junit.jupiter.api.Assertions.*;
 
 class LeafNodeTest {
@@ -20,32 +18,40 @@ class LeafNodeTest {
         // Test case 1: Insert into empty leaf
         Node result = leafNode.insert(5, "value5");
         assertNull(result);
-        assertEquals(1, leafNode.keys.size());
-        assertEquals(5, leafNode.keys.getFirst());
+        assertEquals(1, leafNode.keyCount);
+        assertEquals(5, leafNode.keys[0]);
 
         // Test case 2: Insert maintaining order
         result = leafNode.insert(3, "value3");
         assertNull(result);
-        assertEquals(2, leafNode.keys.size());
-        assertEquals(3, leafNode.keys.get(0));
-        assertEquals(5, leafNode.keys.get(1));
+        assertEquals(2, leafNode.keyCount);
+        assertEquals(3, leafNode.keys[0]);
+        assertEquals(5, leafNode.keys[1]);
 
     }
 
     @Test
     void testSplitLeafNode() {
-        leafNode.keys.addAll(List.of(10, 20, 30, 40));
-        leafNode.values.addAll(List.of("value10", "value20", "value30", "value40"));
+        leafNode.append(10, "value10");
+        leafNode.append(20, "value20");
+        leafNode.append(30, "value30");
+        leafNode.append(40, "value40");
         Node result = leafNode.insert(50, "value50");
         assertNotNull(result);
         assertInstanceOf(LeafNode.class, result);
-        assertEquals(2, leafNode.keys.size());
-        assertEquals(2, leafNode.values.size());
-        assertEquals(3, result.keys.size());
-        assertEquals(3, result.values.size());
-        assertEquals(20, leafNode.keys.get(1));
-        assertEquals("value20", leafNode.values.get(1));
-        assertEquals(30, result.keys.getFirst());
-        assertEquals("value30", result.values.getFirst());
+        LeafNode newLeaf = (LeafNode) result;
+        assertEquals(2, leafNode.keyCount);
+        assertEquals(2, leafNode.values().length);
+        assertEquals(3, newLeaf.keyCount);
+        assertEquals(3, newLeaf.values().length);
+        assertEquals(20, leafNode.keys[1]);
+        assertEquals("value20", leafNode.values[1]);
+        assertEquals(30, newLeaf.keys[0]);
+        assertEquals("value30", newLeaf.values[0]);
+        // The moved slots are cleared in the left node
+        assertNull(leafNode.values[2]);
+        // The new node is linked into the leaf chain
+        assertSame(newLeaf, leafNode.next);
+        assertNull(newLeaf.next);
     }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmDataBaseTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testInsertSelectAcrossSegments() {
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(7);
+        try (LsmDataBase db = new LsmDataBase(directory.toString(), 100, 3)) {
+            for (int i = 0; i < 5000; i++) {
+                int id = random.nextInt(2000);
+                String name = "User" + i;
+                db.insert(id, name);
+                expected.put(id, name);
+                if (i % 500 == 0) {
+                    // Reads hit the memtable, the frozen memtable and older segments
+                    for (int check = 0; check < 2000; check += 37) {
+                        User user = db.select(check);
+                        assertEquals(expected.get(check), user == null ? null : user.name());
+                    }
+                }
+            }
+            db.flush();
+            for (int id = 0; id < 2000; id++) {
+                User user = db.select(id);
+                assertEquals(expected.get(id), user == null ? null : user.name());
+            }
+            // 50 flushes of one memtable each, merged 3 at a time per tier
+            assertTrue(db.segmentCount() <= 2 * 4, "Too many segments: " + db.segmentCount());
+        }
+
+        try (LsmDataBase reopened = new LsmDataBase(directory.toString(), 100, 3)) {
+            for (int id = 0; id < 2000; id++) {
+                User user = reopened.select(id);
+                assertEquals(expected.get(id), user == null ? null : user.name());
+            }
+        }
+    }
+
+    @Test
+    void testSegmentsAreSortedRecordFiles() {
+        try (LsmDataBase db = new LsmDataBase(directory.toString(), 1000, 4)) {
+            for (int id = 999; id >= 0; id--) {
+                db.insert(id, "User" + id);
+            }
+            db.flush();
+        }
+        File[] segments = directory.toFile().listFiles((dir, name) -> name.endsWith(".seg"));
+        assertEquals(1, segments.length);
+        assertEquals(1000 * 16, segments[0].length());
+
+        // The same layout SimpleDataBase binary-searches
+        try (SimpleDataBase db = new SimpleDataBase(segments[0].getPath(), false)) {
+            assertEquals("User123", db.selectBinarySearch(123).name());
+            assertEquals("User999", db.selectBinarySearch(999).name());
+        }
+    }
+
+    @Test
+    void testCompactionKeepsNewestRecord() {
+        try (LsmDataBase db = new LsmDataBase(directory.toString(), 10, 2)) {
+            for (int round = 0; round < 8; round++) {
+                for (int id = 0; id < 10; id++) {
+                    db.insert(id, "Round" + round);
+                }
+            }
+            db.flush();
+            assertEquals(1, db.segmentCount());
+            for (int id = 0; id < 10; id++) {
+                assertEquals("Round7", db.select(id).name());
+            }
+            assertNull(db.select(10));
+        }
+        File[] segments = directory.toFile().listFiles((dir, name) -> name.endsWith(".seg"));
+        assertEquals(1, segments.length);
+        assertEquals(10 * 16, segments[0].length());
+    }
+
+    @Test
+    void testRecoverMemtableFromLog(@TempDir Path crashed) throws IOException {
+        try (LsmDataBase db = new LsmDataBase(directory.toString(), 1000, 4)) {
+            for (int id = 0; id < 50; id++) {
+                db.insert(id, "User" + id);
+            }
+            db.sync();
+            // Copy the directory while the memtable is only in the log, as a crash would leave it
+            for (File file : directory.toFile().listFiles()) {
+                Files.copy(file.toPath(), crashed.resolve(file.getName()));
+            }
+        }
+        File[] logs = crashed.toFile().listFiles((dir, name) -> name.endsWith(".log"));
+        assertEquals(1, logs.length);
+        try (RandomAccessFile raf = new RandomAccessFile(logs[0], "rw")) {
+            // Half of a record, torn by the crash
+            raf.seek(raf.length());
+            raf.write(new byte[] {0, 0, 0, 99, 'X'});
+        }
+
+        try (LsmDataBase recovered = new LsmDataBase(crashed.toString(), 1000, 4)) {
+            assertEquals(1, recovered.segmentCount());
+            for (int id = 0; id < 50; id++) {
+                assertEquals("User" + id, recovered.select(id).name());
+            }
+            assertNull(recovered.select(99));
+        }
+        assertEquals(0, crashed.toFile().listFiles((dir, name) -> name.endsWith(".log") && new File(dir, name).length() > 0).length);
+    }
+
+    @Test
+    void testBloomFiltersSkipSegments() {
+        try (LsmDataBase db = new LsmDataBase(directory.toString(), 1000, 100, 10)) {
+            // Ten segments of even ids
+            for (int id = 0; id < 20_000; id += 2) {
+                db.insert(id, "User" + id);
+            }
+            db.flush();
+            assertEquals(10, db.segmentCount());
+            for (int id = 1; id < 2000; id += 2) {
+                assertNull(db.select(id));
+            }
+            BloomFilter.Stats stats = db.bloomFilterStats();
+            // Every miss consults every segment's filter
+            assertEquals(10 * 1000, stats.queries());
+            assertTrue(stats.falsePositiveRate() < 0.03, "False positive rate: " + stats.falsePositiveRate());
+            assertEquals("User1234", db.select(1234).name());
+        }
+        File[] filters = directory.toFile().listFiles((dir, name) -> name.endsWith(".bloom"));
+        assertEquals(10, filters.length);
+
+        // A lost filter is rebuilt on open
+        filters[0].delete();
+        try (LsmDataBase reopened = new LsmDataBase(directory.toString(), 1000, 100, 10)) {
+            for (int id = 0; id < 20_000; id += 222) {
+                assertEquals("User" + id, reopened.select(id).name());
+            }
+        }
+        assertTrue(filters[0].isFile());
+    }
+}
@@ -0,0 +1,125 @@
+package org.example;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+    private static final String TEST_DB_FILENAME = "test_metrics.db";
+
+    @BeforeEach
+    void setUp() {
+        Metrics.reset();
+        Metrics.setEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.setSlowThresholdNanos(10_000_000);
+        Metrics.reset();
+        new File(TEST_DB_FILENAME).delete();
+    }
+
+    @Test
+    void testHistogramBuckets() {
+        for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket < LatencyHistogram.BUCKETS);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value, "upper bound of " + value);
+            // Within 12.5% of the value
+            assertTrue(LatencyHistogram.upperBound(bucket) - value <= value / 8, "precision of " + value);
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.count());
+        long median = histogram.percentile(0.5);
+        assertTrue(median >= 500_000 && median <= 500_000 * 9 / 8, "p50 " + median);
+        long p99 = histogram.percentile(0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 990_000 * 9 / 8, "p99 " + p99);
+        histogram.reset();
+        assertEquals(0, histogram.percentile(0.5));
+    }
+
+    @Test
+    void testTreeAndDatabaseCounters() {
+        BPlusTreeMemory tree = new BPlusTreeMemory(4);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i, "value" + i);
+        }
+        tree.search(5);
+        tree.delete(5);
+        assertEquals(100, Metrics.latency(Metrics.Operation.TREE_INSERT).count());
+        assertEquals(1, Metrics.latency(Metrics.Operation.TREE_SEARCH).count());
+        assertEquals(1, Metrics.latency(Metrics.Operation.TREE_DELETE).count());
+        assertTrue(Metrics.count(Metrics.Counter.NODE_SPLITS) > 30);
+        assertEquals(tree.height(), Metrics.maxTreeHeight());
+
+        try (SimpleDataBase db = new SimpleDataBase(TEST_DB_FILENAME, true)) {
+            db.insert(1, "Alice");
+            db.insert(2, "Bob");
+            assertEquals(2 * 16, Metrics.count(Metrics.Counter.BYTES_WRITTEN));
+            assertEquals("Bob", db.select(2).name());
+            assertEquals(2 * 16, Metrics.count(Metrics.Counter.BYTES_READ));
+            assertEquals(3, Metrics.count(Metrics.Counter.FILE_OPENS));
+
+            db.useBufferPool(4, LruPolicy::new);
+            db.select(1);
+            db.select(2);
+            assertEquals(1, Metrics.count(Metrics.Counter.CACHE_MISSES));
+            assertEquals(1, Metrics.count(Metrics.Counter.CACHE_HITS));
+            assertEquals(2, Metrics.latency(Metrics.Operation.DB_INSERT).count());
+            assertEquals(3, Metrics.latency(Metrics.Operation.DB_SELECT).count());
+        }
+        assertTrue(Metrics.report().contains("TREE_INSERT"));
+    }
+
+    @Test
+    void testDisabledRecordsNothing() {
+        Metrics.setEnabled(false);
+        assertEquals(0, Metrics.start());
+        BPlusTreeMemory tree = new BPlusTreeMemory(4);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i, "value" + i);
+        }
+        assertEquals(0, Metrics.latency(Metrics.Operation.TREE_INSERT).count());
+        assertEquals(0, Metrics.count(Metrics.Counter.NODE_SPLITS));
+        assertEquals(0, Metrics.maxTreeHeight());
+    }
+
+    @Test
+    void testSlowOperationEvents() throws IOException {
+        // Every operation counts as slow
+        Metrics.setSlowThresholdNanos(0);
+        Path recordingFile = Files.createTempFile("metrics", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.example.SlowOperation");
+            recording.start();
+            BPlusTreeMemory tree = new BPlusTreeMemory(4);
+            tree.insert(42, "answer");
+            tree.search(42);
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        Files.delete(recordingFile);
+        assertEquals(2, events.size());
+        assertEquals("TREE_INSERT", events.get(0).getString("operation"));
+        assertEquals(42, events.get(0).getLong("key"));
+        assertEquals("TREE_SEARCH", events.get(1).getString("operation"));
+    }
+}
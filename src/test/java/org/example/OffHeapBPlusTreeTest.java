@@ -0,0 +1,89 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapBPlusTreeTest {
+    @Test
+    void testMatchesSortedMap() {
+        Random random = new Random(17);
+        for (int order : new int[] {3, 4, 5, 64}) {
+            // Small slabs so the tree spans many of them
+            OffHeapBPlusTree tree = new OffHeapBPlusTree(order, 1024);
+            TreeMap<Integer, Long> expected = new TreeMap<>();
+            for (int i = 0; i < 20_000; i++) {
+                int key = random.nextInt(5000) - 2500;
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key) != null, tree.delete(key), "delete " + key);
+                } else {
+                    long value = random.nextLong();
+                    boolean inserted = !expected.containsKey(key);
+                    if (inserted) {
+                        expected.put(key, value);
+                    }
+                    assertEquals(inserted, tree.insert(key, value), "insert " + key);
+                }
+            }
+            assertEquals(expected.size(), tree.size());
+            for (int key = -2600; key < 2600; key++) {
+                Long value = expected.get(key);
+                assertEquals(value == null ? OffHeapBPlusTree.NOT_FOUND : value, tree.search(key));
+            }
+            int[] keys = tree.rangeKeys(-100, 100);
+            assertArrayEquals(expected.subMap(-100, true, 100, true).keySet().stream().mapToInt(Integer::intValue).toArray(), keys);
+            assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).toArray(),
+                    tree.rangeKeys(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void testFreedNodesAreReused() {
+        OffHeapBPlusTree tree = new OffHeapBPlusTree(8, 4096);
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            keys.add(i);
+        }
+        Collections.shuffle(keys, new Random(4));
+        for (int key : keys) {
+            tree.insert(key, key * 10L);
+        }
+        int nodes = tree.liveNodes();
+        long bytes = tree.offHeapBytes();
+        assertTrue(tree.height() >= 4);
+
+        for (int key : keys) {
+            assertTrue(tree.delete(key));
+        }
+        assertEquals(0, tree.size());
+        assertEquals(1, tree.height());
+        assertEquals(1, tree.liveNodes());
+        assertEquals(nodes - 1, tree.freeNodes());
+        assertEquals(OffHeapBPlusTree.NOT_FOUND, tree.search(5));
+
+        // The same keys again fit in the freed nodes without new slabs
+        for (int key : keys) {
+            tree.insert(key, key);
+        }
+        assertEquals(bytes, tree.offHeapBytes());
+        assertEquals(10_000, tree.size());
+        assertEquals(1234, tree.search(1234));
+    }
+
+    @Test
+    void testDuplicateKeepsValue() {
+        OffHeapBPlusTree tree = new OffHeapBPlusTree(4);
+        assertTrue(tree.insert(1, 100));
+        assertFalse(tree.insert(1, 200));
+        assertEquals(100, tree.search(1));
+        assertFalse(tree.delete(2));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapBPlusTree(2));
+    }
+}
@@ -0,0 +1,189 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordWriterTest {
+    private static final String TEST_DB_FILENAME = "test_record_writer.db";
+    private SimpleDataBase db;
+
+    @BeforeEach
+    void setUp() {
+        db = new SimpleDataBase(TEST_DB_FILENAME, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+        new File(TEST_DB_FILENAME).delete();
+        new File(TEST_DB_FILENAME + ".idx").delete();
+        new File(TEST_DB_FILENAME + ".wal").delete();
+    }
+
+    @Test
+    void testInsertAll() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            users.add(new User(i, "User" + i));
+        }
+        db.insertAll(users);
+
+        assertEquals(100_000L * 16, new File(TEST_DB_FILENAME).length());
+        for (int i = 0; i < 100_000; i += 9973) {
+            assertEquals("User" + i, db.selectBinarySearch(i).name());
+        }
+    }
+
+    @Test
+    void testSmallSegmentsAndSyncModes() throws IOException {
+        for (RecordWriter.SyncMode mode : RecordWriter.SyncMode.values()) {
+            db.clear();
+            // Two segments of two records each, so a flush happens every four records
+            try (RecordWriter writer = new RecordWriter(TEST_DB_FILENAME, 2, 32, mode, 1, db)) {
+                for (int i = 0; i < 10; i++) {
+                    writer.append(i, "User" + i);
+                }
+                assertEquals(8 * 16, new File(TEST_DB_FILENAME).length());
+                writer.flush();
+                assertEquals(10 * 16, new File(TEST_DB_FILENAME).length());
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals("User" + i, db.select(i).name());
+            }
+        }
+    }
+
+    @Test
+    void testWriterCommitsThroughWriteAheadLog() throws IOException {
+        // A writer that never fsyncs still hands its frames to the log, which writes them out every 64 KiB
+        db.useWriteAheadLog(RecordWriter.SyncMode.NEVER, 0);
+        WriteAheadLog wal = db.writeAheadLog();
+        try (RecordWriter writer = new RecordWriter(TEST_DB_FILENAME, 4, 4096, RecordWriter.SyncMode.NEVER, 0, db)) {
+            for (int i = 0; i < 100_000; i++) {
+                writer.append(i, "User" + i);
+                assertTrue(wal.pendingBytes() < 128 * 1024, "Frames pile up in memory: " + wal.pendingBytes());
+            }
+        }
+        assertEquals("User99999", db.select(99_999).name());
+        db.close();
+
+        // A log that fsyncs on every commit does so for a writer that never fsyncs itself
+        db = new SimpleDataBase(TEST_DB_FILENAME, true);
+        db.useWriteAheadLog(RecordWriter.SyncMode.EVERY_FLUSH, 0);
+        try (RecordWriter writer = new RecordWriter(TEST_DB_FILENAME, 2, 32, RecordWriter.SyncMode.NEVER, 0, db)) {
+            for (int i = 0; i < 4; i++) {
+                writer.append(i, "User" + i);
+            }
+            writer.flush();
+            assertEquals(1, db.writeAheadLog().syncs());
+            assertEquals(0, db.writeAheadLog().pendingBytes());
+        }
+    }
+
+    /**
+     * Writers on their own threads and plain inserts, all indexing the same database.
+     */
+    private void writeConcurrently(int writers, int perWriter, int inserts) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int base = w * perWriter;
+                futures.add(executor.submit(() -> {
+                    // Tiny segments, so the writers flush after every few records
+                    try (RecordWriter writer = new RecordWriter(TEST_DB_FILENAME, 2, 64, RecordWriter.SyncMode.NEVER, 0, db)) {
+                        for (int i = base; i < base + perWriter; i++) {
+                            writer.append(i, "User" + i);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                for (int i = writers * perWriter; i < writers * perWriter + inserts; i++) {
+                    db.insert(i, "User" + i);
+                }
+            }));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        int total = writers * perWriter + inserts;
+        assertEquals((long) total * 16, new File(TEST_DB_FILENAME).length());
+        for (int i = 0; i < total; i++) {
+            assertEquals("User" + i, db.selectIndexed(i).name());
+        }
+        assertEquals(List.of(new User(total - 1, "User" + (total - 1))), db.searchAll("user" + (total - 1)));
+    }
+
+    @Test
+    void testConcurrentWritersThroughWriteAheadLog() throws Exception {
+        db.useWriteAheadLog(RecordWriter.SyncMode.NEVER, 0);
+        db.createIndex();
+        db.useKeywordIndex();
+        writeConcurrently(3, 5000, 2000);
+    }
+
+    @Test
+    void testConcurrentWritersAndInserts() throws Exception {
+        db.createIndex();
+        db.useKeywordIndex();
+        writeConcurrently(3, 5000, 2000);
+    }
+
+    @Test
+    void testWriterKeepsIndexAndPoolUpToDate() throws IOException {
+        db.useBufferPool(4, LruPolicy::new);
+        db.createIndex();
+        db.insert(1000, "First");
+        assertEquals("First", db.select(1000).name());
+
+        try (RecordWriter writer = db.openWriter(RecordWriter.SyncMode.INTERVAL, 10)) {
+            for (int i = 0; i < 1000; i++) {
+                int id = (i * 7919) % 1000;
+                writer.append(id, "User" + id);
+            }
+        }
+        db.insert(1001, "Last");
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("User" + i, db.selectIndexed(i).name());
+        }
+        assertEquals("First", db.selectIndexed(1000).name());
+        assertEquals("Last", db.selectIndexed(1001).name());
+        assertEquals("User999", db.select(999).name());
+    }
+
+    @Test
+    void testEncodeNameMatchesInsert() {
+        for (String name : List.of("", "Alice", "ThisIsAVeryLongName", "Zoë", "名字名字名字名字")) {
+            ByteBuffer buffer = ByteBuffer.allocate(12);
+            RecordWriter.encodeName(name, buffer);
+            assertArrayEquals(Arrays.copyOf(name.getBytes(StandardCharsets.UTF_8), 12), buffer.array());
+        }
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RecordWriter(TEST_DB_FILENAME, 2, 20, RecordWriter.SyncMode.NEVER, 0, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RecordWriter(TEST_DB_FILENAME, 2, 32, RecordWriter.SyncMode.INTERVAL, 0, null));
+    }
+}
@@ -0,0 +1,119 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowCacheTest {
+
+    /**
+     * Read-through as SimpleDataBase does it: look up, and on a miss put the row read from the file.
+     */
+    private static User select(RowCache cache, int id) {
+        User user = cache.get(id);
+        if (user == null) {
+            long generation = cache.generation();
+            user = new User(id, "user" + id);
+            cache.put(user, generation);
+        }
+        return user;
+    }
+
+    @Test
+    void testGetPutAndInvalidate() {
+        RowCache cache = new RowCache(100 * RowCache.ENTRY_BYTES);
+        assertEquals(100, cache.capacity());
+        assertNull(cache.get(1));
+        User user = select(cache, 1);
+        assertSame(user, cache.get(1));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(1.0 / 3, cache.hitRatio(), 1e-9);
+
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+
+        // A row read before an invalidation is not cached
+        long generation = cache.generation();
+        cache.invalidate(2);
+        cache.put(new User(2, "stale"), generation);
+        assertNull(cache.get(2));
+
+        select(cache, 3);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(3));
+        assertThrows(IllegalArgumentException.class, () -> new RowCache(RowCache.ENTRY_BYTES - 1));
+    }
+
+    @Test
+    void testStaysWithinCapacity() {
+        for (int capacity : new int[] {1, 2, 3, 10, 1000}) {
+            RowCache cache = new RowCache((long) capacity * RowCache.ENTRY_BYTES);
+            Random random = new Random(capacity);
+            for (int i = 0; i < 20_000; i++) {
+                int id = random.nextInt(5 * capacity + 5);
+                assertEquals(id, select(cache, id).id());
+                assertTrue(cache.size() <= capacity);
+                if (i % 97 == 0) {
+                    cache.invalidate(random.nextInt(5 * capacity + 5));
+                }
+            }
+            assertTrue(cache.evictions() > 0);
+        }
+    }
+
+    @Test
+    void testScanDoesNotFlushPopularRows() {
+        RowCache cache = new RowCache(100 * RowCache.ENTRY_BYTES);
+        for (int round = 0; round < 10; round++) {
+            for (int id = 0; id < 50; id++) {
+                select(cache, id);
+            }
+        }
+        // Every id of the scan is new and requested once, so none of them beats a popular row
+        // that is still being requested
+        for (int id = 1000; id < 11_000; id++) {
+            select(cache, id);
+            select(cache, id % 50);
+        }
+        assertTrue(cache.rejections() > 9000);
+        for (int id = 0; id < 50; id++) {
+            assertNotNull(cache.get(id), "Popular row " + id + " was evicted");
+        }
+    }
+
+    @Test
+    void testSkewedHitRatio() {
+        // 10% of the ids get 90% of the requests, the cache holds 10% of the ids
+        RowCache cache = new RowCache(1000 * RowCache.ENTRY_BYTES);
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            int id = random.nextInt(10) < 9 ? random.nextInt(1000) : 1000 + random.nextInt(9000);
+            select(cache, id);
+        }
+        assertTrue(cache.hitRatio() > 0.8, cache.toString());
+    }
+
+    @Test
+    void testFrequencySketch() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        assertEquals(0, sketch.frequency(7));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(7);
+        }
+        assertEquals(5, sketch.frequency(7));
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(7);
+        }
+        assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(7));
+        sketch.reset();
+        assertEquals(FrequencySketch.MAX_FREQUENCY / 2, sketch.frequency(7));
+        sketch.clear();
+        assertEquals(0, sketch.frequency(7));
+    }
+}
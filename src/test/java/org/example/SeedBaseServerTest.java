@@ -0,0 +1,196 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeedBaseServerTest {
+    private static final String TEST_DB_FILENAME = "test_db_server.db";
+    private SimpleDataBase db;
+    private SeedBaseServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        db = new SimpleDataBase(TEST_DB_FILENAME, true);
+        server = new SeedBaseServer(db, 0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        db.close();
+        new File(TEST_DB_FILENAME).delete();
+    }
+
+    @Test
+    void testInsertSelectRange() throws IOException {
+        try (SeedBaseClient client = new SeedBaseClient(server.port())) {
+            for (int i = 0; i < 10; i++) {
+                client.insert(i, "user" + i);
+            }
+            assertEquals(new User(3, "user3"), client.select(3));
+            assertNull(client.select(42));
+            assertEquals(List.of(new User(4, "user4"), new User(5, "user5"), new User(6, "user6")),
+                    client.range(4, 6));
+            assertEquals(List.of(), client.range(20, 30));
+        }
+        assertEquals(new User(9, "user9"), db.select(9));
+    }
+
+    @Test
+    void testPipelinedBatches() throws IOException {
+        int count = 3 * SeedBaseClient.PIPELINE_WINDOW + 17;
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User(i, "n" + i));
+        }
+        try (SeedBaseClient client = new SeedBaseClient(server.port())) {
+            client.insertAll(users);
+            int[] ids = {0, count - 1, count, 500, -1};
+            User[] found = client.selectAll(ids);
+            assertEquals(new User(0, "n0"), found[0]);
+            assertEquals(users.get(count - 1), found[1]);
+            assertNull(found[2]);
+            assertEquals(new User(500, "n500"), found[3]);
+            assertNull(found[4]);
+            assertEquals(count, client.range(Integer.MIN_VALUE, Integer.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void testConcurrentClients() throws Exception {
+        int clients = 8;
+        int perClient = 200;
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int base = c * perClient;
+                futures.add(executor.submit(() -> {
+                    List<User> users = new ArrayList<>();
+                    for (int i = base; i < base + perClient; i++) {
+                        users.add(new User(i, "c" + i));
+                    }
+                    try (SeedBaseClient client = new SeedBaseClient(server.port())) {
+                        client.insertAll(users);
+                        assertEquals(new User(base, "c" + base), client.select(base));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try (SeedBaseClient client = new SeedBaseClient(server.port())) {
+            assertEquals(clients * perClient, client.range(0, clients * perClient).size());
+        }
+    }
+
+    @Test
+    void testConcurrentSelectsThroughSharedReaders() throws Exception {
+        int count = 3000;
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User(i, "n" + i));
+        }
+        db.insertAll(users);
+        // A few frames, so concurrent selects keep evicting each other's pages
+        db.useBufferPool(4, LruPolicy::new);
+        selectConcurrently(users);
+        db.useMappedReads(4096);
+        selectConcurrently(users);
+    }
+
+    private void selectConcurrently(List<User> users) throws Exception {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < 8; c++) {
+                int seed = c;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    int[] ids = new int[500];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = random.nextInt(users.size());
+                    }
+                    try (SeedBaseClient client = new SeedBaseClient(server.port())) {
+                        User[] found = client.selectAll(ids);
+                        for (int i = 0; i < ids.length; i++) {
+                            assertEquals(users.get(ids[i]), found[i]);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testUnknownOpcode() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeByte(99);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals(WireProtocol.ERROR, in.readByte());
+            assertTrue(WireProtocol.readString(in).contains("99"));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void testDatabaseFailureIsAnswered() throws IOException {
+        SimpleDataBase failing = new SimpleDataBase(TEST_DB_FILENAME, false) {
+            @Override
+            public User select(int idQuery) {
+                if (idQuery < 0) {
+                    throw new IllegalArgumentException("Negative id " + idQuery);
+                }
+                return super.select(idQuery);
+            }
+        };
+        try (SeedBaseServer failingServer = new SeedBaseServer(failing, 0);
+             SeedBaseClient client = new SeedBaseClient(failingServer.port())) {
+            client.insert(1, "a");
+            IOException e = assertThrows(IOException.class, () -> client.select(-1));
+            assertTrue(e.getMessage().contains("Negative id -1"), e.getMessage());
+            // The connection survives the failed request, also in the middle of a pipeline
+            assertEquals(new User(1, "a"), client.select(1));
+            assertThrows(IOException.class, () -> client.selectAll(new int[] {1, -2, 1}));
+        } finally {
+            failing.close();
+        }
+    }
+
+    @Test
+    void testCloseDisconnectsClients() throws IOException {
+        SeedBaseClient client = new SeedBaseClient(server.port());
+        client.insert(1, "a");
+        server.close();
+        assertThrows(IOException.class, () -> {
+            client.select(1);
+            client.select(1);
+        });
+        client.close();
+    }
+}
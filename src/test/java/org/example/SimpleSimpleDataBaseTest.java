@@ -2,6 +2,13 @@ package org.example;
 
 import org.junit.jupiter.api.*;
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,7 +25,11 @@ class SimpleSimpleDataBaseTest {
     @AfterEach
     void tearDown() {
         // Clean up the test database file after each test
+        db.close();
         new File(TEST_DB_FILENAME).delete();
+        new File(TEST_DB_FILENAME + ".idx").delete();
+        new File(TEST_DB_FILENAME + ".names").delete();
+        new File(TEST_DB_FILENAME + ".bloom").delete();
     }
 
     @Test
@@ -137,4 +148,350 @@ class SimpleSimpleDataBaseTest {
         assertEquals(2, user2.id());
         assertEquals("Bob", user2.name());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSelectIndexed() {
+        db.createIndex();
+        // Insert in an order that selectBinarySearch cannot handle
+        for (int i = 0; i < 1000; i++) {
+            int id = (i * 7919) % 1000;
+            db.insert(id, "User" + id);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            User user = db.selectIndexed(i);
+            assertNotNull(user);
+            assertEquals(i, user.id());
+            assertEquals("User" + i, user.name());
+        }
+        assertNull(db.selectIndexed(1000));
+    }
+
+    @Test
+    void testIndexCatchesUpOnOpen() {
+        db.insert(3, "Carol");
+        db.insert(1, "Alice");
+        db.createIndex();
+        db.close();
+
+        // Rows inserted while the index is closed are indexed when it is opened again
+        db.insert(2, "Bob");
+        SimpleDataBase newDb = new SimpleDataBase(TEST_DB_FILENAME, false);
+        newDb.createIndex();
+        assertEquals("Alice", newDb.selectIndexed(1).name());
+        assertEquals("Bob", newDb.selectIndexed(2).name());
+        assertEquals("Carol", newDb.selectIndexed(3).name());
+        newDb.close();
+    }
+
+    @Test
+    void testClearResetsIndex() {
+        db.createIndex();
+        db.insert(1, "Alice");
+        db.clear();
+        assertNull(db.selectIndexed(1));
+
+        db.insert(1, "Bob");
+        assertEquals("Bob", db.selectIndexed(1).name());
+    }
+
+    @Test
+    void testSelectIndexedWithoutIndex() {
+        assertThrows(IllegalStateException.class, () -> db.selectIndexed(1));
+    }
+
+    @Test
+    void testBufferPool() {
+        db.useBufferPool(4, LruPolicy::new);
+        // 600 records span three 4 KiB pages
+        for (int i = 0; i < 600; i++) {
+            db.insert(i, "User" + i);
+        }
+
+        for (int i = 0; i < 600; i += 7) {
+            assertEquals("User" + i, db.select(i).name());
+            assertEquals("User" + i, db.selectBinarySearch(i).name());
+        }
+        assertNull(db.select(600));
+        assertNull(db.selectBinarySearch(600));
+        assertTrue(db.bufferPool().hits() > 0);
+
+        // A cached page is refreshed after an insert into it
+        db.insert(600, "Last");
+        assertEquals("Last", db.select(600).name());
+
+        db.clear();
+        assertNull(db.select(1));
+    }
+
+    @Test
+    void testBufferPoolWithIndex() {
+        db.useBufferPool(4, TwoQueuePolicy::new);
+        db.createIndex();
+        for (int i = 0; i < 300; i++) {
+            int id = (i * 7919) % 300;
+            db.insert(id, "User" + id);
+        }
+        for (int i = 0; i < 300; i++) {
+            assertEquals("User" + i, db.selectIndexed(i).name());
+        }
+    }
+
+    @Test
+    void testMappedReads() {
+        // Chunks of 4 records, so lookups cross chunk boundaries and the mapping grows with every few inserts
+        db.useMappedReads(64);
+        assertNull(db.select(0));
+        for (int i = 0; i < 100; i++) {
+            db.insert(i, "User" + i);
+            assertEquals("User" + i, db.select(i).name());
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("User" + i, db.select(i).name());
+            assertEquals("User" + i, db.selectBinarySearch(i).name());
+        }
+        assertNull(db.select(100));
+        assertNull(db.selectBinarySearch(100));
+        assertNull(db.selectBinarySearch(-1));
+
+        db.clear();
+        assertNull(db.select(1));
+        db.insert(1, "Alice");
+        assertEquals("Alice", db.selectBinarySearch(1).name());
+    }
+
+    @Test
+    void testMappedReadsWithIndex() {
+        db.useMappedReads(64);
+        db.createIndex();
+        for (int i = 0; i < 100; i++) {
+            int id = (i * 37) % 100;
+            db.insert(id, "User" + id);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("User" + i, db.selectIndexed(i).name());
+        }
+    }
+
+    @Test
+    void testMappedChunkSize() {
+        assertThrows(IllegalArgumentException.class, () -> db.useMappedReads(100));
+    }
+
+    @Test
+    void testSelectByName() {
+        db.useNameIndex();
+        db.insert(1, "Alice");
+        db.insert(2, "Bob");
+        db.insert(3, "Alice");
+        db.insert(4, "Alicia");
+        db.insert(5, "Maximilian von Habsburg");
+
+        assertEquals(List.of(new User(1, "Alice"), new User(3, "Alice")), db.selectByName("Alice"));
+        assertEquals(List.of(new User(2, "Bob")), db.selectByName("Bob"));
+        assertEquals(List.of(), db.selectByName("Carol"));
+        assertEquals(List.of(), db.selectByName("Ali"));
+        // Matched as stored, truncated to 12 bytes
+        assertEquals(List.of(new User(5, "Maximilian v")), db.selectByName("Maximilian von Habsburg"));
+
+        assertEquals(List.of(new User(1, "Alice"), new User(3, "Alice"), new User(4, "Alicia")),
+                db.selectByNamePrefix("Ali"));
+        assertEquals(5, db.selectByNamePrefix("").size());
+        assertEquals(List.of(), db.selectByNamePrefix("Z"));
+    }
+
+    @Test
+    void testNameIndexCatchesUpOnOpen() {
+        db.useNameIndex();
+        for (int i = 0; i < 1000; i++) {
+            db.insert(i, "User" + (i % 100));
+        }
+        db.close();
+        assertTrue(new File(TEST_DB_FILENAME + ".names").isFile());
+
+        // Rows inserted while the index is closed are indexed when it is opened again
+        db = new SimpleDataBase(TEST_DB_FILENAME, false);
+        db.insert(1000, "User7");
+        db.insert(1001, "Newcomer");
+        db.useNameIndex();
+        db.useMappedReads();
+        List<User> users = db.selectByName("User7");
+        assertEquals(11, users.size());
+        assertEquals(7, users.get(0).id());
+        assertEquals(1000, users.get(10).id());
+        assertEquals(List.of(new User(1001, "Newcomer")), db.selectByName("Newcomer"));
+        // User1, User10 to User19
+        assertEquals(11 * 10, db.selectByNamePrefix("User1").size());
+    }
+
+    @Test
+    void testNameIndexRebuiltWhenStale() {
+        db.useNameIndex();
+        db.insert(1, "Alice");
+        db.insert(2, "Bob");
+        db.close();
+
+        // A data file shorter than the saved index means the index belongs to other data
+        db = new SimpleDataBase(TEST_DB_FILENAME, false);
+        try (RandomAccessFile raf = new RandomAccessFile(TEST_DB_FILENAME, "rw")) {
+            raf.setLength(16);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        db.useNameIndex();
+        assertEquals(List.of(new User(1, "Alice")), db.selectByName("Alice"));
+        assertEquals(List.of(), db.selectByName("Bob"));
+
+        db.clear();
+        assertEquals(List.of(), db.selectByName("Alice"));
+        assertFalse(new File(TEST_DB_FILENAME + ".names").exists());
+        assertThrows(IllegalStateException.class, () -> new SimpleDataBase(TEST_DB_FILENAME, false).selectByName("Alice"));
+    }
+
+    @Test
+    void testIndexesOpenedDuringInserts() throws InterruptedException {
+        int count = 20_000;
+        Thread inserter = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                db.insert(i, "n" + i);
+            }
+        });
+        inserter.start();
+        // Opened while rows keep arriving, no row may fall between the catch-up scan and the first indexed insert
+        while (new File(TEST_DB_FILENAME).length() < 16L * count / 4) {
+            Thread.onSpinWait();
+        }
+        db.useNameIndex();
+        db.useBloomFilter();
+        inserter.join();
+        for (int i = 0; i < count; i++) {
+            assertEquals(List.of(new User(i, "n" + i)), db.selectByName("n" + i));
+        }
+        for (int i = 0; i < count; i += 97) {
+            assertEquals(new User(i, "n" + i), db.selectBinarySearch(i));
+        }
+    }
+
+    @Test
+    void testKeywordSearch() {
+        db.insert(1, "Ann Lee");
+        db.insert(2, "Mary-Ann");
+        db.useKeywordIndex();
+        db.insert(3, "Lee, Mary");
+        db.insert(4, "Bob Stone");
+
+        assertEquals(List.of(new User(1, "Ann Lee"), new User(2, "Mary-Ann")), db.searchAll("ann"));
+        assertEquals(List.of(new User(2, "Mary-Ann")), db.searchAll("Mary ANN"));
+        assertEquals(List.of(new User(1, "Ann Lee"), new User(3, "Lee, Mary"), new User(4, "Bob Stone")),
+                db.searchAny("lee bob"));
+        assertEquals(List.of(), db.searchAll("carol"));
+
+        db.clear();
+        assertEquals(List.of(), db.searchAny("ann"));
+        db.insert(5, "Ann");
+        assertEquals(List.of(new User(5, "Ann")), db.searchAll("ann"));
+    }
+
+    @Test
+    void testScanWithFilters() {
+        for (int i = 0; i < 1000; i++) {
+            db.insert(i, (i % 2 == 0 ? "Even" : "Odd") + i);
+        }
+        // 64-byte blocks make the scan cross many block boundaries
+        try (Stream<User> users = db.scan(RecordFilter.ALL, 64)) {
+            assertEquals(1000, users.count());
+        }
+        try (Stream<User> users = db.scan(RecordFilter.idBetween(100, 109), 64)) {
+            assertEquals(List.of(100, 101, 102, 103, 104, 105, 106, 107, 108, 109),
+                    users.map(User::id).collect(Collectors.toList()));
+        }
+        try (Stream<User> users = db.scan(RecordFilter.nameStartsWith("Odd9").and(RecordFilter.idBetween(0, 99)))) {
+            assertEquals(List.of(new User(9, "Odd9"), new User(91, "Odd91"), new User(93, "Odd93"),
+                    new User(95, "Odd95"), new User(97, "Odd97"), new User(99, "Odd99")), users.collect(Collectors.toList()));
+        }
+        try (Stream<User> users = db.scan(RecordFilter.nameEquals("Even10").or(RecordFilter.nameEquals("Odd11")))) {
+            assertEquals(List.of(new User(10, "Even10"), new User(11, "Odd11")), users.collect(Collectors.toList()));
+        }
+        // Lazy: the first match is found without reading further
+        try (Stream<User> users = db.scan()) {
+            assertEquals(new User(0, "Even0"), users.findFirst().orElseThrow());
+        }
+    }
+
+    @Test
+    void testScanEmptyAndTornFile() throws IOException {
+        try (Stream<User> users = db.scan()) {
+            assertEquals(0, users.count());
+        }
+        db.insert(1, "Alice");
+        db.insert(2, "Bob");
+        try (RandomAccessFile raf = new RandomAccessFile(TEST_DB_FILENAME, "rw")) {
+            raf.setLength(40);
+        }
+        try (Stream<User> users = db.scan()) {
+            assertEquals(List.of(new User(1, "Alice"), new User(2, "Bob")), users.collect(Collectors.toList()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> db.scan(RecordFilter.ALL, 100));
+    }
+
+    @Test
+    void testScanParallel() throws IOException {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            users.add(new User(i, "User" + (i % 7)));
+        }
+        db.insertAll(users);
+        // 64-byte blocks split the 10000 rows into many ranges
+        try (Stream<User> all = db.scan(RecordFilter.ALL, 64, true)) {
+            assertTrue(all.isParallel());
+            assertEquals(users, all.collect(Collectors.toList()));
+        }
+        try (Stream<User> matching = db.scan(RecordFilter.nameEquals("User3"), 64, true)) {
+            assertEquals(10_000 / 7 + 1, matching.count());
+        }
+        try (RecordScanner scanner = RecordScanner.open(TEST_DB_FILENAME, RecordFilter.ALL, 64)) {
+            // Halves at a record boundary, the prefix first
+            Spliterator<User> prefix = scanner.trySplit();
+            assertEquals(5000, prefix.estimateSize());
+            assertEquals(5000, scanner.estimateSize());
+            assertTrue(prefix.tryAdvance(user -> assertEquals(0, user.id())));
+            assertTrue(scanner.tryAdvance(user -> assertEquals(5000, user.id())));
+            // Not split after reading started
+            assertNull(scanner.trySplit());
+        }
+        try (Stream<User> matching = db.scanParallel(RecordFilter.idBetween(5000, 5999))) {
+            assertEquals(1000, matching.mapToLong(User::id).filter(id -> id >= 5000 && id < 6000).count());
+        }
+    }
+
+    @Test
+    void testRowCache() {
+        for (int i = 0; i < 10; i++) {
+            db.insert(i, "user" + i);
+        }
+        db.useRowCache(1 << 20);
+        RowCache cache = db.rowCache();
+        User user = db.select(3);
+        assertEquals(new User(3, "user3"), user);
+        assertSame(user, db.select(3));
+        assertSame(user, db.selectBinarySearch(3));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+        // Absent ids are not cached
+        assertNull(db.select(42));
+        assertNull(db.select(42));
+        assertEquals(3, cache.misses());
+
+        // An insert of the id drops its row, the next select reads the file again
+        db.insert(3, "again");
+        User reread = db.select(3);
+        assertNotSame(user, reread);
+        assertEquals(user, reread);
+        assertEquals(4, cache.misses());
+
+        db.clear();
+        assertEquals(0, cache.size());
+        assertNull(db.select(3));
+    }
+}
@@ -0,0 +1,107 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlottedDataBaseTest {
+    private static final String TEST_DB_FILENAME = "test_slotted.db";
+    private SlottedDataBase db;
+
+    @BeforeEach
+    void setUp() {
+        db = new SlottedDataBase(TEST_DB_FILENAME, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+        new File(TEST_DB_FILENAME).delete();
+        new File(TEST_DB_FILENAME + ".ovf").delete();
+        new File(TEST_DB_FILENAME + ".idx").delete();
+    }
+
+    @Test
+    void testNamesAreNotTruncated() {
+        String longName = "Maximilian Alexander von Habsburg";
+        String unicode = "名字很长的用户名字很长的用户";
+        String huge = "x".repeat(10_000) + "end";
+        db.insert(1, longName);
+        db.insert(2, unicode);
+        db.insert(3, huge);
+        db.insert(4, "");
+
+        for (int round = 0; round < 2; round++) {
+            assertEquals(longName, db.select(1).name());
+            assertEquals(unicode, db.selectBinarySearch(2).name());
+            assertEquals(huge, db.selectIndexed(3).name());
+            assertEquals("", db.selectBinarySearch(4).name());
+            assertNull(db.select(5));
+
+            db.close();
+            db = new SlottedDataBase(TEST_DB_FILENAME, false);
+        }
+        // The huge name lives in overflow pages, not in the data page
+        assertEquals(PageFile.DEFAULT_PAGE_SIZE, new File(TEST_DB_FILENAME).length());
+        assertEquals(3L * PageFile.DEFAULT_PAGE_SIZE, new File(TEST_DB_FILENAME + ".ovf").length());
+    }
+
+    @Test
+    void testBinarySearchAndDensity() {
+        for (int i = 0; i < 20_000; i++) {
+            db.insert(i, "User" + i);
+        }
+        for (int i = 0; i < 20_000; i += 7) {
+            assertEquals("User" + i, db.selectBinarySearch(i).name());
+            assertEquals("User" + i, db.selectIndexed(i).name());
+        }
+        assertNull(db.selectBinarySearch(-1));
+        assertNull(db.selectBinarySearch(20_000));
+        // Names of 5 to 9 bytes take less than the 16 bytes of a padded record
+        assertTrue(db.bytesPerRow() < 15.5, "Bytes per row: " + db.bytesPerRow());
+    }
+
+    @Test
+    void testIndexForAnyOrder() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            ids.add(i);
+        }
+        Collections.shuffle(ids, new Random(3));
+        for (int id : ids) {
+            db.insert(id, "Name-" + "y".repeat(id % 700) + id);
+        }
+        for (int id = 0; id < 3000; id += 11) {
+            assertEquals("Name-" + "y".repeat(id % 700) + id, db.selectIndexed(id).name());
+        }
+        assertEquals("Name-" + "y".repeat(2999 % 700) + 2999, db.select(2999).name());
+    }
+
+    @Test
+    void testIndexRebuiltWhenLost() {
+        for (int i = 0; i < 1000; i++) {
+            db.insert(i, "User" + i);
+        }
+        db.close();
+        new File(TEST_DB_FILENAME + ".idx").delete();
+
+        db = new SlottedDataBase(TEST_DB_FILENAME, false);
+        assertEquals(1000, db.rows());
+        assertEquals("User777", db.selectIndexed(777).name());
+        db.insert(1000, "User1000");
+        assertEquals("User1000", db.selectIndexed(1000).name());
+
+        db.clear();
+        assertEquals(0, db.rows());
+        assertNull(db.selectIndexed(777));
+        assertNull(db.selectBinarySearch(777));
+    }
+}
@@ -0,0 +1,115 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringBPlusTreeTest {
+    // The tree orders keys by their UTF-8 bytes
+    private static TreeMap<String, Integer> byteOrderedMap() {
+        return new TreeMap<>((a, b) -> Arrays.compareUnsigned(StringBPlusTree.encode(a), StringBPlusTree.encode(b)));
+    }
+
+    @Test
+    void testMatchesSortedMap() {
+        Random random = new Random(5);
+        String[] stems = {"", "a", "ab", "abc", "Anderson", "Andersen", "名字", "Zoë", "😀"};
+        for (int order : new int[] {3, 4, 16, 128}) {
+            StringBPlusTree<Integer> tree = new StringBPlusTree<>(order);
+            TreeMap<String, Integer> expected = byteOrderedMap();
+            for (int i = 0; i < 5000; i++) {
+                String key = stems[random.nextInt(stems.length)] + (random.nextBoolean() ? "" : random.nextInt(500));
+                assertEquals(expected.put(key, i), tree.insert(key, i), "insert " + key);
+            }
+            assertEquals(expected.size(), tree.size());
+            for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), tree.search(entry.getKey()));
+            }
+            assertNull(tree.search("missing"));
+            assertNull(tree.search("Anderso"));
+
+            StringBPlusTree<Integer>.Cursor cursor = tree.scan();
+            for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+                assertTrue(cursor.next());
+                assertEquals(entry.getKey(), cursor.key());
+                assertEquals(entry.getValue(), cursor.value());
+            }
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    void testPrefixCursor() {
+        StringBPlusTree<Integer> tree = new StringBPlusTree<>(4);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            names.add("Smith" + i);
+            names.add("Smyth" + i);
+            names.add("Sm" + i);
+        }
+        names.add("S");
+        names.add("Sn");
+        Collections.shuffle(names, new Random(9));
+        for (int i = 0; i < names.size(); i++) {
+            tree.insert(names.get(i), i);
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (String name : names) {
+            if (name.startsWith("Smith1")) {
+                expected.add(name);
+            }
+        }
+        Collections.sort(expected);
+        List<String> actual = new ArrayList<>();
+        StringBPlusTree<Integer>.Cursor cursor = tree.prefix("Smith1");
+        while (cursor.next()) {
+            actual.add(cursor.key());
+            assertEquals(names.indexOf(cursor.key()), cursor.value());
+        }
+        assertEquals(expected, actual);
+
+        assertFalse(tree.prefix("Smith9999").next());
+        assertFalse(tree.prefix("T").next());
+        StringBPlusTree<Integer>.Cursor all = tree.prefix("");
+        int count = 0;
+        while (all.next()) {
+            count++;
+        }
+        assertEquals(names.size(), count);
+        assertThrows(IllegalStateException.class, all::key);
+    }
+
+    @Test
+    void testCompression() {
+        StringBPlusTree<Integer> tree = new StringBPlusTree<>(64);
+        long rawBytes = 0;
+        for (int i = 0; i < 20_000; i++) {
+            String key = String.format("customers/europe/west/account-%08d", i * 7);
+            rawBytes += StringBPlusTree.encode(key).length;
+            tree.insert(key, i);
+        }
+        // 39-byte keys that differ only in the last few digits: leaves keep little more than the digits
+        assertTrue(tree.keyBytes() * 4 < rawBytes, "Key bytes " + tree.keyBytes() + " of " + rawBytes);
+        assertEquals(7, tree.search("customers/europe/west/account-00000049"));
+        assertEquals(3, tree.height());
+    }
+
+    @Test
+    void testShortestSeparator() {
+        assertArrayEquals(StringBPlusTree.encode("Anderse"),
+                StringBPlusTree.shortestSeparator(StringBPlusTree.encode("Anders"), StringBPlusTree.encode("Andersen")));
+        assertArrayEquals(StringBPlusTree.encode("Ando"),
+                StringBPlusTree.shortestSeparator(StringBPlusTree.encode("Anderson"), StringBPlusTree.encode("Andover")));
+        assertArrayEquals(StringBPlusTree.encode("B"),
+                StringBPlusTree.shortestSeparator(StringBPlusTree.encode("Anderson"), StringBPlusTree.encode("Baker")));
+    }
+}
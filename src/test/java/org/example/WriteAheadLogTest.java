@@ -0,0 +1,207 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    private static final String TEST_DB_FILENAME = "test_wal.db";
+    private static final String CRASH_DB_FILENAME = "test_wal_crash.db";
+    private SimpleDataBase db;
+
+    @BeforeEach
+    void setUp() {
+        db = new SimpleDataBase(TEST_DB_FILENAME, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+        for (String name : new String[] {TEST_DB_FILENAME, CRASH_DB_FILENAME}) {
+            new File(name).delete();
+            new File(name + ".wal").delete();
+            new File(name + ".idx").delete();
+        }
+    }
+
+    private static ByteBuffer record(int id, String name) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putInt(id);
+        RecordWriter.encodeName(name, buffer);
+        return buffer.flip();
+    }
+
+    @Test
+    void testInsertAndReopen() {
+        db.useWriteAheadLog(RecordWriter.SyncMode.EVERY_FLUSH, 0);
+        for (int i = 0; i < 50; i++) {
+            db.insert(i, "User" + i);
+        }
+        assertEquals("User7", db.selectBinarySearch(7).name());
+        db.close();
+
+        // A clean close checkpoints, so nothing is left to replay
+        assertEquals(WriteAheadLog.HEADER_SIZE, new File(TEST_DB_FILENAME + ".wal").length());
+        db = new SimpleDataBase(TEST_DB_FILENAME, false);
+        db.useWriteAheadLog(RecordWriter.SyncMode.EVERY_FLUSH, 0);
+        assertEquals(0, db.writeAheadLog().recoveredFrames());
+        assertEquals(50 * 16, new File(TEST_DB_FILENAME).length());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("User" + i, db.selectBinarySearch(i).name());
+        }
+    }
+
+    @Test
+    void testTornRecordWithoutLog() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            db.insert(i, "User" + i);
+        }
+        // Half of an eleventh record, as left by a crash in the middle of insert
+        try (RandomAccessFile raf = new RandomAccessFile(TEST_DB_FILENAME, "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[] {0, 0, 0, 10, 'U', 's', 'e'});
+        }
+
+        db.useWriteAheadLog(RecordWriter.SyncMode.EVERY_FLUSH, 0);
+        assertEquals(7, db.writeAheadLog().truncatedBytes());
+        assertEquals(10 * 16, new File(TEST_DB_FILENAME).length());
+
+        db.insert(10, "User10");
+        for (int i = 0; i <= 10; i++) {
+            assertEquals("User" + i, db.selectBinarySearch(i).name());
+        }
+    }
+
+    @Test
+    void testReplayAfterCrash() throws IOException {
+        db.useWriteAheadLog(RecordWriter.SyncMode.EVERY_FLUSH, 0);
+        for (int i = 0; i < 20; i++) {
+            db.insert(i, "User" + i);
+        }
+        // Copy the files while the log is open, as a crash would leave them
+        Files.copy(Path.of(TEST_DB_FILENAME), Path.of(CRASH_DB_FILENAME), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(Path.of(TEST_DB_FILENAME + ".wal"), Path.of(CRASH_DB_FILENAME + ".wal"),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        try (RandomAccessFile data = new RandomAccessFile(CRASH_DB_FILENAME, "rw");
+             RandomAccessFile log = new RandomAccessFile(CRASH_DB_FILENAME + ".wal", "rw")) {
+            // The data file was never fsynced, lose its last records and tear one
+            data.setLength(12 * 16 + 5);
+            // Garbage where the next frame would start
+            log.seek(log.length());
+            log.write(new byte[] {1, 2, 3, 4, 0, 0, 0, 16, 0, 0});
+            // An unlogged record after the logged ones must go
+            data.seek(20 * 16);
+            data.write(record(99, "Ghost").array());
+        }
+
+        try (SimpleDataBase crashed = new SimpleDataBase(CRASH_DB_FILENAME, false)) {
+            crashed.useWriteAheadLog(RecordWriter.SyncMode.EVERY_FLUSH, 0);
+            assertEquals(20, crashed.writeAheadLog().recoveredFrames());
+            assertEquals(16, crashed.writeAheadLog().truncatedBytes());
+            assertEquals(20 * 16, new File(CRASH_DB_FILENAME).length());
+            for (int i = 0; i < 20; i++) {
+                assertEquals("User" + i, crashed.selectBinarySearch(i).name());
+            }
+            assertNull(crashed.select(99));
+        }
+    }
+
+    @Test
+    void testCorruptFrameStopsReplay() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(TEST_DB_FILENAME, RecordWriter.SyncMode.EVERY_FLUSH, 0)) {
+            for (int i = 0; i < 3; i++) {
+                long offset = log.append(record(i, "User" + i));
+                log.commit(offset + 16);
+            }
+            Files.copy(Path.of(TEST_DB_FILENAME + ".wal"), Path.of(CRASH_DB_FILENAME + ".wal"),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Flip a byte in the records of the second frame
+        try (RandomAccessFile log = new RandomAccessFile(CRASH_DB_FILENAME + ".wal", "rw")) {
+            long position = WriteAheadLog.HEADER_SIZE + 32 + WriteAheadLog.FRAME_HEADER_SIZE + 6;
+            log.seek(position);
+            int b = log.read();
+            log.seek(position);
+            log.write(b ^ 0xFF);
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(CRASH_DB_FILENAME, RecordWriter.SyncMode.EVERY_FLUSH, 0)) {
+            assertEquals(1, log.recoveredFrames());
+            assertEquals(16, log.appendedEnd());
+        }
+        assertEquals(16, new File(CRASH_DB_FILENAME).length());
+    }
+
+    @Test
+    void testCheckpointBoundsLog() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(TEST_DB_FILENAME, RecordWriter.SyncMode.EVERY_FLUSH, 0, 1024)) {
+            for (int i = 0; i < 500; i++) {
+                long offset = log.append(record(i, "User" + i));
+                log.commit(offset + 16);
+                assertTrue(new File(TEST_DB_FILENAME + ".wal").length() < 1024 + 32);
+            }
+            assertEquals(500, log.syncs());
+        }
+        assertEquals(500 * 16, new File(TEST_DB_FILENAME).length());
+        assertEquals("User321", db.selectBinarySearch(321).name());
+    }
+
+    @Test
+    void testConcurrentInsertsShareSyncs() throws InterruptedException {
+        db.useWriteAheadLog(RecordWriter.SyncMode.EVERY_FLUSH, 0);
+        int threads = 4;
+        int perThread = 100;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            workers.add(new Thread(() -> {
+                for (int i = base; i < base + perThread; i++) {
+                    db.insert(i, "User" + i);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals((long) threads * perThread * 16, new File(TEST_DB_FILENAME).length());
+        assertTrue(db.writeAheadLog().syncs() <= threads * perThread);
+        for (int i = 0; i < threads * perThread; i++) {
+            assertEquals("User" + i, db.select(i).name());
+        }
+    }
+
+    @Test
+    void testWriterAndClearGoThroughLog() throws IOException {
+        db.useWriteAheadLog(RecordWriter.SyncMode.NEVER, 0);
+        db.createIndex();
+        try (RecordWriter writer = new RecordWriter(TEST_DB_FILENAME, 2, 64, RecordWriter.SyncMode.EVERY_FLUSH, 0, db)) {
+            for (int i = 0; i < 100; i++) {
+                writer.append(i, "User" + i);
+            }
+        }
+        assertEquals(100 * 16, new File(TEST_DB_FILENAME).length());
+        assertEquals(100 * 16, db.writeAheadLog().appendedEnd());
+        assertEquals("User55", db.selectIndexed(55).name());
+
+        db.clear();
+        assertEquals(0, db.writeAheadLog().appendedEnd());
+        db.insert(3, "Again");
+        assertEquals(16, new File(TEST_DB_FILENAME).length());
+        assertEquals("Again", db.selectIndexed(3).name());
+    }
+}